@@ -4,14 +4,24 @@
 package lab3_integrated;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 import java.util.stream.Stream;
 
 import lab3_integrated.assembler.lab2.AssemblerApp;
 import lab3_integrated.linker.LinkerApp;
+import lab3_integrated.simulator.loader.Image_Cache;
+import lab3_integrated.simulator.machine.Input_Device;
+import lab3_integrated.simulator.machine.Scanner_Input;
+import lab3_integrated.simulator.machine.Scripted_Input;
+import lab3_integrated.simulator.simulator.Batch_Runner;
 import lab3_integrated.simulator.simulator.Simulator;
+import lab3_integrated.simulator.simulator.Trace_Filter;
 
 public class App {
 
@@ -19,15 +29,120 @@ public class App {
         INPUT, OUTPUT, NONE
     }
     private static final String linker_file = "linker___output.o";
+    private static final List<String> OPTIONS = List.of("--ipla", "--mode", "--max", "--input", "--engine", "--output",
+            "--seed", "--record", "--replay", "--trace", "--trace-filter", "--snapshot", "--restore", "--batch", "--summary",
+            "--serve", "--profile", "--loader", "--executable", "--image-cache");
+    private static final String USAGE = "Usage: App [--ipla <hex address>] [--mode quiet|trace|step] "
+            + "[--max <instructions>] [--input <file>] [--engine interpreter|threaded|tiered] [--output standard|raw] "
+            + "[--seed <number>] [--record <event log> | --replay <event log>] [--trace <file>] "
+            + "[--trace-filter range=<hex>-<hex>,ops=<name>:...,every=<n>,register=R<n>] "
+            + "[--snapshot <file>] [--profile <file>] [--loader read|mapped] [--executable text|binary] [--image-cache <directory>] (<source files> | --restore <snapshot> | --batch <directory or manifest> "
+            + "[--summary <file>] | --serve <port or socket path>)";
+
+    /**
+     * Answers to the prompts of the pipeline given on the command line. A null
+     * field is still prompted for.
+     */
+    static class Options {
+        String ipla;
+        Simulator.Mode mode;
+        Integer maxInstructions;
+        String input;
+        Simulator.Engine engine;
+        Boolean rawOutput;
+        Long seed;
+        String record;
+        String replay;
+        String trace;
+        Trace_Filter traceFilter;
+        String snapshot;
+        String restore;
+        String batch;
+        String summary;
+        String serve;
+        String profile;
+        Boolean mapExecutable;
+        Boolean binaryExecutable;
+        String imageCache;
+        ArrayList<String> sources = new ArrayList<>();
+    }
+
     public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+        if (options.batch != null) {
+            runBatch(options);
+            return;
+        }
+        if (options.serve != null) {
+            serve(options);
+            return;
+        }
+        Scanner prompt_input = new Scanner(System.in);
+        Input_Device trap_input = new Scanner_Input(prompt_input);
+        if (options.input != null) {
+            try {
+                trap_input = Scripted_Input.fromFile(Path.of(options.input));
+            } catch (IOException e) {
+                System.err.println("ERROR: input file " + options.input + " could not be read");
+                System.exit(-1);
+            }
+        }
+        if (options.engine != null) {
+            Simulator.engine = options.engine;
+        }
+        if (options.rawOutput != null) {
+            Simulator.rawOutput = options.rawOutput;
+        }
+        Simulator.seed = options.seed;
+        if (options.record != null) {
+            Simulator.recordFile = Path.of(options.record);
+        }
+        if (options.replay != null) {
+            Simulator.replayFile = Path.of(options.replay);
+        }
+        if (options.trace != null) {
+            Simulator.traceFile = Path.of(options.trace);
+        }
+        Simulator.traceFilter = options.traceFilter;
+        if (options.snapshot != null) {
+            Simulator.snapshotFile = Path.of(options.snapshot);
+        }
+        if (options.profile != null) {
+            Simulator.profileFile = Path.of(options.profile);
+        }
+        if (options.mapExecutable != null) {
+            Simulator.mapExecutable = options.mapExecutable;
+        }
+        if (options.imageCache != null) {
+            try {
+                Simulator.imageCache = openImageCache(options);
+            } catch (IOException e) {
+                System.err.println("ERROR: image cache " + options.imageCache + " could not be created");
+                System.exit(-1);
+            }
+        }
+        if (options.restore != null) {
+            // The snapshot already holds the loaded program, so there is nothing to assemble or link
+            Simulator.restoreFile = Path.of(options.restore);
+            System.out.println("Running simulator");
+            Simulator.simulator_main(null, options.mode, options.maxInstructions, prompt_input, trap_input);
+            return;
+        }
+
         ArrayList<String> asm_out = new ArrayList<>();
-        for (String in : args) {
+        for (String in : options.sources) {
             System.out.println("Running assembler for  " + in);
             String out = in + ".o";
             asm_out.add(out);
-            String[] asm_args = {"asssembler", in, out, "discard.listing"};
             try {
-                AssemblerApp.main(asm_args);
+                AssemblerApp.assemble(in, out, "discard.listing");
             } catch (Exception e) {
                 System.err.println("ERROR: " + e.getMessage());
                 cleanUpFiles(asm_out);
@@ -45,6 +160,14 @@ public class App {
         } else {
             linker_in[linker_in.length - 1] = linker_file; 
         }
+        if (options.ipla != null) {
+            linker_in = Stream.concat(Stream.of(LinkerApp.IPLA_OPTION, options.ipla), Arrays.stream(linker_in))
+                    .toArray(String[]::new);
+        }
+        if (options.binaryExecutable != null && options.binaryExecutable) {
+            linker_in = Stream.concat(Stream.of(LinkerApp.BINARY_OPTION), Arrays.stream(linker_in))
+                    .toArray(String[]::new);
+        }
         try {
             LinkerApp.main(linker_in);
         } catch (Exception e) {
@@ -53,11 +176,164 @@ public class App {
             new File(linker_file).delete();
         }
         System.out.println("Running simulator");
-        Simulator.simulator_main(linker_file);
+        Simulator.simulator_main(linker_file, options.mode, options.maxInstructions, prompt_input, trap_input);
         cleanUpFiles(asm_out);
         new File(linker_file).delete();
     }
     
+    /**
+     * Runs every executable of the batch directory or manifest in parallel and
+     * writes the summary, with --max as the budget of the jobs that do not give
+     * one.
+     * 
+     * @param options the options, with the batch set
+     */
+    static void runBatch(Options options) {
+        long budget = options.maxInstructions != null ? options.maxInstructions : Batch_Runner.DEFAULT_BUDGET;
+        Batch_Runner runner = null;
+        try {
+            runner = new Batch_Runner(Runtime.getRuntime().availableProcessors(), openImageCache(options));
+            List<Batch_Runner.Result> results = runner.run(Batch_Runner.readJobs(Path.of(options.batch), budget));
+            if (options.summary == null) {
+                Batch_Runner.writeSummary(results, System.out);
+            } else {
+                try (PrintStream summary = new PrintStream(options.summary)) {
+                    Batch_Runner.writeSummary(results, summary);
+                }
+            }
+            System.err.println(runner.getCache());
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(-1);
+        } finally {
+            if (runner != null) {
+                runner.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation service on the loopback port or Unix domain socket
+     * until the JVM is stopped.
+     * 
+     * @param options the options, with the address to serve on set
+     */
+    static void serve(Options options) {
+        try {
+            Simulation_Service service = Simulation_Service.open(options.serve, openImageCache(options));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                service.close();
+                System.err.println(service.getCache());
+            }));
+            System.out.println("Simulation service listening on " + service.getAddress());
+            service.serve();
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Creates the cache executables are loaded through, kept in the
+     * --image-cache directory if one is given.
+     * 
+     * @param options the options
+     * @return the cache
+     * @throws IOException if the directory can not be created
+     */
+    static Image_Cache openImageCache(Options options) throws IOException {
+        if (options.imageCache == null) {
+            return new Image_Cache(Image_Cache.DEFAULT_CAPACITY);
+        }
+        return new Image_Cache(Image_Cache.DEFAULT_CAPACITY, Path.of(options.imageCache));
+    }
+
+    /**
+     * Splits the command line into the options and the source files.
+     * 
+     * @param args the command line arguments
+     * @return the options, with the source files in the order given
+     * @throws IllegalArgumentException if an option is unknown, is missing its
+     *                                  value or has an invalid value
+     */
+    static Options parseOptions(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                options.sources.add(arg);
+                continue;
+            }
+            if (!OPTIONS.contains(arg)) {
+                throw new IllegalArgumentException("unknown option " + arg);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--ipla" -> {
+                        Integer.parseInt(value, 16);
+                        options.ipla = value;
+                    }
+                    case "--mode" -> options.mode = Simulator.Mode.valueOf(value.toUpperCase());
+                    case "--max" -> options.maxInstructions = Integer.parseInt(value);
+                    case "--input" -> options.input = value;
+                    case "--seed" -> options.seed = Long.parseLong(value);
+                    case "--record" -> options.record = value;
+                    case "--replay" -> options.replay = value;
+                    case "--trace" -> options.trace = value;
+                    case "--trace-filter" -> options.traceFilter = Trace_Filter.parse(value);
+                    case "--snapshot" -> options.snapshot = value;
+                    case "--restore" -> options.restore = value;
+                    case "--batch" -> options.batch = value;
+                    case "--summary" -> options.summary = value;
+                    case "--serve" -> options.serve = value;
+                    case "--profile" -> options.profile = value;
+                    case "--image-cache" -> options.imageCache = value;
+                    case "--output" -> {
+                        if (!value.equals("standard") && !value.equals("raw")) {
+                            throw new IllegalArgumentException();
+                        }
+                        options.rawOutput = value.equals("raw");
+                    }
+                    case "--loader" -> {
+                        if (!value.equals("read") && !value.equals("mapped")) {
+                            throw new IllegalArgumentException();
+                        }
+                        options.mapExecutable = value.equals("mapped");
+                    }
+                    case "--executable" -> {
+                        if (!value.equals("text") && !value.equals("binary")) {
+                            throw new IllegalArgumentException();
+                        }
+                        options.binaryExecutable = value.equals("binary");
+                    }
+                    default -> options.engine = Simulator.Engine.valueOf(value.toUpperCase());
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid value " + value + " for " + arg);
+            }
+        }
+        if (options.record != null && options.replay != null) {
+            throw new IllegalArgumentException("--record and --replay can not be used together");
+        }
+        if (options.restore != null && !options.sources.isEmpty()) {
+            throw new IllegalArgumentException("--restore can not be used with source files");
+        }
+        if (options.batch != null && (options.restore != null || !options.sources.isEmpty())) {
+            throw new IllegalArgumentException("--batch can not be used with --restore or source files");
+        }
+        if (options.serve != null && (options.batch != null || options.restore != null || !options.sources.isEmpty())) {
+            throw new IllegalArgumentException("--serve can not be used with --batch, --restore or source files");
+        }
+        if (options.summary != null && options.batch == null) {
+            throw new IllegalArgumentException("--summary can only be used with --batch");
+        }
+        return options;
+    }
+
     static void cleanUpFiles(ArrayList<String> paths) {
         for (String created_file : paths) {
             File file = new File(created_file);
@@ -0,0 +1,343 @@
+package lab3_integrated;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import lab3_integrated.assembler.lab2.AssemblerApp;
+import lab3_integrated.assembler.lab2.Exceptions.Pass2Exception;
+import lab3_integrated.linker.LinkerApp;
+import lab3_integrated.simulator.loader.Image_Cache;
+import lab3_integrated.simulator.loader.Loader;
+import lab3_integrated.simulator.loader.Loader_Exception;
+import lab3_integrated.simulator.machine.Buffered_Console;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Scripted_Input;
+import lab3_integrated.simulator.machine.Seeded_Random;
+import lab3_integrated.simulator.simulator.Batch_Runner;
+import lab3_integrated.simulator.simulator.Simulator;
+import lab3_integrated.simulator.simulator.Simulator_Session;
+
+/**
+ * Long-running service that assembles, links and simulates jobs in one JVM, so
+ * a job does not pay for starting a JVM of its own and runs on code the JIT has
+ * already compiled. It listens on a loopback TCP port or a Unix domain socket
+ * and serves one job per connection, each connection on its own thread.
+ * <p>
+ * A job is a line of options, its files and a last line END:
+ *
+ * <pre>
+ * RUN [--ipla hex] [--mode quiet|trace] [--max n] [--engine name] [--output standard|raw] [--seed n] [--trace-filter predicates]
+ * SOURCE name count     followed by the count lines of an assembly source
+ * OBJECT name count     followed by the count lines of an object file
+ * EXECUTABLE count      followed by the count lines of an executable
+ * INPUT count           followed by the count lines of answers for the IN and INN traps
+ * END
+ * </pre>
+ *
+ * The sources are assembled and linked with the objects at the --ipla address,
+ * or the executable is loaded as it is. The console and trace output is written
+ * back as the program runs, followed by a last line "DONE instructions xPC", or
+ * "ERROR message" if the job could not run. Executables are loaded through a
+ * cache shared by the jobs, so a program sent again is not parsed again.
+ */
+public class Simulation_Service {
+
+    private final ServerSocketChannel server;
+    private final Path socketFile;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final Image_Cache cache;
+
+    private Simulation_Service(ServerSocketChannel server, Path socketFile, Image_Cache cache) {
+        this.server = server;
+        this.socketFile = socketFile;
+        this.cache = cache;
+    }
+
+    /**
+     * Starts listening for jobs, with a cache of the default capacity held in
+     * memory.
+     *
+     * @param address a port to listen on at the loopback address, 0 for any free
+     *                port, or else the path of the Unix domain socket to create
+     * @return the service, not serving until serve is called
+     * @throws IOException if the port or socket can not be bound
+     */
+    public static Simulation_Service open(String address) throws IOException {
+        return open(address, new Image_Cache(Image_Cache.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Starts listening for jobs.
+     *
+     * @param address a port to listen on at the loopback address, 0 for any free
+     *                port, or else the path of the Unix domain socket to create
+     * @param cache   the cache the jobs load their executables through
+     * @return the service, not serving until serve is called
+     * @throws IOException if the port or socket can not be bound
+     */
+    public static Simulation_Service open(String address, Image_Cache cache) throws IOException {
+        if (address.chars().allMatch(Character::isDigit)) {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+            return new Simulation_Service(server, null, cache);
+        }
+        Path socketFile = Path.of(address);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketFile));
+        return new Simulation_Service(server, socketFile, cache);
+    }
+
+    public Image_Cache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Returns the address the service listens on.
+     *
+     * @return the loopback address and port, or the socket path
+     * @throws IOException if the service is closed
+     */
+    public SocketAddress getAddress() throws IOException {
+        return this.server.getLocalAddress();
+    }
+
+    /**
+     * Accepts connections and runs their jobs until the service is closed.
+     *
+     * @throws IOException if a connection can not be accepted
+     */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = this.server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            this.workers.execute(() -> serve(client));
+        }
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file. Jobs already
+     * running are finished.
+     */
+    public void close() {
+        try {
+            this.server.close();
+            if (this.socketFile != null) {
+                Files.deleteIfExists(this.socketFile);
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+        }
+        this.workers.shutdown();
+    }
+
+    private void serve(SocketChannel client) {
+        try (client;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+                PrintStream out = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(client)), false,
+                        StandardCharsets.UTF_8)) {
+            runJob(in, out, this.cache);
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a job and writes its output and the line ending it.
+     *
+     * @param in    the job
+     * @param out   the stream the output is written to
+     * @param cache the cache to load the executable through
+     * @throws IOException if the job's files can not be written
+     */
+    static void runJob(BufferedReader in, PrintStream out, Image_Cache cache) throws IOException {
+        Path dir = Files.createTempDirectory("simulation-job");
+        try {
+            Job job = readJob(in, dir);
+            Machine machine = new Machine();
+            new Loader(false, cache).load(job.build(dir).toString(), machine);
+            simulate(job, machine, out);
+        } catch (Pass2Exception | Loader_Exception e) {
+            out.println("ERROR " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Invalid jobs, the linker and the traps report errors in runtime exceptions
+            out.println("ERROR " + (e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage()));
+        } finally {
+            out.flush();
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the loaded program with the options of the job.
+     */
+    private static void simulate(Job job, Machine machine, PrintStream out) {
+        App.Options options = job.options;
+        Simulator.Mode mode = options.mode != null ? options.mode : Simulator.Mode.QUIET;
+        boolean raw = options.rawOutput != null && options.rawOutput;
+        machine.console = new Buffered_Console(out, mode == Simulator.Mode.QUIET ? Buffered_Console.DEFAULT_THRESHOLD : 0,
+                raw);
+        if (options.seed != null) {
+            machine.random = new Seeded_Random(options.seed);
+        }
+        Simulator_Session session = new Simulator_Session(machine, mode, job.input, null, out);
+        session.setEngine(options.engine != null ? options.engine : Simulator.engine);
+        session.setTraceFilter(options.traceFilter);
+        int executed = session.run(
+                options.maxInstructions != null ? options.maxInstructions : (int) Batch_Runner.DEFAULT_BUDGET);
+        machine.console.flush();
+        out.println("DONE " + executed + " x" + Integer.toHexString(machine.PC).toUpperCase());
+    }
+
+    /**
+     * Reads the options and files of a job, writing the files to the directory.
+     *
+     * @throws IllegalArgumentException if the job is invalid
+     */
+    private static Job readJob(BufferedReader in, Path dir) throws IOException {
+        String header = in.readLine();
+        if (header == null || !(header.equals("RUN") || header.startsWith("RUN "))) {
+            throw new IllegalArgumentException("a job starts with RUN");
+        }
+        String options = header.substring(3).trim();
+        Job job = new Job(App.parseOptions(options.isEmpty() ? new String[0] : options.split("\\s+")));
+        for (String line = in.readLine(); !"END".equals(line); line = in.readLine()) {
+            if (line == null) {
+                throw new IllegalArgumentException("a job ends with END");
+            }
+            String[] fields = line.trim().split("\\s+");
+            int count;
+            try {
+                count = Integer.parseInt(fields[fields.length - 1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid line " + line);
+            }
+            switch (fields[0] + " " + fields.length) {
+                case "SOURCE 3" -> {
+                    Path file = dir.resolve("source" + job.sources.size() + ".asm");
+                    Files.writeString(file, readLines(in, count));
+                    job.sources.add(file);
+                    job.sourceNames.add(fields[1]);
+                }
+                case "OBJECT 3" -> {
+                    Path file = dir.resolve("object" + job.objects.size() + ".o");
+                    Files.writeString(file, readLines(in, count));
+                    job.objects.add(file);
+                }
+                case "EXECUTABLE 2" -> {
+                    job.executable = dir.resolve("executable.o");
+                    Files.writeString(job.executable, readLines(in, count));
+                }
+                case "INPUT 2" -> job.input.add(readLines(in, count));
+                default -> throw new IllegalArgumentException("invalid line " + line);
+            }
+        }
+        return job;
+    }
+
+    private static String readLines(BufferedReader in, int count) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String line = in.readLine();
+            if (line == null) {
+                throw new IllegalArgumentException("a job ends with END");
+            }
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * The options and files of a job.
+     */
+    private static class Job {
+        final App.Options options;
+        final List<Path> sources = new ArrayList<>();
+        final List<String> sourceNames = new ArrayList<>();
+        final List<Path> objects = new ArrayList<>();
+        final Scripted_Input input = new Scripted_Input();
+        Path executable;
+
+        Job(App.Options options) {
+            if (options.mode == Simulator.Mode.STEP) {
+                throw new IllegalArgumentException("Step mode can not be used in a job");
+            }
+            if (options.input != null || options.record != null || options.replay != null || options.trace != null
+                    || options.snapshot != null || options.restore != null || options.batch != null
+                    || options.serve != null || options.profile != null || options.imageCache != null
+                    || !options.sources.isEmpty()) {
+                throw new IllegalArgumentException("files can only be given in the job");
+            }
+            this.options = options;
+        }
+
+        /**
+         * Assembles and links the sources and objects, or returns the executable.
+         *
+         * @return the path of the executable
+         */
+        Path build(Path dir) throws Pass2Exception {
+            if (this.executable != null) {
+                if (!this.sources.isEmpty() || !this.objects.isEmpty()) {
+                    throw new IllegalArgumentException("an executable can not be linked with other files");
+                }
+                return this.executable;
+            }
+            if (this.sources.isEmpty() && this.objects.isEmpty()) {
+                throw new IllegalArgumentException("a job needs sources, objects or an executable");
+            }
+            if (this.options.ipla == null) {
+                throw new IllegalArgumentException("--ipla is needed to link");
+            }
+            List<String> inputs = new ArrayList<>();
+            for (int i = 0; i < this.sources.size(); i++) {
+                String source = this.sources.get(i).toString();
+                try {
+                    AssemblerApp.assemble(source, source + ".o", source + ".listing");
+                } catch (Pass2Exception e) {
+                    throw new Pass2Exception(this.sourceNames.get(i) + ": " + e.getMessage());
+                }
+                inputs.add(source + ".o");
+            }
+            this.objects.forEach(object -> inputs.add(object.toString()));
+            Path executable = dir.resolve("executable.o");
+            try {
+                LinkerApp.link(Integer.parseInt(this.options.ipla, 16),
+                        this.options.binaryExecutable != null && this.options.binaryExecutable, inputs,
+                        executable.toString());
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+            return executable;
+        }
+    }
+}
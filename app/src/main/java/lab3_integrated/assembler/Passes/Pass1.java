@@ -17,10 +17,16 @@ public class Pass1 {
 	 * @param loc      Initial location counter to be used throughout pass 1
 	 * @param SymTable Empty symbol table to be filled
 	 * @param LitTable Empty literal table to be filled
+	 * @throws IllegalArgumentException if there are too many symbols or
+	 *                                  literals, or a symbol is referenced
+	 *                                  before it is defined
 	 * 
 	 */
 	public static int fillTables(ArrayList<List<String>> arr, int loc, HashMap<String, String[]> SymTable,
 			HashMap<String, Integer> LitTable) {
+		// The literals and external symbols of the last file assembled
+		LitArray.clear();
+		ExtSyms.clear();
 		loc = fillSymTable(arr, SymTable, loc);
 		loc = fillLitTable(LitTable, loc, LitArray);
 		return loc;
@@ -38,8 +44,7 @@ public class Pass1 {
 		String sym, instruct, operand;
 		for (int i = 1; i < arr.size() - 1; i++) {
 			if (SymTable.size() > 100) {
-				System.out.println("Too many symbols");
-				System.exit(1);
+				throw new IllegalArgumentException("Too many symbols");
 			}
 			// Assigns values for the symbol, instruction and operand from the current line
 			sym = arr.get(i).get(0);
@@ -82,8 +87,7 @@ public class Pass1 {
 	public static int fillLitTable(HashMap<String, Integer> LitTable, int locCount, ArrayList<String> litArray) {
 		for (int i = 0; i < litArray.size(); i++) {
 			if (LitTable.size() > 50) {
-				System.out.println("Too many literals");
-				System.exit(1);
+				throw new IllegalArgumentException("Too many literals");
 			}
 			LitTable.put(litArray.get(i), locCount);
 			locCount++;
@@ -135,8 +139,7 @@ public class Pass1 {
 		} else {
 			// If the operand is a symbol or a series of operands
 			if (!SymTable.containsKey(operand) && !ExtSyms.contains(operand)) {
-				System.out.println("Forward referencing error");
-				System.exit(1);
+				throw new IllegalArgumentException("Forward referencing error");
 			} else if (SymTable.containsKey(operand)) {
 				String[] symArr = SymTable.get(operand);
 				if (symArr[1].equals("A")) {
@@ -13,6 +13,7 @@ import lab3_integrated.assembler.POT.Pseudo_Op_Ins_Enum;
 import lab3_integrated.assembler.POT.Pseudo_Op_Table;
 import lab3_integrated.assembler.lab2.Exceptions.Pass2Exception;
 import lab3_integrated.assembler.lab2.Validate.Locations;
+import lab3_integrated.records.Record_Writer;
 
 public class Pass2 {
 
@@ -32,9 +33,10 @@ public class Pass2 {
 	private Pseudo_Op_Table pot;
 
 	/**
-	 * Writing the contents of the object file.
+	 * Writing the contents of the object file, with the words of consecutive
+	 * text records joined into records of many words.
 	 */
-	private FileWriter outFile;
+	private Record_Writer outFile;
 
 	/**
 	 * Writing the contents of the listing file.
@@ -111,7 +113,7 @@ public class Pass2 {
 		this.segName = "";
 
 		// Trying to create the object file and listing file
-		this.outFile = objectFile;
+		this.outFile = new Record_Writer(objectFile);
 		this.listingFile = listingFile;
 	}
 
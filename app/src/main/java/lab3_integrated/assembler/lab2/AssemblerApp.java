@@ -10,7 +10,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import lab3_integrated.assembler.MOT.Machine_Op_Table;
 import lab3_integrated.assembler.POT.Pseudo_Op_Table;
@@ -23,6 +22,30 @@ import lab3_integrated.assembler.lab2.Validate.Locations;
 public class AssemblerApp {
 
 	public static void main(String[] args) throws Pass2Exception {
+		if (args.length < 4) {
+			System.err.println("Not enough arguments were provided to the program."
+					+ "This program requires three arguments in the following order: ./program <input path> <object file output path> <listing file output path>");
+			System.exit(0);
+		}
+		try {
+			assemble(args[1], args[2], args[3]);
+		} catch (Pass2Exception e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Assembles a source file into an object file and a listing file. Pass 1
+	 * keeps its tables in static fields, so one file is assembled at a time.
+	 * 
+	 * @param source  path of the assembly source
+	 * @param object  path the object file is written to
+	 * @param listing path the listing file is written to
+	 * @throws Pass2Exception if the source is invalid or a file can not be read
+	 *                        or written
+	 */
+	public static synchronized void assemble(String source, String object, String listing) throws Pass2Exception {
 		ArrayList<List<String>> lines = new ArrayList<List<String>>();
 		HashMap<String, String[]> SymTable = new HashMap<String, String[]>();
 		HashMap<String, Integer> LitTable = new HashMap<String, Integer>();
@@ -32,63 +55,31 @@ public class AssemblerApp {
 		Pass2 pass2;
 		int segSize;
 		String_Parser sp = new String_Parser();
-		
-		if (args.length < 4) {
-			System.err.println("Not enough arguments were provided to the program."
-					+ "This program requires three arguments in the following order: ./program <input path> <object file output path> <listing file output path>");
-			System.exit(0);
-		}
-		Validate validator = new Validate(mot);
-		try {
-
-			FileReader asmFile = new FileReader(args[1]);
-			BufferedReader reader = new BufferedReader(asmFile);
-			FileReader tempAsmFile = new FileReader(args[1]);
-			BufferedReader tempReader = new BufferedReader(tempAsmFile);
 
-			if (tempReader.lines().findAny().isEmpty()) {
-				tempReader.close();
-				reader.close();
-				throw new IllegalArgumentException("An Empty File is NOT valid");
+		Validate validator = new Validate(mot);
+		try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+			String line = reader.readLine();
+			if (line == null) {
+				throw new Pass2Exception("An Empty File is NOT valid");
 			}
-			tempReader.close();
-
-			AtomicInteger lineCount = new AtomicInteger();
-			lineCount.set(1); // start at line 1
-			reader.lines().forEachOrdered((String line) -> {
-				lineCount.getAndIncrement();
+			int lineCount = 1; // start at line 1
+			for (; line != null; line = reader.readLine()) {
+				lineCount++;
+				List<String> tempList;
 				try {
-					List<String> tempList = validator.validate(line, lines, lineCount.get());
-					if (tempList != null) {
-						lines.add(tempList);
-						if (lines.size() > 200) {
-							System.out.println("Too many lines");
-							System.exit(1);
-						}
-					}
+					tempList = validator.validate(line, lines, lineCount);
 				} catch (Exception e) {
-					System.err.println(
-							"Error: " + e.getMessage() + " On line " + lineCount.get() + "\nLine: " + line);
-					System.exit(0);
+					throw new Pass2Exception(e.getMessage() + " On line " + lineCount + "\nLine: " + line);
 				}
-			});
-			reader.close();
-		} catch (Exception e) {
-			System.err.println("Error: " + e.getMessage());
-			System.exit(0);
-		}
-		try {
-			objectFile = new FileWriter(args[2]);
-		} catch (IOException e) {
-			System.err.println("Error: " + e.getMessage());
-			System.exit(0);
-		}
-
-		try {
-			listingFile = new FileWriter(args[3]);
+				if (tempList != null) {
+					lines.add(tempList);
+					if (lines.size() > 200) {
+						throw new Pass2Exception("Too many lines");
+					}
+				}
+			}
 		} catch (IOException e) {
-			System.err.println("Error: " + e.getMessage());
-			System.exit(0);
+			throw new Pass2Exception(e.getMessage());
 		}
 
 		int locCount = 0;
@@ -101,19 +92,38 @@ public class AssemblerApp {
 			locCount = 0x0;
 		}
 		int startAddress = locCount;
-		locCount = Pass1.fillTables(lines, locCount, SymTable, LitTable);
+		try {
+			locCount = Pass1.fillTables(lines, locCount, SymTable, LitTable);
+		} catch (IllegalArgumentException e) {
+			throw new Pass2Exception(e.getMessage());
+		}
 		segSize = locCount - startAddress;
-		pass2 = new Pass2(mot, pot, SymTable, LitTable, objectFile, listingFile, segSize);
-
 		try {
+			objectFile = new FileWriter(object);
+			listingFile = new FileWriter(listing);
+			pass2 = new Pass2(mot, pot, SymTable, LitTable, objectFile, listingFile, segSize);
 			pass2.parseInput(lines);
-		} catch (Pass2Exception e) {
-			System.err.println("Error: " + e.getMessage());
-			e.printStackTrace();
+		} catch (IOException e) {
+			throw new Pass2Exception(e.getMessage());
+		} finally {
+			// Pass 2 closes the files when it is done, but not when it fails
+			close(objectFile);
+			close(listingFile);
 		}
 
 		if (!validator.doesFileContainsOrigAndEnd()) {
-			System.err.println("A file must Have excatly one .ORIG and one .END psuedo op");
+			throw new Pass2Exception("A file must Have excatly one .ORIG and one .END psuedo op");
+		}
+	}
+
+	private static void close(FileWriter file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			file.close();
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
 		}
 	}
-}
\ No newline at end of file
+}
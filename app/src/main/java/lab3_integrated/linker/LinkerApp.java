@@ -6,26 +6,39 @@ package lab3_integrated.linker;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Scanner;
 
 public class LinkerApp {
+	public static final String IPLA_OPTION = "--ipla";
+	public static final String BINARY_OPTION = "--binary";
+
 	public static void main(String[] args) throws Exception {
 		// Currently all args are inputs, so like run as ./gradlew
 		// args="../examples/main.o ../examples/lib.o" and it'll output object file to
 		// stdout
-		ArrayList<BufferedReader> inputs = new ArrayList<>();
+		// A leading "--ipla <hex>" gives the initial program load address, so the
+		// linker does not prompt for it, and a leading "--binary" writes the
+		// output as a binary executable image instead of text records
+		Integer givenIpla = null;
+		boolean binary = false;
+		while (args.length > 2 && (args[0].equals(IPLA_OPTION) || args[0].equals(BINARY_OPTION))) {
+			if (args[0].equals(BINARY_OPTION)) {
+				binary = true;
+				args = Arrays.copyOfRange(args, 1, args.length);
+			} else {
+				givenIpla = Integer.parseInt(args[1], 16);
+				args = Arrays.copyOfRange(args, 2, args.length);
+			}
+		}
 		System.out.print("Input files: ");
 		for (int i = 0; i < args.length - 1; i++) { // all but last value (output file path)
 			System.out.print(args[i] + " ");
-			try {
-				FileReader in = new FileReader(args[i]);
-				inputs.add(new BufferedReader(in));
-			} catch (IOException e) {
-				System.err.println("Error: " + e.getMessage());
-				cleanAndExit(inputs, -1);
-			}
 		}
 
 		int ipla = 0x3600;  // java, fantastic language that it is, doesn't support unsigned shorts, so we
@@ -33,37 +46,70 @@ public class LinkerApp {
 		String output = args[args.length - 1];
 		System.out.println("\nOutput file: " + output);
 		System.out.println("Running Pass One");
-		PassOne passOne = new PassOne(ipla);
-		PassOne.PassOneResult passOneResult = null;
 		try {
-			System.out.println("Please enter the initial program load address");
-			Scanner scanner = new Scanner(System.in);
-			ipla = Integer.parseInt(scanner.nextLine(), 16);
-			passOne.ipla = ipla;
-			passOneResult = passOne.executePassOne(inputs);
+			if (givenIpla != null) {
+				ipla = givenIpla;
+			} else {
+				System.out.println("Please enter the initial program load address");
+				Scanner scanner = new Scanner(System.in);
+				ipla = Integer.parseInt(scanner.nextLine(), 16);
+			}
+			link(ipla, binary, Arrays.asList(args).subList(0, args.length - 1), output, System.out);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Error: " + e.getMessage());
+			// Callers in the same JVM catch this instead of the JVM exiting
+			throw new RuntimeException("Linker exit: -1");
+		}
+		System.out.println("Linker done");
+	}
+
+	/**
+	 * Links object files into an executable without printing anything, so it
+	 * can run in a JVM that links many programs at once.
+	 * 
+	 * @param ipla   the initial program load address
+	 * @param binary whether to write a binary executable image instead of text
+	 *               records
+	 * @param inputs paths of the object files, in load order
+	 * @param output path the executable is written to
+	 * @throws IOException      if a file can not be read or written
+	 * @throws RuntimeException if the objects can not be linked, with the reason
+	 */
+	public static void link(int ipla, boolean binary, List<String> inputs, String output) throws IOException {
+		link(ipla, binary, inputs, output, new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	/**
+	 * Links object files into an executable, writing the progress of the passes
+	 * to log.
+	 */
+	private static void link(int ipla, boolean binary, List<String> inputs, String output, PrintStream log)
+			throws IOException {
+		ArrayList<BufferedReader> readers = new ArrayList<>();
+		try {
+			for (String input : inputs) {
+				readers.add(new BufferedReader(new FileReader(input)));
+			}
+			PassOne passOne = new PassOne(ipla);
+			PassOne.PassOneResult passOneResult = passOne.executePassOne(readers);
 			int ipla_after_page = (ipla + passOneResult.totalSize) >>> 9;
 			int ipla_page = ipla >>> 9; // page is represented in the top 7 bits, by removing the bottom 9 we keep only
 										// what page it's in.
 			if (ipla_page != ipla_after_page) {
 				throw new RuntimeException("Program must fit in one page, it currently does not.");
 			}
-			System.out.println("Pass one done");
-		} catch (Exception e) {
-			System.err.println("Error: " + e.getMessage());
-			cleanAndExit(inputs, -1);
-		}
+			log.println("Pass one done");
 
-		try {
-			System.out.println("Running pass two");
-			PassTwo passTwo = new PassTwo(passOneResult, output);
-			passTwo.executePassTwo(output, ipla);
-			System.out.println("Pass two done");
-		} catch (Exception e) {
-			System.err.println("Error: " + e.getMessage());
-			cleanAndExit(inputs, -1);
+			log.println("Running pass two");
+			try (PassTwo passTwo = new PassTwo(passOneResult, output, binary)) {
+				passTwo.executePassTwo(output, ipla);
+			}
+			log.println("Pass two done");
+		} finally {
+			for (BufferedReader reader : readers) {
+				reader.close();
+			}
 		}
-		System.out.println("Linker done");
-		clean(inputs);
 	}
 
 	static void printSymbolTable(HashMap<String, Integer> symTable) {
@@ -72,20 +118,4 @@ public class LinkerApp {
 		});
 	}
 
-	static void cleanAndExit(ArrayList<BufferedReader> inputs, int status) {
-		clean(inputs);
-		throw new RuntimeException("Linker exit: " + status);
-	}
-
-	static void clean(ArrayList<BufferedReader> inputs) {
-		for (BufferedReader input : inputs) {
-			try {
-				input.close();
-			} catch (Exception e) {
-				System.err.println("Error: " + e.getMessage());
-				System.exit(-1);
-			}
-		}
-	}
-
 }
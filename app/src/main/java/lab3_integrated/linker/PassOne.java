@@ -42,7 +42,7 @@ public class PassOne {
         }
     }
 
-    PassOneResult executePassOne(ArrayList<BufferedReader> inputs) throws Exception {
+    PassOneResult executePassOne(ArrayList<BufferedReader> inputs) throws IOException {
         HashMap<String, Integer> extSymbolTable = new HashMap<>();
         ArrayList<Segment> segments = new ArrayList<>();
         int pla = ipla;
@@ -1,23 +1,52 @@
 package lab3_integrated.linker;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 
-public class PassTwo {
+import lab3_integrated.records.Executable_Image;
+import lab3_integrated.records.Record_Writer;
+
+public class PassTwo implements Closeable {
     PassOne.PassOneResult passOneResult;
-    BufferedWriter writer;
+    // Joins the relocated words into T and F records
+    Record_Writer writer;
+    // Set instead of the writer when the executable is a binary image
+    BufferedOutputStream image;
 
     PassTwo(PassOne.PassOneResult passOneResult, String outputFilePath) throws IOException {
+        this(passOneResult, outputFilePath, false);
+    }
+
+    PassTwo(PassOne.PassOneResult passOneResult, String outputFilePath, boolean binary) throws IOException {
         this.passOneResult = passOneResult;
-        this.writer = new BufferedWriter(new FileWriter(outputFilePath));
+        if (binary) {
+            this.image = new BufferedOutputStream(new FileOutputStream(outputFilePath));
+        } else {
+            this.writer = new Record_Writer(new BufferedWriter(new FileWriter(outputFilePath)));
+        }
     }
 
     void executePassTwo(String outputFile, int ipla) throws RuntimeException, IOException {
-        writer.write("HMain  " + String.format("%04X", ipla) + String.format("%04X\n", passOneResult.totalSize));
+        // The words of a binary image are collected and written with the entry point at the end
+        short[] words = image != null ? new short[passOneResult.totalSize] : null;
+        if (words == null) {
+            writer.write("HMain  " + String.format("%04X", ipla) + String.format("%04X\n", passOneResult.totalSize));
+        }
         for (PassOne.Segment segment : passOneResult.segments) {
             segment.input.lines().forEachOrdered((line) -> {
-                if (line.charAt(0) == 'T') {
+                if (line.charAt(0) == 'F') {
+                    // The word at each of count addresses, which has no relocation
+                    int loc = Integer.parseInt(line.substring(1, 5), 16) + segment.pla;
+                    int count = Integer.parseInt(line.substring(5, 9), 16);
+                    short val = (short) Integer.parseInt(line.substring(9, 13), 16);
+                    for (int i = 0; i < count; i++) {
+                        emit(words, ipla, loc + i, val);
+                    }
+                } else if (line.charAt(0) == 'T') {
                     //TODO: maybe clean up these parseInt calls into a method
                     int loc = Integer.parseInt(line.substring(1, 5), 16);
                     loc = loc + segment.pla;
@@ -46,20 +75,56 @@ public class PassTwo {
                             throw new RuntimeException("Symbol \"" + sym + "\" not defined");
                         }
                     }
-                    try {
-                        writer.write("T" + String.format("%04X", loc) + String.format("%04x\n", val));
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
+                    emit(words, ipla, loc, val);
+                    // Words after the first are only in records without a relocation
+                    if (line.length() > 9 && line.charAt(9) != 'X') {
+                        for (int i = 9; i + 4 <= line.length(); i += 4) {
+                            emit(words, ipla, loc + (i - 5) / 4, (short) Integer.parseInt(line.substring(i, i + 4), 16));
+                        }
                     }
                 }
             });
         }
-        try {
-            int main = passOneResult.symTable.get("Main  ");
-            writer.write("E" + String.format("%04X", main));
-            writer.flush();
-        } catch (Exception e) {
+        Integer main = passOneResult.symTable.get("Main  ");
+        if (main == null) {
             throw new RuntimeException("Need a \"Main  \" segment");
         }
+        if (words != null) {
+            image.write(new Executable_Image("Main  ", ipla, main, words).toBinary());
+            image.flush();
+            return;
+        }
+        writer.write("E" + String.format("%04X", main));
+        writer.flush();
+    }
+
+    /**
+     * Stores a relocated word in the words of a binary image, or writes it to the text executable.
+     */
+    private void emit(short[] words, int ipla, int loc, short val) {
+        if (words != null) {
+            if (loc < ipla || loc >= ipla + words.length) {
+                throw new RuntimeException("Text record " + String.format("%04X", loc) + " is outside the program");
+            }
+            words[loc - ipla] = val;
+            return;
+        }
+        try {
+            writer.word(loc, val);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the executable, which executePassTwo only flushes.
+     */
+    @Override
+    public void close() throws IOException {
+        if (image != null) {
+            image.close();
+        } else {
+            writer.close();
+        }
     }
 }
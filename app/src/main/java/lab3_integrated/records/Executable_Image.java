@@ -0,0 +1,208 @@
+package lab3_integrated.records;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * An executable held as the words of the program, with the name, load address
+ * and entry point of its header, convertible between the text format of H, T
+ * and E records and the binary image format. An image is big-endian:
+ *
+ * <pre>
+ * offset   size    field
+ * 0        4       magic, 0x89 'C' 'S' 'E'
+ * 4        2       version, 1
+ * 6        6       program name, in ASCII
+ * 12       2       load address
+ * 14       2       length n, in words
+ * 16       2       entry point
+ * 18       2n      the words, from the load address up
+ * 18 + 2n  4       CRC-32 of the bytes before it
+ * </pre>
+ *
+ * A word takes 2 bytes in an image and at least 4 in the T records of text,
+ * and the Loader stores the words of an image with one bulk copy. A text
+ * executable starts with H, so the Loader tells the formats apart by the magic.
+ * The linker writes images with this class, and the Loader reads them.
+ */
+public final class Executable_Image {
+
+	/**
+	 * Version of the image format written, the only one loaded.
+	 */
+	public static final int VERSION = 1;
+
+	public static final int MAGIC = 0x89435345;
+	public static final int VERSION_OFFSET = 4;
+	public static final int NAME_OFFSET = 6;
+	public static final int LOAD_ADDRESS_OFFSET = 12;
+	public static final int LENGTH_OFFSET = 14;
+	public static final int ENTRY_OFFSET = 16;
+	public static final int HEADER_SIZE = 18;
+	public static final int CHECKSUM_SIZE = 4;
+
+	private static final int MAX_LENGTH = 0xFFFF;
+
+	/**
+	 * Number of addressable words, which the program must fit in.
+	 */
+	private static final int ADDRESSES = 0x10000;
+
+	private final String name;
+	private final int loadAddress;
+	private final int entry;
+	private final short[] words;
+
+	/**
+	 * Creates the image of a program.
+	 *
+	 * @param name        the program name, six letters, digits, spaces or
+	 *                    underscores
+	 * @param loadAddress the address of the first word
+	 * @param entry       the address the program starts at
+	 * @param words       the words of the program, not copied
+	 * @throws IllegalArgumentException if the name is invalid, or the words do
+	 *                                  not fit in memory from the load address
+	 */
+	public Executable_Image(String name, int loadAddress, int entry, short[] words) {
+		if (!name.matches("[A-Za-z0-9 _]{6}")) {
+			throw new IllegalArgumentException("Invalid program name \"" + name + "\"");
+		}
+		if (loadAddress < 0 || words.length > MAX_LENGTH || loadAddress + words.length > ADDRESSES || entry < 0
+				|| entry >= ADDRESSES) {
+			throw new IllegalArgumentException("Program does not fit in memory");
+		}
+		this.name = name;
+		this.loadAddress = loadAddress;
+		this.entry = entry;
+		this.words = words;
+	}
+
+	/**
+	 * Writes the program to a file, replacing it if it exists.
+	 *
+	 * @param path   the file
+	 * @param binary whether to write a binary image rather than text
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path path, boolean binary) throws IOException {
+		Files.write(path, binary ? this.toBinary() : this.toText().getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Returns the program in the binary image format.
+	 *
+	 * @return the bytes of the image
+	 */
+	public byte[] toBinary() {
+		int end = HEADER_SIZE + 2 * this.words.length;
+		ByteBuffer image = ByteBuffer.allocate(end + CHECKSUM_SIZE);
+		image.putInt(MAGIC);
+		image.putShort((short) VERSION);
+		image.put(this.name.getBytes(StandardCharsets.US_ASCII));
+		image.putShort((short) this.loadAddress);
+		image.putShort((short) this.words.length);
+		image.putShort((short) this.entry);
+		image.asShortBuffer().put(this.words);
+		image.putInt(end, checksum(image, end));
+		return image.array();
+	}
+
+	/**
+	 * Returns the checksum of an image: the CRC-32 of its bytes before the
+	 * checksum.
+	 *
+	 * @param image the bytes of an image, from index 0
+	 * @param end   the index of the checksum
+	 * @return the CRC-32 of the bytes from index 0 to end
+	 */
+	public static int checksum(ByteBuffer image, int end) {
+		CRC32 crc = new CRC32();
+		crc.update(image.duplicate().position(0).limit(end));
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Returns the program in the text format, with the words joined into T and F
+	 * records by a Record_Writer.
+	 *
+	 * @return the H, T, F and E records, one per line
+	 */
+	public String toText() {
+		StringWriter text = new StringWriter(HEADER_SIZE + 4 * this.words.length);
+		try (Record_Writer records = new Record_Writer(text)) {
+			records.write(String.format("H%s%04X%04X\n", this.name, this.loadAddress, this.words.length));
+			for (int i = 0; i < this.words.length; i++) {
+				records.word(this.loadAddress + i, this.words[i]);
+			}
+			records.write(String.format("E%04X", this.entry));
+		} catch (IOException e) {
+			// A StringWriter does not throw
+			throw new UncheckedIOException(e);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the program name.
+	 *
+	 * @return the name from the header
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the address the program loads at.
+	 *
+	 * @return the address of the first word
+	 */
+	public int getLoadAddress() {
+		return this.loadAddress;
+	}
+
+	/**
+	 * Returns the address the program starts at.
+	 *
+	 * @return the entry point from the end record or header
+	 */
+	public int getEntry() {
+		return this.entry;
+	}
+
+	/**
+	 * Returns the number of words in the program.
+	 *
+	 * @return the length from the header
+	 */
+	public int getLength() {
+		return this.words.length;
+	}
+
+	/**
+	 * Returns the words of the program, which can not be written through the
+	 * buffer.
+	 *
+	 * @return a read-only buffer of the words
+	 */
+	public ShortBuffer words() {
+		return ShortBuffer.wrap(this.words).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns a word of the program.
+	 *
+	 * @param index the index of the word, from the load address
+	 * @return the word stored at the load address plus the index
+	 */
+	public short getWord(int index) {
+		return this.words[index];
+	}
+}
@@ -0,0 +1,185 @@
+package lab3_integrated.records;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes the records of object files and executables, joining the words of
+ * consecutive addresses into as few text records as it can. A run of words is
+ * written as
+ *
+ * <pre>
+ * Taaaawwww...      the words from address aaaa up, 1 to MAX_RECORD_WORDS of them
+ * Faaaannnnwwww     the word wwww at the nnnn addresses from aaaa up
+ * </pre>
+ *
+ * with an F record for each run of at least MIN_FILL_RUN equal words. A T
+ * record of one word is the record the assembler and linker wrote before, so
+ * files written before still link and load. Records with a relocation after
+ * the word, and records of other types, are written as they are, after the
+ * words before them.
+ */
+public final class Record_Writer implements Closeable, Flushable {
+
+	/**
+	 * Most words in one T record. It keeps the records of object files short
+	 * enough for the linker to read ahead of them.
+	 */
+	public static final int MAX_RECORD_WORDS = 32;
+
+	/**
+	 * Fewest equal words written as an F record instead of in a T record.
+	 */
+	public static final int MIN_FILL_RUN = 8;
+
+	private static final int MAX_FILL_COUNT = 0xFFFF;
+	private static final int SINGLE_TEXT_LENGTH = 9;
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private final Writer out;
+
+	/**
+	 * The words of consecutive addresses from start not written yet.
+	 */
+	private short[] words = new short[MAX_RECORD_WORDS];
+	private int start;
+	private int count;
+
+	/**
+	 * Creates a writer of the records of a file.
+	 *
+	 * @param out where the records are written
+	 */
+	public Record_Writer(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes records, each ending in a newline but the last, which may not.
+	 * The word of a T record of one word without a relocation is joined with
+	 * the words around it.
+	 *
+	 * @param records the records
+	 * @throws IOException if the records can not be written
+	 * @updates this
+	 */
+	public void write(String records) throws IOException {
+		int begin = 0;
+		while (begin < records.length()) {
+			int end = records.indexOf('\n', begin) + 1;
+			if (end == 0) {
+				end = records.length();
+			}
+			if (end - begin == SINGLE_TEXT_LENGTH + 1 && records.charAt(begin) == 'T'
+					&& records.charAt(end - 1) == '\n' && isHex(records, begin + 1, SINGLE_TEXT_LENGTH - 1)) {
+				this.word(Integer.parseInt(records, begin + 1, begin + 5, 16),
+						(short) Integer.parseInt(records, begin + 5, begin + 9, 16));
+			} else {
+				this.writeWords();
+				this.out.write(records, begin, end - begin);
+			}
+			begin = end;
+		}
+	}
+
+	/**
+	 * Writes a word, joined with the words of the addresses next to it.
+	 *
+	 * @param address the address of the word
+	 * @param word    the word
+	 * @throws IOException if the words before it can not be written
+	 * @updates this
+	 */
+	public void word(int address, short word) throws IOException {
+		if (this.count > 0 && address != this.start + this.count) {
+			this.writeWords();
+		}
+		if (this.count == 0) {
+			this.start = address;
+		}
+		if (this.count == this.words.length) {
+			this.words = Arrays.copyOf(this.words, this.count * 2);
+		}
+		this.words[this.count++] = word;
+	}
+
+	/**
+	 * Writes the words not written yet and flushes the writer.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.writeWords();
+		this.out.flush();
+	}
+
+	/**
+	 * Writes the words not written yet and closes the writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.writeWords();
+		this.out.close();
+	}
+
+	/**
+	 * Writes the words not written yet as F records for the long runs of equal
+	 * words and T records for the rest.
+	 */
+	private void writeWords() throws IOException {
+		int textStart = 0;
+		int i = 0;
+		while (i < this.count) {
+			int run = 1;
+			while (i + run < this.count && this.words[i + run] == this.words[i]) {
+				run++;
+			}
+			if (run >= MIN_FILL_RUN) {
+				this.writeText(textStart, i);
+				for (int filled = 0; filled < run; filled += MAX_FILL_COUNT) {
+					StringBuilder record = new StringBuilder(14).append('F');
+					appendHex(record, this.start + i + filled);
+					appendHex(record, Math.min(run - filled, MAX_FILL_COUNT));
+					appendHex(record, this.words[i]);
+					this.out.append(record.append('\n'));
+				}
+				textStart = i + run;
+			}
+			i += run;
+		}
+		this.writeText(textStart, this.count);
+		this.count = 0;
+	}
+
+	/**
+	 * Writes the words from index from up to index to as T records.
+	 */
+	private void writeText(int from, int to) throws IOException {
+		for (int first = from; first < to; first += MAX_RECORD_WORDS) {
+			int last = Math.min(first + MAX_RECORD_WORDS, to);
+			StringBuilder record = new StringBuilder(6 + 4 * (last - first)).append('T');
+			appendHex(record, this.start + first);
+			for (int i = first; i < last; i++) {
+				appendHex(record, this.words[i]);
+			}
+			this.out.append(record.append('\n'));
+		}
+	}
+
+	private static void appendHex(StringBuilder record, int value) {
+		for (int shift = 12; shift >= 0; shift -= 4) {
+			record.append(HEX_DIGITS[(value >>> shift) & 0xF]);
+		}
+	}
+
+	private static boolean isHex(String records, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			if (Character.digit(records.charAt(i), 16) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,234 @@
+package lab3_integrated.simulator.loader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lab3_integrated.records.Executable_Image;
+
+/**
+ * Bounded cache of the programs loaded from executables, keyed by the SHA-256
+ * of the executable's contents, so a program loads without parsing whatever
+ * file or path it is written to. The least recently used program is evicted
+ * when the cache is full. With a directory, each program is also kept there as
+ * a binary image named by its key, for later runs and other processes to
+ * load; a damaged or missing file is just a miss.
+ *
+ * The cache is safe to share between threads. Cached programs are never
+ * written, so every hit copies the same words.
+ */
+public final class Image_Cache {
+
+	/**
+	 * Number of programs held in memory when none is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final String IMAGE_SUFFIX = ".img";
+
+	/**
+	 * Directory the programs are also kept in, or null for none.
+	 */
+	private final Path directory;
+
+	/**
+	 * The programs held in memory, least recently used first.
+	 */
+	private final Map<String, Executable_Image> images;
+
+	private long hits;
+	private long diskHits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a cache held in memory only.
+	 *
+	 * @param capacity the most programs held
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 */
+	public Image_Cache(int capacity) {
+		this.directory = null;
+		this.images = this.leastRecentlyUsed(capacity);
+	}
+
+	/**
+	 * Creates a cache held in memory and in a directory, which is created if it
+	 * does not exist. Only the memory is bounded; the directory keeps every
+	 * program put in the cache.
+	 *
+	 * @param capacity  the most programs held in memory
+	 * @param directory the directory
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 * @throws IOException              if the directory can not be created
+	 */
+	public Image_Cache(int capacity, Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.images = this.leastRecentlyUsed(capacity);
+	}
+
+	/**
+	 * Returns a map in access order that evicts its eldest entry when it holds
+	 * more than capacity entries, counting the evictions.
+	 */
+	private Map<String, Executable_Image> leastRecentlyUsed(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid image cache capacity " + capacity);
+		}
+		return new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Executable_Image> eldest) {
+				if (this.size() > capacity) {
+					Image_Cache.this.evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the key of the contents of an executable.
+	 *
+	 * @param bytes the contents, from index 0 to the limit
+	 * @return the SHA-256 of the contents, in hex
+	 */
+	static String key(ByteBuffer bytes) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(bytes.duplicate().position(0));
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the program cached for a key, from memory or else from the
+	 * directory, and counts the hit or miss.
+	 *
+	 * @param key the key of an executable
+	 * @return the program, or null if it is not cached
+	 * @updates this
+	 */
+	Executable_Image get(String key) {
+		synchronized (this) {
+			Executable_Image image = this.images.get(key);
+			if (image != null) {
+				this.hits++;
+				return image;
+			}
+		}
+		Executable_Image image = null;
+		Path file = this.directory == null ? null : this.directory.resolve(key + IMAGE_SUFFIX);
+		if (file != null && Files.isRegularFile(file)) {
+			try {
+				image = Loader.readImage(file.toString());
+			} catch (Loader_Exception e) {
+				// Loaded again from the executable and the file replaced
+			}
+		}
+		synchronized (this) {
+			if (image == null) {
+				this.misses++;
+				return null;
+			}
+			this.diskHits++;
+			this.images.put(key, image);
+			return image;
+		}
+	}
+
+	/**
+	 * Caches the program of a key, writing it to the directory if there is one.
+	 * The file is written under a temporary name and moved into place, so other
+	 * processes never read part of it. A program that can not be written to the
+	 * directory is still cached in memory.
+	 *
+	 * @param key   the key of an executable
+	 * @param image the program it loads
+	 * @updates this
+	 */
+	void put(String key, Executable_Image image) {
+		synchronized (this) {
+			this.images.put(key, image);
+		}
+		if (this.directory == null) {
+			return;
+		}
+		try {
+			Path temporary = Files.createTempFile(this.directory, key, ".tmp");
+			try {
+				image.write(temporary, true);
+				Files.move(temporary, this.directory.resolve(key + IMAGE_SUFFIX), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		} catch (IOException e) {
+			// The directory only saves parsing, so the load goes on without it
+		}
+	}
+
+	/**
+	 * Returns the number of loads that found their program in memory.
+	 *
+	 * @return the number of hits in memory
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of loads that found their program in the directory.
+	 *
+	 * @return the number of hits in the directory
+	 */
+	public synchronized long getDiskHits() {
+		return this.diskHits;
+	}
+
+	/**
+	 * Returns the number of loads that parsed the executable.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of programs evicted from memory to make room.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the number of programs held in memory.
+	 *
+	 * @return the size of the cache in memory
+	 */
+	public synchronized int size() {
+		return this.images.size();
+	}
+
+	/**
+	 * Returns the statistics of the cache on one line.
+	 */
+	@Override
+	public synchronized String toString() {
+		return "Image cache: " + this.hits + " hits, " + this.diskHits + " from disk, " + this.misses + " misses, "
+				+ this.evictions + " evictions, " + this.images.size() + " programs held";
+	}
+}
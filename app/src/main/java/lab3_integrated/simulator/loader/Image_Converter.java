@@ -0,0 +1,33 @@
+package lab3_integrated.simulator.loader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Converts an executable between the text format of H, T and E records and
+ * the binary image format of lab3_integrated.records.Executable_Image, reading
+ * either format with the Loader.
+ *
+ * Usage: Image_Converter binary|text <executable> <output file>
+ */
+public final class Image_Converter {
+
+	private Image_Converter() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 3 || !(args[0].equals("binary") || args[0].equals("text"))) {
+			System.err.println("Usage: Image_Converter binary|text <executable> <output file>");
+			System.exit(1);
+		}
+		try {
+			Loader.readImage(args[1]).write(Path.of(args[2]), args[0].equals("binary"));
+		} catch (Loader_Exception e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		} catch (IOException e) {
+			System.err.println("Could not write the executable: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
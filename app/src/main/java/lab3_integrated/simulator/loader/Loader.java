@@ -1,182 +1,466 @@
 package lab3_integrated.simulator.loader;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import lab3_integrated.records.Executable_Image;
+import lab3_integrated.simulator.machine.Flat_Memory;
 import lab3_integrated.simulator.machine.Machine;
-import lab3_integrated.simulator.simulator.Simulator;
+import lab3_integrated.simulator.machine.Memory;
 
+/**
+ * Loads executables into a machine. The file is read as bytes through a
+ * FileChannel, or mapped in the mapped mode, and each record is validated and
+ * decoded in place, so loading creates no objects per record. Records are
+ * separated by \n, \r\n or \r, and T records of many words and F records are
+ * read as lab3_integrated.records.Record_Writer describes them. Binary images,
+ * in the format of lab3_integrated.records.Executable_Image, are checked and their words stored in memory
+ * with one bulk copy. With an Image_Cache, a text executable loaded before is
+ * stored the same way.
+ */
 public class Loader {
 
-	private static int initalLoadAddress;
-	private static int upperBound;
+	private static final int HEADER_LENGTH = 15;
+	private static final int TEXT_LENGTH = 9;
+	private static final int FILL_LENGTH = 13;
+	private static final int END_LENGTH = 5;
+	private static final int NAME_LENGTH = 6;
 
 	/**
-	 * This method will loop until the valid file is inputed then it will load and
-	 * set the machine contents
-	 * 
-	 * @param path - file path to load from
+	 * Smallest buffer a file is read into.
 	 */
-	public static void parseInputFile(String path, Machine machine, Scanner scan) {
+	private static final int MIN_BUFFER_SIZE = 8192;
 
-		boolean complete = false;
-		boolean hFlag = false;
-		boolean eFlag = false;
+	/**
+	 * Value of each hex digit, indexed by character, or -1 for the characters
+	 * that are not hex digits.
+	 */
+	private static final byte[] HEX_VALUES = new byte[256];
 
-		while (!complete) {
-			int i = 0;
-			try {
-				File file = new File(path);
-				scan = new Scanner(file);
-				while (scan.hasNextLine()) {
-					String data = scan.nextLine();
-					switch (data.charAt(0)) {
-					case 'H':
-						boolean header = headerLineValidation(data);
-						if (header && i == 0) {
-							loadHeaderRecordContent(data, machine);
-						} else {
-							invalidInputErrorNotice("header invalid");
-						}
-						i++;
-						hFlag = true;
-						break;
-					case 'T':
-						boolean text = textLineValidation(data);
-						if (text) {
-							loadTextRecordContent(data, machine);
-						} else {
-							invalidInputErrorNotice("text record invalid");
-						}
-						i++;
-						break;
-					case 'E':
-						boolean end = endLineValidation(data);
-						// TODO: check end is the last record
-						if (end && !scan.hasNextLine()) {
-							loadEndRecordContent(data, machine);
-						} else {
-							invalidInputErrorNotice("end record invalid");
-						}
-						i++;
-						eFlag = true;
-						break;
-					default:
-						invalidInputErrorNotice("unspecified error");
-						break;
-					}
-				}
-				if (!hFlag || !eFlag) {
-					invalidInputErrorNotice("missing a header or end record");
-				}
-				scan.close();
-			} catch (FileNotFoundException e) {
-				invalidFilePath();
-				System.exit(1);
-			}
-			complete = true;
+	static {
+		Arrays.fill(HEX_VALUES, (byte) -1);
+		for (int digit = 0; digit < 16; digit++) {
+			HEX_VALUES[Character.forDigit(digit, 16)] = (byte) digit;
+			HEX_VALUES[Character.toUpperCase(Character.forDigit(digit, 16))] = (byte) digit;
 		}
 	}
 
+	private int initalLoadAddress;
+	private int upperBound;
+
 	/**
-	 * This method will validate that the header line meets the machine conditions
+	 * Whether regular files are mapped instead of read into the buffer.
+	 */
+	private final boolean mapped;
+
+	/**
+	 * Cache of the programs loaded from text executables, or null for none.
+	 */
+	private final Image_Cache cache;
+
+	/**
+	 * Bytes of the last file read, reused by the next read if it fits.
+	 */
+	private byte[] buffer = new byte[0];
+
+	/**
+	 * Creates a loader reading the files it loads into a buffer.
+	 */
+	public Loader() {
+		this(false);
+	}
+
+	/**
+	 * Creates a loader that maps regular files into memory with FileChannel.map
+	 * and parses them in place if mapped is true. Other files, such as pipes, are
+	 * always read into a buffer. Mapping saves copying large executables, but
+	 * costs more than reading small ones.
 	 * 
-	 * @param line - header record
-	 * @return boolean indicating true if valid and false otherwise
+	 * @param mapped whether to map regular files
+	 */
+	public Loader(boolean mapped) {
+		this(mapped, null);
+	}
+
+	/**
+	 * Creates a loader that loads text executables through a cache: a file with
+	 * the content of one loaded before is copied into memory from the program
+	 * cached for it, without parsing or validating its records again. Binary
+	 * images are already stored with one bulk copy, so they are not cached.
 	 * 
+	 * @param mapped whether to map regular files
+	 * @param cache  the cache, which may be shared by loaders on many threads,
+	 *               or null for none
 	 */
-	public static boolean headerLineValidation(String line) {
-		String regex = "^H[A-Za-z0-9 _]{6}[0-9A-Fa-f]{4}[0-9A-Fa-f]{4}$";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(line);
+	public Loader(boolean mapped, Image_Cache cache) {
+		this.mapped = mapped;
+		this.cache = cache;
+	}
 
-		return (matcher.matches());
+	/**
+	 * This method will load the file into the machine, ending the program with an
+	 * error message if the file can not be read or is invalid
+	 * 
+	 * @param path - file path to load from
+	 */
+	public static void parseInputFile(String path, Machine machine, Scanner scan) {
+		try {
+			new Loader().load(path, machine);
+		} catch (Loader_Exception e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
 	}
 
 	/**
-	 * This method will set the machine name and determine the maximum length of the
-	 * machine
+	 * This method will load and set the machine contents from the file. Each
+	 * Loader holds the bounds of the last file it loaded, so loaders on different
+	 * threads do not interfere.
 	 * 
-	 * @param line - header record
+	 * @param path - file path to load from
+	 * @param machine - machine to load into
+	 * @throws Loader_Exception if the file can not be read or is invalid
 	 */
-	public static void loadHeaderRecordContent(String line, Machine machine) {
+	public void load(String path, Machine machine) throws Loader_Exception {
+		ByteBuffer bytes = this.readFile(path);
+		if (this.cache == null || isImage(bytes)) {
+			this.load(bytes, machine);
+			return;
+		}
+		String key = Image_Cache.key(bytes);
+		Executable_Image image = this.cache.get(key);
+		if (image == null) {
+			image = this.decode(bytes);
+			if (image == null) {
+				// Records outside of the program can not be held in an image
+				this.load(bytes, machine);
+				return;
+			}
+			this.cache.put(key, image);
+		}
+		this.load(image, machine);
+	}
 
-		machine.name = line.substring(1, 7);
-		initalLoadAddress = Integer.parseInt(line.substring(7, 11), 16);
-		int machineLength = Integer.parseInt(line.substring(11), 16);
-		Loader.upperBound = machineLength + initalLoadAddress;
+	/**
+	 * Reads a text executable or binary image into the image of its program.
+	 *
+	 * @param path the executable
+	 * @return the image of the program
+	 * @throws Loader_Exception if the file can not be read, is invalid, or has a
+	 *                          text record outside of the program its header
+	 *                          gives
+	 */
+	public static Executable_Image readImage(String path) throws Loader_Exception {
+		Loader loader = new Loader();
+		Executable_Image image = loader.decode(loader.readFile(path));
+		if (image == null) {
+			throw invalidInputError(
+					loader.getUpperBound() > Memory.SIZE ? "header invalid" : "text record outside of the program");
+		}
+		return image;
+	}
 
+	/**
+	 * Loads a program with one bulk copy of its words.
+	 * 
+	 * @param image   the program
+	 * @param machine machine to load into
+	 */
+	void load(Executable_Image image, Machine machine) {
+		machine.name = image.getName();
+		this.initalLoadAddress = image.getLoadAddress();
+		this.upperBound = image.getLoadAddress() + image.getLength();
+		machine.memory.write(image.getLoadAddress(), image.words());
+		machine.setPC(image.getEntry());
 	}
 
 	/**
-	 * This method will validate that the text line meets the machine conditions
+	 * Returns the program an executable loads, from its load address to its
+	 * upper bound.
 	 * 
-	 * @param line - text record
-	 * @return boolean indicating true if valid and false otherwise
+	 * @param bytes the contents of an executable
+	 * @return the program, or null if the header gives bounds outside of memory
+	 *         or a text record is outside of the bounds
+	 * @throws Loader_Exception if the executable is invalid
+	 */
+	Executable_Image decode(ByteBuffer bytes) throws Loader_Exception {
+		int[] written = { Memory.SIZE, -1 };
+		Memory memory = new Flat_Memory() {
+			@Override
+			public void write(int address, short value) {
+				written[0] = Math.min(written[0], address);
+				written[1] = Math.max(written[1], address);
+				super.write(address, value);
+			}
+		};
+		Machine machine = new Machine(memory);
+		this.load(bytes, machine);
+		int start = this.initalLoadAddress;
+		int end = this.upperBound;
+		if (end > Memory.SIZE || (written[1] >= 0 && (written[0] < start || written[1] >= end))) {
+			return null;
+		}
+		short[] words = new short[end - start];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = memory.read(start + i);
+		}
+		return new Executable_Image(machine.name, start, machine.PC, words);
+	}
+
+	/**
+	 * Reads a file into the buffer, or maps it in the mapped mode.
 	 * 
+	 * @param path the file
+	 * @return the bytes of the file, from position 0 to the limit
+	 * @throws Loader_Exception if the file can not be read
 	 */
-	public static boolean textLineValidation(String line) {
-		String regex = "^T[0-9A-Fa-f]{4}[0-9A-Fa-f]{4}$";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(line);
+	ByteBuffer readFile(String path) throws Loader_Exception {
+		Path file = Path.of(path);
+		try (FileChannel channel = FileChannel.open(file)) {
+			if (this.mapped && Files.isRegularFile(file) && channel.size() <= Integer.MAX_VALUE) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			return this.read(channel);
+		} catch (IOException e) {
+			throw new Loader_Exception("FILE NOT FOUND, please try again");
+		}
+	}
 
-		return (matcher.matches());
+	/**
+	 * Reads the channel to its end into the buffer, growing the buffer if the
+	 * channel holds more than it fits.
+	 * 
+	 * @param channel the channel to read
+	 * @return the bytes read, from position 0 to the limit
+	 * @throws IOException if the channel can not be read
+	 */
+	private ByteBuffer read(FileChannel channel) throws IOException {
+		// One byte past the size, so the end of the file is found without growing
+		long size = Math.min(channel.size() + 1, Integer.MAX_VALUE);
+		if (this.buffer.length < size) {
+			this.buffer = new byte[Math.max((int) size, MIN_BUFFER_SIZE)];
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(this.buffer);
+		while (true) {
+			if (!bytes.hasRemaining()) {
+				this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+				bytes = ByteBuffer.wrap(this.buffer).position(bytes.position());
+			}
+			if (channel.read(bytes) < 0) {
+				return bytes.flip();
+			}
+		}
 	}
 
 	/**
-	 * This method will store the word in the correct location according the the
-	 * machine
+	 * Loads the records held from index 0 to the limit of the buffer into the
+	 * machine, reading them with absolute gets, or the binary image the buffer
+	 * holds.
 	 * 
-	 * @param line - text record
+	 * @param bytes   the contents of an executable
+	 * @param machine machine to load into
+	 * @throws Loader_Exception if the executable is invalid
 	 */
-	public static void loadTextRecordContent(String line, Machine machine) {
-		int dataToStore = Integer.parseInt(line.substring(5), 16);
-		int addressToStoreAt = Integer.parseInt(line.substring(1, 5), 16);
-		// use getpage method
-		int page = machine.getMemoryPageLocation(addressToStoreAt);
-		int wordLocation = machine.getMemoryWordLocation(addressToStoreAt);
-		machine.memory[page][wordLocation] = (short) dataToStore;
+	void load(ByteBuffer bytes, Machine machine) throws Loader_Exception {
+		int length = bytes.limit();
+		if (isImage(bytes)) {
+			this.loadImage(bytes, machine);
+			return;
+		}
+		boolean hFlag = false;
+		boolean eFlag = false;
+		int i = 0;
+		int start = 0;
+		while (start < length) {
+			int end = start;
+			while (end < length && bytes.get(end) != '\n' && bytes.get(end) != '\r') {
+				end++;
+			}
+			int next = end + 1;
+			if (end < length && bytes.get(end) == '\r' && next < length && bytes.get(next) == '\n') {
+				next++;
+			}
+			int recordLength = end - start;
+			if (recordLength == 0) {
+				throw invalidInputError("unspecified error");
+			}
+			switch (bytes.get(start)) {
+			case 'H':
+				if (i == 0 && recordLength == HEADER_LENGTH && isName(bytes, start + 1)) {
+					int address = hex4(bytes, start + 7);
+					int machineLength = hex4(bytes, start + 11);
+					if ((address | machineLength) < 0) {
+						throw invalidInputError("header invalid");
+					}
+					byte[] name = new byte[NAME_LENGTH];
+					bytes.get(start + 1, name);
+					machine.name = new String(name, StandardCharsets.US_ASCII);
+					this.initalLoadAddress = address;
+					this.upperBound = machineLength + address;
+				} else {
+					throw invalidInputError("header invalid");
+				}
+				i++;
+				hFlag = true;
+				break;
+			case 'T':
+				// The address, then one or more words
+				int address = recordLength >= TEXT_LENGTH && (recordLength - 1) % 4 == 0 ? hex4(bytes, start + 1) : -1;
+				int words = (recordLength - 5) / 4;
+				if (address < 0 || address + words > Memory.SIZE) {
+					throw invalidInputError("text record invalid");
+				}
+				for (int w = 0; w < words; w++) {
+					int word = hex4(bytes, start + 5 + 4 * w);
+					if (word < 0) {
+						throw invalidInputError("text record invalid");
+					}
+					machine.memory.write(machine.getMemoryPageLocation(address + w),
+							machine.getMemoryWordLocation(address + w), (short) word);
+				}
+				i++;
+				break;
+			case 'F':
+				int fillAddress = recordLength == FILL_LENGTH ? hex4(bytes, start + 1) : -1;
+				int count = recordLength == FILL_LENGTH ? hex4(bytes, start + 5) : -1;
+				int fill = recordLength == FILL_LENGTH ? hex4(bytes, start + 9) : -1;
+				if ((fillAddress | count | fill) < 0 || count == 0 || fillAddress + count > Memory.SIZE) {
+					throw invalidInputError("fill record invalid");
+				}
+				for (int w = 0; w < count; w++) {
+					machine.memory.write(machine.getMemoryPageLocation(fillAddress + w),
+							machine.getMemoryWordLocation(fillAddress + w), (short) fill);
+				}
+				i++;
+				break;
+			case 'E':
+				int pc = recordLength == END_LENGTH ? hex4(bytes, start + 1) : -1;
+				// The end record must be the last line
+				if (pc < 0 || next < length) {
+					throw invalidInputError("end record invalid");
+				}
+				machine.setPC(pc);
+				i++;
+				eFlag = true;
+				break;
+			default:
+				throw invalidInputError("unspecified error");
+			}
+			start = next;
+		}
+		if (!hFlag || !eFlag) {
+			throw invalidInputError("missing a header or end record");
+		}
+	}
 
+	/**
+	 * Returns whether the bytes start with the magic of a binary image.
+	 */
+	private static boolean isImage(ByteBuffer bytes) {
+		return bytes.limit() >= Integer.BYTES && bytes.getInt(0) == Executable_Image.MAGIC;
 	}
 
 	/**
-	 * This method will validate that the header line meets the machine conditions
+	 * Checks the header, length and checksum of a binary image and copies its
+	 * words into memory.
 	 * 
-	 * @param line - end record
-	 * @return boolean indicating true if valid and false otherwise
+	 * @param bytes   the image, from index 0 to the limit
+	 * @param machine machine to load into
+	 * @throws Loader_Exception if the image is invalid
+	 */
+	private void loadImage(ByteBuffer bytes, Machine machine) throws Loader_Exception {
+		int length = bytes.limit();
+		if (length < Executable_Image.HEADER_SIZE + Executable_Image.CHECKSUM_SIZE) {
+			throw invalidInputError("image header invalid");
+		}
+		if (bytes.getShort(Executable_Image.VERSION_OFFSET) != Executable_Image.VERSION) {
+			throw invalidInputError("image version unsupported");
+		}
+		int address = bytes.getShort(Executable_Image.LOAD_ADDRESS_OFFSET) & 0xFFFF;
+		int words = bytes.getShort(Executable_Image.LENGTH_OFFSET) & 0xFFFF;
+		int pc = bytes.getShort(Executable_Image.ENTRY_OFFSET) & 0xFFFF;
+		if (!isName(bytes, Executable_Image.NAME_OFFSET) || address + words > Memory.SIZE) {
+			throw invalidInputError("image header invalid");
+		}
+		int end = Executable_Image.HEADER_SIZE + 2 * words;
+		if (length != end + Executable_Image.CHECKSUM_SIZE) {
+			throw invalidInputError("image length invalid");
+		}
+		if (Executable_Image.checksum(bytes, end) != bytes.getInt(end)) {
+			throw invalidInputError("image checksum invalid");
+		}
+		byte[] name = new byte[NAME_LENGTH];
+		bytes.get(Executable_Image.NAME_OFFSET, name);
+		machine.name = new String(name, StandardCharsets.US_ASCII);
+		this.initalLoadAddress = address;
+		this.upperBound = address + words;
+		machine.memory.write(address,
+				bytes.duplicate().limit(end).position(Executable_Image.HEADER_SIZE).asShortBuffer());
+		machine.setPC(pc);
+	}
+
+	/**
+	 * Returns the address the last loaded program starts at.
 	 * 
+	 * @return the initial load address from the header record
 	 */
-	public static boolean endLineValidation(String line) {
-		String regex = "^E[0-9A-Fa-f]{4}$";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(line);
+	public int getInitialLoadAddress() {
+		return this.initalLoadAddress;
+	}
 
-		return (matcher.matches());
+	/**
+	 * Returns the address just past the last loaded program.
+	 * 
+	 * @return the initial load address plus the length from the header record
+	 */
+	public int getUpperBound() {
+		return this.upperBound;
 	}
 
 	/**
-	 * This method will use the end record to set the program counter
+	 * Returns the value of four hex digits.
 	 * 
-	 * @param line - end record
+	 * @param bytes  the bytes holding the digits
+	 * @param offset index of the first digit
+	 * @return the value, or -1 if one of the bytes is not a hex digit
 	 */
-	public static void loadEndRecordContent(String line, Machine machine) {
-		// use setpc method
-		machine.setPC(Short.parseShort(line.substring(1), 16));
+	static int hex4(ByteBuffer bytes, int offset) {
+		int d0 = HEX_VALUES[bytes.get(offset) & 0xFF];
+		int d1 = HEX_VALUES[bytes.get(offset + 1) & 0xFF];
+		int d2 = HEX_VALUES[bytes.get(offset + 2) & 0xFF];
+		int d3 = HEX_VALUES[bytes.get(offset + 3) & 0xFF];
+		if ((d0 | d1 | d2 | d3) < 0) {
+			return -1;
+		}
+		return (d0 << 12) | (d1 << 8) | (d2 << 4) | d3;
 	}
 
-	public static void invalidInputErrorNotice(String problem) {
-		System.err.println(
-				"INVALID FILE CONTENTS, please try a different file that meets the requirements. Requirement failed: "
-						+ problem);
-		System.exit(1);
+	/**
+	 * Returns whether the six bytes are a valid program name: letters, digits,
+	 * spaces and underscores.
+	 */
+	private static boolean isName(ByteBuffer bytes, int offset) {
+		for (int i = offset; i < offset + NAME_LENGTH; i++) {
+			byte b = bytes.get(i);
+			boolean valid = (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == ' '
+					|| b == '_';
+			if (!valid) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	public static void invalidFilePath() {
-		System.err.println("FILE NOT FOUND, please try again");
-		System.exit(1);
+	private static Loader_Exception invalidInputError(String problem) {
+		return new Loader_Exception(
+				"INVALID FILE CONTENTS, please try a different file that meets the requirements. Requirement failed: "
+						+ problem);
 	}
 
 }
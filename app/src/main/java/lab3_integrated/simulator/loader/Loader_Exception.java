@@ -0,0 +1,17 @@
+package lab3_integrated.simulator.loader;
+
+/**
+ * Thrown when an executable can not be read or does not meet the requirements
+ * of the loader. The message is the one shown to the user.
+ */
+public class Loader_Exception extends Exception {
+
+	/**
+	 * Default constructor of the exception class.
+	 * 
+	 * @param message message to print to the console
+	 */
+	public Loader_Exception(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,102 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.PrintStream;
+
+/**
+ * Console that collects output in a buffer and writes it to a stream once the
+ * buffer reaches a size threshold or the device is flushed. With a threshold of
+ * zero every output is written straight away.
+ *
+ * In raw mode only the characters of the program are written: OUT, PUTS and
+ * OUTN output without their descriptions, and no simulator messages.
+ */
+public class Buffered_Console implements Console_Device {
+
+	/**
+	 * Threshold used by the simulator in Quiet mode.
+	 */
+	public static final int DEFAULT_THRESHOLD = 8192;
+
+	private static final String NEWLINE = System.lineSeparator();
+
+	private final PrintStream out;
+	private final int threshold;
+	private final boolean raw;
+
+	/**
+	 * Output not written to the stream yet.
+	 */
+	protected final StringBuilder buffer;
+
+	/**
+	 * Constructor with the stream, threshold and mode as the parameters.
+	 * 
+	 * @param out       the stream output is written to
+	 * @param threshold number of buffered characters at which the buffer is
+	 *                  written out
+	 * @param raw       whether only the program's characters are written
+	 */
+	public Buffered_Console(PrintStream out, int threshold, boolean raw) {
+		this.out = out;
+		this.threshold = threshold;
+		this.raw = raw;
+		this.buffer = new StringBuilder();
+	}
+
+	@Override
+	public void outputCharacter(char c) {
+		if (this.raw) {
+			this.buffer.append(c);
+		} else {
+			this.buffer.append("\nThe character formed in R0 in ASCII: ").append(c).append("\n").append(NEWLINE);
+		}
+		this.written();
+	}
+
+	@Override
+	public void outputString(CharSequence s) {
+		if (this.raw) {
+			this.buffer.append(s);
+		} else {
+			this.buffer.append("\nThe null-terminated String formed from the address in R0 in ASCII: ").append(s)
+					.append("\n").append(NEWLINE);
+		}
+		this.written();
+	}
+
+	@Override
+	public void outputNumber(short value) {
+		if (this.raw) {
+			this.buffer.append(value).append(NEWLINE);
+		} else {
+			this.buffer.append("\nThe current value in R0 in decimal: ").append(value).append("\n").append(NEWLINE);
+		}
+		this.written();
+	}
+
+	@Override
+	public void message(String text) {
+		if (!this.raw) {
+			this.buffer.append(text);
+			this.written();
+		}
+	}
+
+	@Override
+	public void flush() {
+		if (this.buffer.length() > 0) {
+			this.out.print(this.buffer);
+			this.buffer.setLength(0);
+		}
+		this.out.flush();
+	}
+
+	/**
+	 * Writes the buffer out if it reached the threshold.
+	 */
+	private void written() {
+		if (this.buffer.length() >= this.threshold) {
+			this.flush();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Console that keeps all output in memory instead of writing it anywhere, for
+ * checking the output of a program in tests and batch runs.
+ */
+public class Capture_Console extends Buffered_Console {
+
+	/**
+	 * Constructor with the mode as the parameter.
+	 * 
+	 * @param raw whether only the program's characters are kept
+	 */
+	public Capture_Console(boolean raw) {
+		super(null, Integer.MAX_VALUE, raw);
+	}
+
+	@Override
+	public void flush() {
+		/* Output is kept until cleared */
+	}
+
+	/**
+	 * Returns everything output since the console was created or cleared.
+	 * 
+	 * @return the captured output
+	 */
+	public String getOutput() {
+		return this.buffer.toString();
+	}
+
+	/**
+	 * Drops the captured output.
+	 */
+	public void clear() {
+		this.buffer.setLength(0);
+	}
+}
@@ -0,0 +1,42 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Where the Machine writes the output of the OUT, PUTS and OUTN traps, and its
+ * own messages such as the input prompts and the HALT notice.
+ */
+public interface Console_Device {
+
+	/**
+	 * Writes the character output by OUT.
+	 * 
+	 * @param c the character formed from R0
+	 */
+	public void outputCharacter(char c);
+
+	/**
+	 * Writes the string output by PUTS.
+	 * 
+	 * @param s the characters of the null-terminated string
+	 */
+	public void outputString(CharSequence s);
+
+	/**
+	 * Writes the number output by OUTN.
+	 * 
+	 * @param value the value of R0
+	 */
+	public void outputNumber(short value);
+
+	/**
+	 * Writes a message of the simulator that is not output of the program.
+	 * 
+	 * @param text the message, including its line breaks
+	 */
+	public void message(String text);
+
+	/**
+	 * Writes out anything still held by the device, called before input is read
+	 * and when the machine halts.
+	 */
+	public void flush();
+}
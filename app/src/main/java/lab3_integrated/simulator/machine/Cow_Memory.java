@@ -0,0 +1,115 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Memory held as 128 pages of 512 words that can be forked, sharing every page
+ * with the fork until one of them writes to it. A write to a shared page first
+ * copies that page, so a fork only costs memory for the pages it dirties.
+ *
+ * Shared pages are never written, so forks may run on other threads once they
+ * are handed over. A memory must not be forked while it is being written.
+ */
+public class Cow_Memory implements Memory {
+
+	private static final int PAGE_SHIFT = 9;
+	private static final int WORD_MASK = PAGE_SIZE - 1;
+	private static final int PAGE_MASK = PAGE_COUNT - 1;
+
+	/**
+	 * Page every page of a new memory starts as, shared by all of them.
+	 */
+	private static final short[] ZERO_PAGE = new short[PAGE_SIZE];
+
+	/**
+	 * The pages of memory, some of which may be shared.
+	 */
+	private final short[][] pages;
+
+	/**
+	 * Whether each page was copied by this memory and so can be written in place.
+	 */
+	private final boolean[] owned;
+
+	/**
+	 * Number of pages copied since the memory was created or forked.
+	 */
+	private int copiedPages;
+
+	/**
+	 * Creates memory with every word set to zero, all of it in one shared page.
+	 */
+	public Cow_Memory() {
+		this.pages = new short[PAGE_COUNT][];
+		this.owned = new boolean[PAGE_COUNT];
+		for (int page = 0; page < PAGE_COUNT; page++) {
+			this.pages[page] = ZERO_PAGE;
+		}
+	}
+
+	/**
+	 * Creates memory sharing every page of another.
+	 *
+	 * @param parent the memory to share the pages of
+	 */
+	private Cow_Memory(Cow_Memory parent) {
+		this.pages = parent.pages.clone();
+		this.owned = new boolean[PAGE_COUNT];
+	}
+
+	/**
+	 * Returns a memory with the same words as this one, sharing all of its pages.
+	 * The pages are then shared by both, so the next write to any page of either
+	 * memory copies it.
+	 *
+	 * @return the fork
+	 * @updates this
+	 */
+	public Cow_Memory fork() {
+		for (int page = 0; page < PAGE_COUNT; page++) {
+			this.owned[page] = false;
+		}
+		this.copiedPages = 0;
+		return new Cow_Memory(this);
+	}
+
+	/**
+	 * Returns the number of pages copied by writes since the memory was created
+	 * or forked.
+	 *
+	 * @return the number of pages copied
+	 */
+	public int getCopiedPages() {
+		return this.copiedPages;
+	}
+
+	@Override
+	public short read(int address) {
+		return this.pages[(address >>> PAGE_SHIFT) & PAGE_MASK][address & WORD_MASK];
+	}
+
+	@Override
+	public void write(int address, short value) {
+		this.writablePage((address >>> PAGE_SHIFT) & PAGE_MASK)[address & WORD_MASK] = value;
+	}
+
+	@Override
+	public short read(int page, int word) {
+		return this.pages[page][word];
+	}
+
+	@Override
+	public void write(int page, int word, short value) {
+		this.writablePage(page)[word] = value;
+	}
+
+	/**
+	 * Returns a page this memory can write, copying it first if it is shared.
+	 */
+	private short[] writablePage(int page) {
+		if (!this.owned[page]) {
+			this.pages[page] = this.pages[page].clone();
+			this.owned[page] = true;
+			this.copiedPages++;
+		}
+		return this.pages[page];
+	}
+}
@@ -0,0 +1,205 @@
+package lab3_integrated.simulator.machine;
+
+import java.util.Arrays;
+
+/**
+ * Cache of decoded instructions indexed by address. Each entry packs the
+ * opcode and operand fields of the word at that address into an int:
+ *
+ * bits 0-3 opcode, 4-6 DR/nzp/L, 7-9 SR1/BaseR, 10-12 SR2, 13 immediate flag,
+ * 14-22 pgoffset9 (index6, imm5 and trapvect8 are its lower bits), 31 valid
+ *
+ * Entries are filled lazily the first time an address is fetched and must be
+ * invalidated whenever the word at that address is written.
+ */
+public class Decode_Cache {
+
+	/**
+	 * Value of an entry that has not been decoded yet.
+	 */
+	public static final int EMPTY = 0;
+
+	/**
+	 * Number of addressable words in memory.
+	 */
+	private static final int SIZE = 0x10000;
+
+	/**
+	 * Positions of each field within an entry.
+	 */
+	private static final int DR_SHIFT = 4;
+	private static final int SR1_SHIFT = 7;
+	private static final int SR2_SHIFT = 10;
+	private static final int IMM_SHIFT = 13;
+	private static final int OPERAND_SHIFT = 14;
+	private static final int VALID = 1 << 31;
+
+	/**
+	 * Masks for each of the fields after they are shifted down.
+	 */
+	private static final int OPCODE_MASK = 0xF;
+	private static final int REG_MASK = 0x7;
+	private static final int IMM5_MASK = 0x1F;
+	private static final int INDEX6_MASK = 0x3F;
+	private static final int TRAPVECT8_MASK = 0xFF;
+	private static final int PGOFFSET9_MASK = 0x1FF;
+
+	/**
+	 * Decoded entries, one per address.
+	 */
+	private final int[] entries;
+
+	/**
+	 * Number of lookups that found a decoded entry and those that did not.
+	 */
+	private long hits;
+	private long misses;
+
+	/**
+	 * Default constructor.
+	 */
+	public Decode_Cache() {
+		this.entries = new int[SIZE];
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/**
+	 * Returns the decoded entry for the address, or EMPTY if the word has not been
+	 * decoded since it was last written.
+	 *
+	 * @param address the address of the instruction
+	 * @return the decoded entry or EMPTY
+	 */
+	public int get(int address) {
+		int entry = this.entries[address];
+		if (entry == EMPTY) {
+			this.misses++;
+		} else {
+			this.hits++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Decodes the word and stores it as the entry for the address.
+	 *
+	 * @param address     the address of the instruction
+	 * @param instruction the word stored at the address
+	 * @return the decoded entry
+	 */
+	public int fill(int address, short instruction) {
+		int entry = decode(instruction);
+		this.entries[address] = entry;
+		return entry;
+	}
+
+	/**
+	 * Drops the entry for an address whose word was written.
+	 *
+	 * @param address the address that was written
+	 */
+	public void invalidate(int address) {
+		this.entries[address] = EMPTY;
+	}
+
+	/**
+	 * Drops every entry.
+	 */
+	public void clear() {
+		Arrays.fill(this.entries, EMPTY);
+	}
+
+	/**
+	 * @return the number of lookups that found a decoded entry
+	 */
+	public long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of lookups that had to decode the word
+	 */
+	public long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Packs the fields of an instruction into a cache entry.
+	 *
+	 * @param instruction the instruction word
+	 * @return the decoded entry (never EMPTY)
+	 */
+	public static int decode(short instruction) {
+		int entry = VALID | Instruction_Decoder.opcode(instruction);
+		entry |= Instruction_Decoder.dr(instruction) << DR_SHIFT;
+		entry |= Instruction_Decoder.sr1(instruction) << SR1_SHIFT;
+		entry |= Instruction_Decoder.sr2(instruction) << SR2_SHIFT;
+		if (Instruction_Decoder.isImmediate(instruction)) {
+			entry |= 1 << IMM_SHIFT;
+		}
+		entry |= Instruction_Decoder.pgoffset9(instruction) << OPERAND_SHIFT;
+		return entry;
+	}
+
+	/*
+	 * Accessors for the fields of a decoded entry, matching those of
+	 * Instruction_Decoder.
+	 */
+
+	public static int opcode(int entry) {
+		return entry & OPCODE_MASK;
+	}
+
+	public static int dr(int entry) {
+		return (entry >>> DR_SHIFT) & REG_MASK;
+	}
+
+	public static int sr1(int entry) {
+		return (entry >>> SR1_SHIFT) & REG_MASK;
+	}
+
+	public static int baseR(int entry) {
+		return sr1(entry);
+	}
+
+	public static int sr2(int entry) {
+		return (entry >>> SR2_SHIFT) & REG_MASK;
+	}
+
+	public static int n(int entry) {
+		return (entry >>> (DR_SHIFT + 2)) & 1;
+	}
+
+	public static int z(int entry) {
+		return (entry >>> (DR_SHIFT + 1)) & 1;
+	}
+
+	public static int p(int entry) {
+		return (entry >>> DR_SHIFT) & 1;
+	}
+
+	public static int l(int entry) {
+		return n(entry);
+	}
+
+	public static boolean isImmediate(int entry) {
+		return ((entry >>> IMM_SHIFT) & 1) == 1;
+	}
+
+	public static int pgoffset9(int entry) {
+		return (entry >>> OPERAND_SHIFT) & PGOFFSET9_MASK;
+	}
+
+	public static int index6(int entry) {
+		return (entry >>> OPERAND_SHIFT) & INDEX6_MASK;
+	}
+
+	public static int imm5(int entry) {
+		return (entry >>> OPERAND_SHIFT) & IMM5_MASK;
+	}
+
+	public static int trapvect8(int entry) {
+		return (entry >>> OPERAND_SHIFT) & TRAPVECT8_MASK;
+	}
+}
@@ -0,0 +1,147 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory held off the Java heap in one 128 KiB buffer, either allocated
+ * directly or mapped from a memory image file. Each word is stored big-endian
+ * at byte offset 2 * address, so an image file is the 64K words of memory in
+ * address order.
+ */
+public class Direct_Memory implements Memory {
+
+	/**
+	 * Number of bytes in memory, and so in a memory image file.
+	 */
+	public static final int IMAGE_SIZE = SIZE * 2;
+
+	private static final int ADDRESS_MASK = SIZE - 1;
+
+	/**
+	 * The bytes of memory, two per word.
+	 */
+	private final ByteBuffer bytes;
+
+	/**
+	 * Creates memory in a direct buffer with every word set to zero.
+	 */
+	public Direct_Memory() {
+		this(ByteBuffer.allocateDirect(IMAGE_SIZE));
+	}
+
+	/**
+	 * Creates memory over a buffer of IMAGE_SIZE bytes without copying it.
+	 *
+	 * @param bytes the buffer holding the words of memory
+	 */
+	Direct_Memory(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Attaches a memory image file without copying it. The file is mapped
+	 * privately, so writes made by the machine are not stored in the file and
+	 * many machines can map the same image. A private mapping needs the file
+	 * opened for writing, so an image that can only be read is copied into a
+	 * direct buffer instead.
+	 *
+	 * @param image path of a memory image file of IMAGE_SIZE bytes
+	 * @return memory holding the words of the image
+	 * @throws IOException if the file can not be mapped or is not IMAGE_SIZE
+	 *                     bytes long
+	 */
+	public static Direct_Memory map(Path image) throws IOException {
+		return new Direct_Memory(mapPrivately(image, IMAGE_SIZE, "Memory image"));
+	}
+
+	/**
+	 * Maps a file privately, or copies it into a direct buffer if it can not be
+	 * opened for writing, as a read-only file or a file on a read-only file
+	 * system can not. The file is never written either way.
+	 *
+	 * @param file the file
+	 * @param size the size the file must have
+	 * @param kind what the file is, for the error message
+	 * @return the bytes of the file, which the caller may write
+	 * @throws IOException if the file can not be read or is not size bytes long
+	 */
+	static ByteBuffer mapPrivately(Path file, int size, String kind) throws IOException {
+		FileChannel opened;
+		boolean writable = true;
+		try {
+			opened = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (FileSystemException e) {
+			opened = FileChannel.open(file, StandardOpenOption.READ);
+			writable = false;
+		}
+		try (FileChannel channel = opened) {
+			if (channel.size() != size) {
+				throw new IOException(kind + " " + file + " is " + channel.size() + " bytes, expected " + size);
+			}
+			if (writable) {
+				return channel.map(FileChannel.MapMode.PRIVATE, 0, size);
+			}
+			ByteBuffer bytes = ByteBuffer.allocateDirect(size);
+			bytes.put(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+			return bytes.clear();
+		}
+	}
+
+	/**
+	 * Writes every word of a memory to an image file that map can attach.
+	 *
+	 * @param memory the memory to save
+	 * @param image  path of the image file, replaced if it exists
+	 * @throws IOException if the file can not be written
+	 */
+	public static void saveImage(Memory memory, Path image) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(IMAGE_SIZE);
+		putImage(memory, buffer);
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(image, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Puts every word of a memory into a buffer in the image file layout,
+	 * copying the bytes in bulk if the memory is a Direct_Memory.
+	 *
+	 * @param memory the memory to copy
+	 * @param buffer the buffer, with at least IMAGE_SIZE bytes remaining
+	 * @updates buffer
+	 */
+	static void putImage(Memory memory, ByteBuffer buffer) {
+		if (memory instanceof Direct_Memory direct) {
+			buffer.put(direct.bytes.duplicate().clear());
+			return;
+		}
+		for (int address = 0; address < SIZE; address++) {
+			buffer.putShort(memory.read(address));
+		}
+	}
+
+	@Override
+	public short read(int address) {
+		return this.bytes.getShort((address & ADDRESS_MASK) << 1);
+	}
+
+	@Override
+	public void write(int address, short value) {
+		this.bytes.putShort((address & ADDRESS_MASK) << 1, value);
+	}
+
+	@Override
+	public void write(int address, ShortBuffer words) {
+		this.bytes.duplicate().position(address << 1).asShortBuffer().put(words);
+	}
+}
@@ -0,0 +1,122 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Records every nondeterministic event of a run, the characters read by IN,
+ * the numbers read by INN and the values of RND, so an Event_Replayer can feed
+ * them back into a later run. The recorder is installed as the machine's
+ * random source when created, and must be given to the run as its input
+ * device.
+ *
+ * The log starts with the int MAGIC, followed by one entry per event: the
+ * event type byte, the number of instructions fetched since the previous event
+ * as an unsigned LEB128 varint, and the value as a short.
+ */
+public class Event_Recorder implements Input_Device, Random_Source, Closeable {
+
+	/**
+	 * First int of every event log, "CSEV".
+	 */
+	public static final int MAGIC = 0x43534556;
+
+	/**
+	 * Types of the recorded events.
+	 */
+	static final int IN_EVENT = 1;
+	static final int INN_EVENT = 2;
+	static final int RND_EVENT = 3;
+
+	private final Machine machine;
+	private final Input_Device input;
+	private final Random_Source random;
+	private final DataOutputStream out;
+
+	/**
+	 * Instruction count of the machine at the previous event.
+	 */
+	private long lastCount;
+	private long events;
+
+	/**
+	 * Creates a recorder for the machine and installs it as its random source.
+	 * 
+	 * @param machine the machine to record
+	 * @param input   the input the events are read from
+	 * @param out     the stream the log is written to, closed by close
+	 * @throws IOException if the header can not be written
+	 */
+	public Event_Recorder(Machine machine, Input_Device input, OutputStream out) throws IOException {
+		this.machine = machine;
+		this.input = input;
+		this.random = machine.random;
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.lastCount = machine.instructionCount;
+		this.out.writeInt(MAGIC);
+		machine.random = this;
+	}
+
+	@Override
+	public char readCharacter(Console_Device console) {
+		char c = this.input.readCharacter(console);
+		this.record(IN_EVENT, (short) c);
+		return c;
+	}
+
+	@Override
+	public short readNumber(Console_Device console) {
+		short value = this.input.readNumber(console);
+		this.record(INN_EVENT, value);
+		return value;
+	}
+
+	@Override
+	public short nextShort() {
+		short value = this.random.nextShort();
+		this.record(RND_EVENT, value);
+		return value;
+	}
+
+	/**
+	 * Returns the number of events recorded.
+	 * 
+	 * @return the number of events
+	 */
+	public long getEvents() {
+		return this.events;
+	}
+
+	/**
+	 * Writes out the rest of the log and closes its stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.out.close();
+	}
+
+	/**
+	 * Appends an event to the log.
+	 */
+	private void record(int type, short value) {
+		long count = this.machine.instructionCount;
+		try {
+			this.out.writeByte(type);
+			long delta = count - this.lastCount;
+			while ((delta & ~0x7FL) != 0) {
+				this.out.writeByte((int) (delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			this.out.writeByte((int) delta);
+			this.out.writeShort(value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.lastCount = count;
+		this.events++;
+	}
+}
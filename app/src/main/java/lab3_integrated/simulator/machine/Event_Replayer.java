@@ -0,0 +1,142 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Feeds the events of a log written by an Event_Recorder back into a run, so it
+ * repeats the recorded run exactly. The replayer is installed as the machine's
+ * random source when created, and must be given to the run as its input
+ * device. Each event must be asked for at the same instruction count it was
+ * recorded at, otherwise the run has diverged and an IllegalStateException is
+ * thrown.
+ */
+public class Event_Replayer implements Input_Device, Random_Source {
+
+	private final Machine machine;
+
+	/**
+	 * Type, instruction count and value of each event of the log.
+	 */
+	private byte[] types;
+	private long[] counts;
+	private short[] values;
+	private int size;
+
+	/**
+	 * Index of the next event to replay.
+	 */
+	private int next;
+
+	/**
+	 * Reads a whole log and installs the replayer as the machine's random source.
+	 * The instruction counts of the log are taken relative to the machine's
+	 * current count.
+	 * 
+	 * @param machine the machine to replay into
+	 * @param in      the stream of the log, read to its end but not closed
+	 * @throws IOException if the stream can not be read or is not an event log
+	 */
+	public Event_Replayer(Machine machine, InputStream in) throws IOException {
+		this.machine = machine;
+		this.types = new byte[16];
+		this.counts = new long[16];
+		this.values = new short[16];
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != Event_Recorder.MAGIC) {
+			throw new IOException("Not an event log");
+		}
+		long count = machine.instructionCount;
+		int type;
+		while ((type = data.read()) != -1) {
+			long delta = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = data.readUnsignedByte();
+				delta |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			count += delta;
+			this.add((byte) type, count, data.readShort());
+		}
+		machine.random = this;
+	}
+
+	@Override
+	public char readCharacter(Console_Device console) {
+		return (char) this.next(Event_Recorder.IN_EVENT);
+	}
+
+	@Override
+	public short readNumber(Console_Device console) {
+		return this.next(Event_Recorder.INN_EVENT);
+	}
+
+	@Override
+	public short nextShort() {
+		return this.next(Event_Recorder.RND_EVENT);
+	}
+
+	/**
+	 * Returns whether every event of the log was replayed.
+	 * 
+	 * @return whether no events are left
+	 */
+	public boolean isFinished() {
+		return this.next == this.size;
+	}
+
+	/**
+	 * Returns the value of the next event, checking it is the one asked for.
+	 */
+	private short next(int type) {
+		long count = this.machine.instructionCount;
+		if (this.next == this.size) {
+			throw new IllegalStateException("Replay diverged: no event left for " + name(type) + " at instruction "
+					+ count);
+		}
+		int i = this.next;
+		if (this.types[i] != type || this.counts[i] != count) {
+			throw new IllegalStateException("Replay diverged: " + name(type) + " at instruction " + count
+					+ " but the log has " + name(this.types[i]) + " at instruction " + this.counts[i]);
+		}
+		this.next++;
+		return this.values[i];
+	}
+
+	/**
+	 * Appends an event read from the log.
+	 */
+	private void add(byte type, long count, short value) throws IOException {
+		if (type < Event_Recorder.IN_EVENT || type > Event_Recorder.RND_EVENT) {
+			throw new IOException("Unknown event type " + type);
+		}
+		if (this.size == this.types.length) {
+			this.types = Arrays.copyOf(this.types, this.size * 2);
+			this.counts = Arrays.copyOf(this.counts, this.size * 2);
+			this.values = Arrays.copyOf(this.values, this.size * 2);
+		}
+		this.types[this.size] = type;
+		this.counts[this.size] = count;
+		this.values[this.size] = value;
+		this.size++;
+	}
+
+	/**
+	 * Returns the name of the trap of an event type.
+	 */
+	private static String name(int type) {
+		switch (type) {
+		case Event_Recorder.IN_EVENT:
+			return "IN";
+		case Event_Recorder.INN_EVENT:
+			return "INN";
+		default:
+			return "RND";
+		}
+	}
+}
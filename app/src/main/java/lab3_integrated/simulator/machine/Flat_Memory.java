@@ -0,0 +1,49 @@
+package lab3_integrated.simulator.machine;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Memory held in one array of 64K words, addressed by masking the address.
+ */
+public class Flat_Memory implements Memory {
+
+	private static final int ADDRESS_MASK = SIZE - 1;
+
+	/**
+	 * The words of memory, indexed by address.
+	 */
+	private final short[] words;
+
+	/**
+	 * Creates memory with every word set to zero.
+	 */
+	public Flat_Memory() {
+		this.words = new short[SIZE];
+	}
+
+	@Override
+	public short read(int address) {
+		return this.words[address & ADDRESS_MASK];
+	}
+
+	@Override
+	public void write(int address, short value) {
+		this.words[address & ADDRESS_MASK] = value;
+	}
+
+	@Override
+	public void write(int address, ShortBuffer words) {
+		words.get(this.words, address, words.remaining());
+	}
+
+	/**
+	 * Returns the array backing this memory, for execution engines that compile
+	 * direct accesses to it. Writes made to the array bypass the Machine's
+	 * listeners.
+	 * 
+	 * @return the words of memory indexed by address
+	 */
+	public short[] words() {
+		return this.words;
+	}
+}
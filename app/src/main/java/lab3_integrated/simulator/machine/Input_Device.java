@@ -0,0 +1,25 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Source of the input read by the IN and INN traps.
+ */
+public interface Input_Device {
+
+	/**
+	 * Reads the character for IN.
+	 * 
+	 * @param console the console to write any prompt to
+	 * @return the character read, only its lower 8 bits are kept
+	 * @throws java.util.NoSuchElementException if there is no input left
+	 */
+	public char readCharacter(Console_Device console);
+
+	/**
+	 * Reads the decimal number for INN.
+	 * 
+	 * @param console the console to write any prompt to
+	 * @return the number read, in the range of a signed short
+	 * @throws java.util.NoSuchElementException if there is no input left
+	 */
+	public short readNumber(Console_Device console);
+}
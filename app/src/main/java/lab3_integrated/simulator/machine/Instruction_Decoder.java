@@ -0,0 +1,186 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Decodes the fields of a 16-bit CSE machine instruction straight from the
+ * word with shifts and masks, so no Strings are created per instruction.
+ *
+ * Instruction layout (bit 15 is the MSB):
+ * 15-12 opcode, 11-9 DR/SR or nzp or L, 8-6 SR1/BaseR, 5 immediate flag,
+ * 4-0 imm5, 2-0 SR2, 5-0 index6, 8-0 pgoffset9, 7-0 trapvect8
+ */
+public final class Instruction_Decoder {
+
+	/**
+	 * Values of the opcode (upper 4 bits) for each instruction.
+	 */
+	public static final int BRX = 0x0;
+	public static final int ADD = 0x1;
+	public static final int LD = 0x2;
+	public static final int ST = 0x3;
+	public static final int JSR = 0x4;
+	public static final int AND = 0x5;
+	public static final int LDR = 0x6;
+	public static final int STR = 0x7;
+	public static final int DBUG = 0x8;
+	public static final int NOT = 0x9;
+	public static final int LDI = 0xA;
+	public static final int STI = 0xB;
+	public static final int JSRR = 0xC;
+	public static final int RET = 0xD;
+	public static final int LEA = 0xE;
+	public static final int TRAP = 0xF;
+
+	/**
+	 * Masks for each of the fields after they are shifted down.
+	 */
+	private static final int OPCODE_MASK = 0xF;
+	private static final int REG_MASK = 0x7;
+	private static final int BIT_MASK = 0x1;
+	private static final int IMM5_MASK = 0x1F;
+	private static final int INDEX6_MASK = 0x3F;
+	private static final int PGOFFSET9_MASK = 0x1FF;
+	private static final int TRAPVECT8_MASK = 0xFF;
+
+	private Instruction_Decoder() {
+	}
+
+	/**
+	 * Returns the opcode of the instruction (bits 15-12).
+	 *
+	 * @param instruction the instruction word
+	 * @return the opcode in the range [0, 15]
+	 */
+	public static int opcode(short instruction) {
+		return (instruction >>> 12) & OPCODE_MASK;
+	}
+
+	/**
+	 * Returns the destination register, or source register for stores (bits 11-9).
+	 *
+	 * @param instruction the instruction word
+	 * @return the register number
+	 */
+	public static int dr(short instruction) {
+		return (instruction >>> 9) & REG_MASK;
+	}
+
+	/**
+	 * Returns source register 1 (bits 8-6).
+	 *
+	 * @param instruction the instruction word
+	 * @return the register number
+	 */
+	public static int sr1(short instruction) {
+		return (instruction >>> 6) & REG_MASK;
+	}
+
+	/**
+	 * Returns the base register (bits 8-6), same bits as SR1.
+	 *
+	 * @param instruction the instruction word
+	 * @return the register number
+	 */
+	public static int baseR(short instruction) {
+		return sr1(instruction);
+	}
+
+	/**
+	 * Returns source register 2 (bits 2-0).
+	 *
+	 * @param instruction the instruction word
+	 * @return the register number
+	 */
+	public static int sr2(short instruction) {
+		return instruction & REG_MASK;
+	}
+
+	/**
+	 * Returns the negative flag of a BRx instruction (bit 11).
+	 *
+	 * @param instruction the instruction word
+	 * @return 1 if set, 0 otherwise
+	 */
+	public static int n(short instruction) {
+		return (instruction >>> 11) & BIT_MASK;
+	}
+
+	/**
+	 * Returns the zero flag of a BRx instruction (bit 10).
+	 *
+	 * @param instruction the instruction word
+	 * @return 1 if set, 0 otherwise
+	 */
+	public static int z(short instruction) {
+		return (instruction >>> 10) & BIT_MASK;
+	}
+
+	/**
+	 * Returns the positive flag of a BRx instruction (bit 9).
+	 *
+	 * @param instruction the instruction word
+	 * @return 1 if set, 0 otherwise
+	 */
+	public static int p(short instruction) {
+		return (instruction >>> 9) & BIT_MASK;
+	}
+
+	/**
+	 * Returns the link bit of a JSR/JSRR instruction (bit 11).
+	 *
+	 * @param instruction the instruction word
+	 * @return 1 if set, 0 otherwise
+	 */
+	public static int l(short instruction) {
+		return n(instruction);
+	}
+
+	/**
+	 * Returns whether an ADD/AND instruction uses the immediate form (bit 5).
+	 *
+	 * @param instruction the instruction word
+	 * @return true if the second operand is imm5
+	 */
+	public static boolean isImmediate(short instruction) {
+		return ((instruction >>> 5) & BIT_MASK) == 1;
+	}
+
+	/**
+	 * Returns the unextended 5-bit immediate (bits 4-0).
+	 *
+	 * @param instruction the instruction word
+	 * @return imm5 in the range [0, 31]
+	 */
+	public static int imm5(short instruction) {
+		return instruction & IMM5_MASK;
+	}
+
+	/**
+	 * Returns the 6-bit index (bits 5-0).
+	 *
+	 * @param instruction the instruction word
+	 * @return index6 in the range [0, 63]
+	 */
+	public static int index6(short instruction) {
+		return instruction & INDEX6_MASK;
+	}
+
+	/**
+	 * Returns the 9-bit page offset (bits 8-0).
+	 *
+	 * @param instruction the instruction word
+	 * @return pgoffset9 in the range [0, 511]
+	 */
+	public static int pgoffset9(short instruction) {
+		return instruction & PGOFFSET9_MASK;
+	}
+
+	/**
+	 * Returns the trap vector (bits 7-0).
+	 *
+	 * @param instruction the instruction word
+	 * @return trapvect8 in the range [0, 255]
+	 */
+	public static int trapvect8(short instruction) {
+		return instruction & TRAPVECT8_MASK;
+	}
+}
@@ -1,6 +1,5 @@
 package lab3_integrated.simulator.machine;
 
-import java.util.InputMismatchException;
 import java.util.Scanner;
 
 /**
@@ -26,11 +25,41 @@ public class Machine implements Machine_Interface {
 	public int prev_pc;
 
 	/**
-	 * Array that holds each of the condition code variables: N: if the register
-	 * value is negative Z: if the register value is zero P: if the register value
-	 * is positive.
+	 * Number of instructions fetched since the machine was created, which is what
+	 * recorded input and random events are matched against on replay.
 	 */
-	public boolean[] ccr;
+	public long instructionCount;
+
+	/**
+	 * Bits of the packed condition codes, in the order of the n, z and p bits of a
+	 * BRx instruction: N if the last result was negative, Z if it was zero, P if
+	 * it was positive.
+	 */
+	public static final int CCR_N = 0b100;
+	public static final int CCR_Z = 0b010;
+	public static final int CCR_P = 0b001;
+
+	/**
+	 * Whether the condition codes are only computed from the last result when
+	 * they are read, defaults to the simulator.ccr system property being "lazy".
+	 */
+	public boolean lazyCCR = "lazy".equalsIgnoreCase(System.getProperty("simulator.ccr"));
+
+	/**
+	 * The packed condition codes, or CCR_PENDING if they are still to be
+	 * computed from ccrResult.
+	 */
+	private int ccr;
+
+	/**
+	 * The last value the condition codes were set from, used in lazy mode.
+	 */
+	private short ccrResult;
+
+	/**
+	 * Value of ccr while the codes of ccrResult were not computed yet.
+	 */
+	private static final int CCR_PENDING = -1;
 
 	/**
 	 * Array that holds the register from R0 to R7.
@@ -38,16 +67,49 @@ public class Machine implements Machine_Interface {
 	public short[] registers;
 
 	/**
-	 * Two-Dimensional array that holds the memory of the machine that has 128
-	 * pages, each containing 512 words, which are 16-bits long.
+	 * Memory of the machine that has 128 pages, each containing 512 words, which
+	 * are 16-bits long.
+	 */
+	public Memory memory;
+
+	/**
+	 * Decoded form of the words in memory, filled as instructions are fetched.
+	 * Any write to memory made outside of ST, STI and STR must invalidate the
+	 * entry of the written address.
+	 */
+	public Decode_Cache decodeCache;
+
+	/**
+	 * Optional listener told about every write made by ST, STI and STR.
 	 */
-	public short[][] memory;
+	public Memory_Listener memoryListener;
+
+	/**
+	 * Device the traps write their output and prompts to, unbuffered on standard
+	 * output by default.
+	 */
+	public Console_Device console;
+
+	/**
+	 * Source of the values stored by RND, Math.random by default.
+	 */
+	public Random_Source random;
+
+	/**
+	 * Addresses run stops at before executing, or null if none were set.
+	 */
+	private boolean[] breakpoints;
+
+	/**
+	 * Input used by the IN and INN traps when run is not given one, created on
+	 * first use.
+	 */
+	private Input_Device consoleInput;
 
 	/**
 	 * Constants for size declared as final variables (ccr, register, word, pages,
 	 * and unsigned short sizes).
 	 */
-	private final int CCR_SIZE = 3;
 	private final int REGISTER_SIZE = 8;
 	private final int WORD_SIZE = 512;
 	private final int PAGE_SIZE = 128;
@@ -81,11 +143,26 @@ public class Machine implements Machine_Interface {
 	 */
 	private final int LOWER_BITS = 0xff;
 
+	/**
+	 * Line separator ending the messages written to the console.
+	 */
+	private static final String NEWLINE = System.lineSeparator();
+
 	/**
 	 * Default constructor.
 	 */
 	public Machine() {
-		this.createNewRep();
+		this.createNewRep(new Flat_Memory());
+	}
+
+	/**
+	 * Constructor with the memory backend as the parameter
+	 * 
+	 * @param memory the memory of the machine, with the program possibly already
+	 *               in it
+	 */
+	public Machine(Memory memory) {
+		this.createNewRep(memory);
 	}
 
 	/**
@@ -94,14 +171,39 @@ public class Machine implements Machine_Interface {
 	 * @param name contains the name of the machine
 	 */
 	public Machine(String name) {
-		this.createNewRep();
+		this.createNewRep(new Flat_Memory());
 		this.name = name;
 	}
 
+	/**
+	 * Returns a machine in the same state as this one, with a memory sharing
+	 * every page of this machine's memory until one of them writes to it. Forks
+	 * run the loaded program again without reloading it. A fork has its own
+	 * decode cache, the default console and random source, and no breakpoints.
+	 * 
+	 * @return the fork
+	 * @throws IllegalStateException if the memory is not a Cow_Memory
+	 */
+	public Machine fork() {
+		if (!(this.memory instanceof Cow_Memory)) {
+			throw new IllegalStateException("Only a machine with a Cow_Memory can be forked");
+		}
+		Machine fork = new Machine(((Cow_Memory) this.memory).fork());
+		fork.name = this.name;
+		fork.PC = this.PC;
+		fork.prev_pc = this.prev_pc;
+		fork.instructionCount = this.instructionCount;
+		fork.lazyCCR = this.lazyCCR;
+		fork.ccr = this.ccr;
+		fork.ccrResult = this.ccrResult;
+		System.arraycopy(this.registers, 0, fork.registers, 0, REGISTER_SIZE);
+		return fork;
+	}
+
 	/**
 	 * Private representation of the constructor and initializing all the variables.
 	 */
-	private void createNewRep() {
+	private void createNewRep(Memory memory) {
 		// Initializing the name of the machine
 		this.name = "MachineName";
 
@@ -110,10 +212,7 @@ public class Machine implements Machine_Interface {
 		this.prev_pc = this.PC;
 
 		// Initializing the condition-code registers
-		this.ccr = new boolean[CCR_SIZE];
-		for (int i = 0; i < CCR_SIZE; i++) {
-			this.ccr[i] = false;
-		}
+		this.ccr = 0;
 
 		// Initializing the registers
 		this.registers = new short[REGISTER_SIZE];
@@ -122,16 +221,21 @@ public class Machine implements Machine_Interface {
 		}
 
 		// Initializing memory
-		this.memory = new short[PAGE_SIZE][WORD_SIZE];
-		for (int i = 0; i < PAGE_SIZE; i++) {
-			for (int j = 0; j < WORD_SIZE; j++) {
-				this.memory[i][j] = (short) 0x0;
-			}
-		}
+		this.memory = memory;
+
+		// Initializing the decoded instruction cache
+		this.decodeCache = new Decode_Cache();
+
+		// Initializing the console
+		this.console = new Buffered_Console(System.out, 0, false);
+
+		// Initializing the random source
+		this.random = () -> (short) (Math.random() * (Short.MAX_VALUE - Short.MIN_VALUE + 1) + Short.MIN_VALUE);
 	}
 
 	@Override
 	public int getPC() {
+		this.instructionCount++;
 		this.updatePC();
 		return this.prev_pc;
 	}
@@ -149,11 +253,208 @@ public class Machine implements Machine_Interface {
 		this.PC = (this.PC + 1) % UPPER_LIMIR;
 	}
 
+	/**
+	 * Returns the decoded instruction stored at the address, decoding it only if
+	 * it was not decoded since it was last written.
+	 * 
+	 * @param address the address of the instruction
+	 * @return the decoded instruction entry of the Decode_Cache
+	 */
+	public int fetchDecoded(int address) {
+		int entry = this.decodeCache.get(address);
+		if (entry == Decode_Cache.EMPTY) {
+			short instruction = this.memory.read(address);
+			entry = this.decodeCache.fill(address, instruction);
+		}
+		return entry;
+	}
+
 	@Override
 	public void setPC(int start) {
 		this.PC = start % UPPER_LIMIR;
 	}
 
+	/**
+	 * Runs instructions from the PC, reading the IN and INN traps from standard
+	 * input.
+	 * 
+	 * @param maxInstructions the maximum number of instructions to run
+	 * @return the number of instructions run, the final PC and why the run
+	 *         stopped
+	 * @see #run(long, Input_Device)
+	 */
+	public Run_Result run(long maxInstructions) {
+		if (this.consoleInput == null) {
+			this.consoleInput = new Scanner_Input(new Scanner(System.in));
+		}
+		return this.run(maxInstructions, this.consoleInput);
+	}
+
+	/**
+	 * Runs instructions from the PC, reading IN and INN input from a Scanner with
+	 * prompts.
+	 * 
+	 * @param maxInstructions the maximum number of instructions to run
+	 * @param in              the Scanner input is read from
+	 * @return the number of instructions run, the final PC and why the run
+	 *         stopped
+	 * @see #run(long, Input_Device)
+	 */
+	public Run_Result run(long maxInstructions, Scanner in) {
+		return this.run(maxInstructions, new Scanner_Input(in));
+	}
+
+	/**
+	 * Runs instructions from the PC in one loop with no tracing, until a HALT,
+	 * a TRAP with an invalid vector, a breakpoint or the end of the budget. A
+	 * breakpoint on the address the run starts at is ignored, so a run stopped at
+	 * a breakpoint can be resumed by calling run again. DBUG does not print the
+	 * machine state here, as that is done by the simulator.
+	 * 
+	 * @param maxInstructions the maximum number of instructions to run
+	 * @param in              the input used by the IN and INN traps
+	 * @return the number of instructions run, the final PC and why the run
+	 *         stopped
+	 * @updates PC, prev_pc, registers, CCRs, memory
+	 */
+	public Run_Result run(long maxInstructions, Input_Device in) {
+		boolean[] stops = this.breakpoints;
+		long retired = 0;
+		while (retired < maxInstructions) {
+			if (stops != null && stops[this.PC] && retired > 0) {
+				return new Run_Result(retired, this.PC, Run_Result.Exit_Reason.BREAKPOINT);
+			}
+			int entry = this.fetchDecoded(this.getPC());
+			retired++;
+			if (Decode_Cache.opcode(entry) == Instruction_Decoder.TRAP) {
+				int trapvect8 = Decode_Cache.trapvect8(entry);
+				if (this.TRAP(trapvect8, in)) {
+					return new Run_Result(retired, this.PC, Run_Result.Exit_Reason.HALT);
+				}
+				if (!isTrapVector(trapvect8)) {
+					return new Run_Result(retired, this.PC, Run_Result.Exit_Reason.INVALID_TRAP);
+				}
+			} else {
+				this.execute(entry);
+			}
+		}
+		return new Run_Result(retired, this.PC, Run_Result.Exit_Reason.BUDGET_EXHAUSTED);
+	}
+
+	/**
+	 * Runs a decoded instruction other than TRAP.
+	 * 
+	 * @param entry the decoded instruction
+	 */
+	private void execute(int entry) {
+		int dr = Decode_Cache.dr(entry);
+		int sr1 = Decode_Cache.sr1(entry);
+		switch (Decode_Cache.opcode(entry)) {
+		case Instruction_Decoder.ADD:
+			if (Decode_Cache.isImmediate(entry)) {
+				this.ADD_IMM(dr, sr1, Decode_Cache.imm5(entry));
+			} else {
+				this.ADD_REG(dr, sr1, Decode_Cache.sr2(entry));
+			}
+			break;
+		case Instruction_Decoder.AND:
+			if (Decode_Cache.isImmediate(entry)) {
+				this.AND_IMM(dr, sr1, Decode_Cache.imm5(entry));
+			} else {
+				this.AND_REG(dr, sr1, Decode_Cache.sr2(entry));
+			}
+			break;
+		case Instruction_Decoder.BRX:
+			this.BRx(Decode_Cache.n(entry), Decode_Cache.z(entry), Decode_Cache.p(entry),
+					Decode_Cache.pgoffset9(entry));
+			break;
+		case Instruction_Decoder.DBUG:
+			this.DBUG();
+			break;
+		case Instruction_Decoder.JSR:
+			this.JSR(Decode_Cache.l(entry), Decode_Cache.pgoffset9(entry));
+			break;
+		case Instruction_Decoder.JSRR:
+			this.JSRR(Decode_Cache.l(entry), sr1, Decode_Cache.index6(entry));
+			break;
+		case Instruction_Decoder.LD:
+			this.LD(dr, Decode_Cache.pgoffset9(entry));
+			break;
+		case Instruction_Decoder.LDI:
+			this.LDI(dr, Decode_Cache.pgoffset9(entry));
+			break;
+		case Instruction_Decoder.LDR:
+			this.LDR(dr, sr1, Decode_Cache.index6(entry));
+			break;
+		case Instruction_Decoder.LEA:
+			this.LEA(dr, Decode_Cache.pgoffset9(entry));
+			break;
+		case Instruction_Decoder.NOT:
+			this.NOT(dr, sr1);
+			break;
+		case Instruction_Decoder.RET:
+			this.RET();
+			break;
+		case Instruction_Decoder.ST:
+			this.ST(dr, Decode_Cache.pgoffset9(entry));
+			break;
+		case Instruction_Decoder.STI:
+			this.STI(dr, Decode_Cache.pgoffset9(entry));
+			break;
+		case Instruction_Decoder.STR:
+			this.STR(dr, sr1, Decode_Cache.index6(entry));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Sets a breakpoint that run stops at before executing the instruction at the
+	 * address.
+	 * 
+	 * @param address the address of the instruction
+	 * @updates breakpoints
+	 */
+	public void addBreakpoint(int address) {
+		if (this.breakpoints == null) {
+			this.breakpoints = new boolean[UPPER_LIMIR];
+		}
+		this.breakpoints[address % UPPER_LIMIR] = true;
+	}
+
+	/**
+	 * Removes the breakpoint at the address, if there is one.
+	 * 
+	 * @param address the address of the instruction
+	 * @updates breakpoints
+	 */
+	public void removeBreakpoint(int address) {
+		if (this.breakpoints != null) {
+			this.breakpoints[address % UPPER_LIMIR] = false;
+		}
+	}
+
+	/**
+	 * Removes every breakpoint.
+	 * 
+	 * @updates breakpoints
+	 */
+	public void clearBreakpoints() {
+		this.breakpoints = null;
+	}
+
+	/**
+	 * Returns whether the vector is one of the trap table's.
+	 * 
+	 * @param trapvect8 the trap vector
+	 * @return whether TRAP runs a routine for the vector
+	 */
+	private boolean isTrapVector(int trapvect8) {
+		return trapvect8 == OUT_VECT || trapvect8 == PUTS_VECT || trapvect8 == IN_VECT || trapvect8 == HALT_VECT
+				|| trapvect8 == OUTN_VECT || trapvect8 == INN_VECT || trapvect8 == RND_VECT;
+	}
+
 	@Override
 	public int getMemoryPageLocation(int address) {
 		return (address / WORD_SIZE) % PAGE_SIZE;
@@ -205,7 +506,7 @@ public class Machine implements Machine_Interface {
 	@Override
 	public void BRx(int n, int z, int p, int pgoffset9) {
 		// Performing the method instruction
-		boolean check = (n == 1 && this.ccr[ZERO]) || (z == 1 && this.ccr[ONE]) || (p == 1 && this.ccr[TWO]);
+		boolean check = (this.getCCR() & ((n << TWO) | (z << ONE) | p)) != 0;
 		if (check) {
 			int address = this.getAddressPC(this.PC, pgoffset9);
 			this.PC = address;
@@ -244,10 +545,8 @@ public class Machine implements Machine_Interface {
 	public void LD(int DR, int pgoffset9) {
 		// Performing the method instruction
 		int address = this.getAddressPC(this.PC, pgoffset9);
-		int row = this.getMemoryPageLocation(address);
-		int col = this.getMemoryWordLocation(address);
 
-		short op_add = this.memory[row][col];
+		short op_add = this.memory.read(address);
 		this.registers[DR] = op_add;
 		this.updateCCR(op_add);
 
@@ -257,15 +556,11 @@ public class Machine implements Machine_Interface {
 	public void LDI(int DR, int pgoffset9) {
 		// Performing the method instruction
 		int address = this.getAddressPC(this.PC, pgoffset9);
-		int r = this.getMemoryPageLocation(address);
-		int c = this.getMemoryWordLocation(address);
 
-		short new_address = this.memory[r][c];
+		short new_address = this.memory.read(address);
 		int u_new_address = Short.toUnsignedInt(new_address);
-		int row = this.getMemoryPageLocation(u_new_address);
-		int col = this.getMemoryWordLocation(u_new_address);
 
-		short op_address = this.memory[row][col];
+		short op_address = this.memory.read(u_new_address);
 		this.registers[DR] = op_address;
 		this.updateCCR(op_address);
 
@@ -275,10 +570,8 @@ public class Machine implements Machine_Interface {
 	public void LDR(int DR, int BaseR, int index6) {
 		// Performing the method instruction
 		int address = this.getAddressReg(BaseR, index6);
-		int row = this.getMemoryPageLocation(address);
-		int col = this.getMemoryWordLocation(address);
 
-		short op_add = this.memory[row][col];
+		short op_add = this.memory.read(address);
 		this.registers[DR] = op_add;
 		this.updateCCR(op_add);
 
@@ -313,10 +606,9 @@ public class Machine implements Machine_Interface {
 	public void ST(int SR, int pgoffset9) {
 		// Performing the method instruction
 		int address = this.getAddressPC(this.PC, pgoffset9);
-		int row = this.getMemoryPageLocation(address);
-		int col = this.getMemoryWordLocation(address);
 
-		this.memory[row][col] = this.registers[SR];
+		this.memory.write(address, this.registers[SR]);
+		this.wordWritten(address);
 
 	}
 
@@ -324,15 +616,12 @@ public class Machine implements Machine_Interface {
 	public void STI(int SR, int pgoffset9) {
 		// Performing the method instruction
 		int address = this.getAddressPC(this.PC, pgoffset9);
-		int r = this.getMemoryPageLocation(address);
-		int c = this.getMemoryWordLocation(address);
 
-		short new_address = this.memory[r][c];
+		short new_address = this.memory.read(address);
 		int u_new_address = Short.toUnsignedInt(new_address);
-		int row = this.getMemoryPageLocation(u_new_address);
-		int col = this.getMemoryWordLocation(u_new_address);
 
-		this.memory[row][col] = this.registers[SR];
+		this.memory.write(u_new_address, this.registers[SR]);
+		this.wordWritten(u_new_address);
 
 	}
 
@@ -340,15 +629,26 @@ public class Machine implements Machine_Interface {
 	public void STR(int SR, int BaseR, int index6) {
 		// Performing the method instruction
 		int address = this.getAddressReg(BaseR, index6);
-		int row = this.getMemoryPageLocation(address);
-		int col = this.getMemoryWordLocation(address);
 
-		this.memory[row][col] = this.registers[SR];
+		this.memory.write(address, this.registers[SR]);
+		this.wordWritten(address);
 
 	}
 
-	@Override
+	/**
+	 * Runs the TRAP reading IN and INN input from a Scanner with prompts.
+	 * 
+	 * @param trapvec8 determine which system call to execute
+	 * @param in       the Scanner input is read from
+	 * @return whether the TRAP was a HALT
+	 * @see #TRAP(int, Input_Device)
+	 */
 	public boolean TRAP(int trapvec8, Scanner in) {
+		return this.TRAP(trapvec8, new Scanner_Input(in));
+	}
+
+	@Override
+	public boolean TRAP(int trapvec8, Input_Device in) {
 		boolean end = false;
 
 		// Performing the method instruction
@@ -390,7 +690,7 @@ public class Machine implements Machine_Interface {
 	 */
 	private void OUT() {
 		char char_val = (char) (this.registers[ZERO] & LOWER_BITS);
-		System.out.println("\nThe character formed in R0 in ASCII: " + char_val + "\n");
+		this.console.outputCharacter(char_val);
 	}
 
 	/**
@@ -400,9 +700,9 @@ public class Machine implements Machine_Interface {
 	private void PUTS() {
 		int address = Short.toUnsignedInt(this.registers[ZERO]);
 		char char_val;
-		System.out.print("\nThe null-terminated String formed from the address in R0 in ASCII: ");
+		StringBuilder string = new StringBuilder();
 
-		short more_char = memory[getMemoryPageLocation(address)][getMemoryWordLocation(address)];
+		short more_char = memory.read(address);
 		// System.out.println(more_char);
 		while (more_char != 0) {
 
@@ -412,27 +712,25 @@ public class Machine implements Machine_Interface {
 			char_val = (char) (temp_address & LOWER_BITS);
 			// System.out.println(address + " " + char_val);
 
-			// Print the character
-			System.out.print(char_val);
+			// Add the character to the string
+			string.append(char_val);
 
 			// Update to the next address
 			address = (address + 1) % this.UPPER_LIMIR;
-			more_char = memory[getMemoryPageLocation(address)][getMemoryWordLocation(address)];
+			more_char = memory.read(address);
 			// System.out.println(address + " " + more_char);
 		}
 
-		System.out.println("\n");
+		this.console.outputString(string);
 	}
 
 	/**
 	 * Getting user input on the character to be stored in R0 and clearing out the
 	 * upper bits after storing the character.
 	 */
-	private void IN(Scanner in) {
+	private void IN(Input_Device in) {
 		// Getting the character input
-		System.out.print("\nEnter a character: ");
-		char input = in.next().charAt(0);
-		System.out.println();
+		char input = in.readCharacter(this.console);
 
 		// Putting the input into the register and zero'ing out the upper bits
 		this.registers[ZERO] = (short) input;
@@ -444,44 +742,24 @@ public class Machine implements Machine_Interface {
 	 * Displays a message saying execution is halted.
 	 */
 	private void HALT() {
-		System.out.println("\nA HALT instruction was encountered. Terminating executing instructions.\n");
+		this.console.message("\nA HALT instruction was encountered. Terminating executing instructions.\n" + NEWLINE);
+		this.console.flush();
 	}
 
 	/**
 	 * Displaying the current value stored in R0 as a decimal.
 	 */
 	private void OUTN() {
-		System.out.println("\nThe current value in R0 in decimal: " + this.registers[ZERO] + "\n");
+		this.console.outputNumber(this.registers[ZERO]);
 	}
 
 	/**
 	 * Get the user input on any value within the range of signed short and store it
 	 * into R0.
 	 */
-	private void INN(Scanner in) {
-		// Specifying the rules for input
-		System.out.println("\nRequirments for input");
-		System.out.println("\t1. Must be written as a decimal number");
-		System.out.println("\t2. Must be within the range of [" + Short.MIN_VALUE + ", " + Short.MAX_VALUE + "]\n");
-		int input = Short.MIN_VALUE - 1;
-
-		// Trying to parse the proper input
-		do {
-			try {
-				System.out.print("Enter a valid input adhering to the rules: ");
-				input = in.nextInt();
-			} catch (InputMismatchException e) {
-				System.out.println("Invalid input.");
-			}
-
-			// Clearing the buffer
-			in.nextLine();
-		} while (input < Short.MIN_VALUE || input > Short.MAX_VALUE);
-
-		System.out.println("\nValue of the given input: " + input + "\n");
-
+	private void INN(Input_Device in) {
 		// Updating the necessary registers and CCRs
-		short val = (short) input;
+		short val = in.readNumber(this.console);
 		this.registers[ZERO] = val;
 		this.updateCCR(val);
 	}
@@ -491,9 +769,7 @@ public class Machine implements Machine_Interface {
 	 */
 	private void RND() {
 		// Calculating random value
-		short min = Short.MIN_VALUE;
-		short max = Short.MAX_VALUE;
-		short random_short = (short) (Math.random() * (max - min + 1) + min);
+		short random_short = this.random.nextShort();
 
 		this.registers[ZERO] = random_short;
 		this.updateCCR(random_short);
@@ -506,46 +782,63 @@ public class Machine implements Machine_Interface {
 	 * @param val invalid trap vector
 	 */
 	private void defaultCase(int val) {
+		this.console.flush();
 		System.err.println("\nThe given entry (" + val + ") does not match a value from the TRAP vector table\n");
 	}
 
 	/**
-	 * Updates the CCR value based on the values modified in the registers.
+	 * Updates the CCR value based on the values modified in the registers. In
+	 * lazy mode only the value is kept, and the codes are computed when read.
 	 * 
 	 * @param num the short stored in a register
 	 * @updates ccr
 	 * @ensures sets the correct CCRs based on the passed short value
 	 */
-	private void updateCCR(short num) {
-		// Setting the N flag (negative number) and others to false
-		if (num < 0) {
-			// True case
-			this.ccr[ZERO] = true;
-
-			// False case(s)
-			this.ccr[ONE] = false;
-			this.ccr[TWO] = false;
+	public void updateCCR(short num) {
+		if (this.lazyCCR) {
+			this.ccrResult = num;
+			this.ccr = CCR_PENDING;
+		} else {
+			this.ccr = codesOf(num);
 		}
+	}
 
-		// Setting the Z flag (zero number) and others to false
-		else if (num == 0) {
-			// True case
-			this.ccr[ONE] = true;
-
-			// False case(s)
-			this.ccr[ZERO] = false;
-			this.ccr[TWO] = false;
+	/**
+	 * Returns the condition codes packed as CCR_N, CCR_Z and CCR_P bits.
+	 * 
+	 * @return the packed condition codes, 0 if none were set yet
+	 */
+	public int getCCR() {
+		if (this.ccr == CCR_PENDING) {
+			this.ccr = codesOf(this.ccrResult);
 		}
+		return this.ccr;
+	}
 
-		// Setting the P flag (positive number) and others to false
-		else {
-			// True case
-			this.ccr[TWO] = true;
+	/**
+	 * Sets the condition codes from their packed form.
+	 * 
+	 * @param codes the packed condition codes
+	 * @updates ccr
+	 * @ensures getCCR() = codes
+	 */
+	public void setCCR(int codes) {
+		this.ccr = codes & (CCR_N | CCR_Z | CCR_P);
+	}
 
-			// False case(s)
-			this.ccr[ZERO] = false;
-			this.ccr[ONE] = false;
+	/**
+	 * Returns the condition code a value sets.
+	 * 
+	 * @param num the value
+	 * @return CCR_N if num is negative, CCR_Z if zero, CCR_P if positive
+	 */
+	private static int codesOf(short num) {
+		if (num < 0) {
+			return CCR_N;
+		} else if (num == 0) {
+			return CCR_Z;
 		}
+		return CCR_P;
 	}
 
 	/**
@@ -598,6 +891,32 @@ public class Machine implements Machine_Interface {
 		return result;
 	}
 
+	/**
+	 * Stores a word into memory the way ST, STI and STR do, for execution engines
+	 * that compute the address themselves.
+	 * 
+	 * @param address the address to write
+	 * @param value   the word to store
+	 * @updates memory
+	 * @ensures memory[address] = value
+	 */
+	public void writeWord(int address, short value) {
+		this.memory.write(address, value);
+		this.wordWritten(address);
+	}
+
+	/**
+	 * Drops the decoded form of a word that was written and tells the listener.
+	 * 
+	 * @param address the address that was written
+	 */
+	private void wordWritten(int address) {
+		this.decodeCache.invalidate(address);
+		if (this.memoryListener != null) {
+			this.memoryListener.wordWritten(address);
+		}
+	}
+
 	/**
 	 * Copying the current instruction address PC points to into R7.
 	 */
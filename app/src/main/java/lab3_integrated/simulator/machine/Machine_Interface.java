@@ -1,6 +1,5 @@
 package lab3_integrated.simulator.machine;
 
-import java.util.Scanner;
 
 /**
  * 
@@ -270,11 +269,12 @@ public interface Machine_Interface {
 	 * 0x43: store a random random in R0
 	 * 
 	 * @param trapvec8 determine which system call to execute
+	 * @param in       the input read by IN and INN
 	 * @return boolean stating whether the TRAP instruction made a system call to
 	 *         HALT instruction flow
 	 * @updates registers, CCRs
 	 * @ensures the required system call is executed with the boolean on whether
 	 *          HALT occurred or not
 	 */
-	public boolean TRAP(int trapvec8, Scanner in);
+	public boolean TRAP(int trapvec8, Input_Device in);
 }
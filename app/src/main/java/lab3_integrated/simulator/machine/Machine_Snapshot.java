@@ -0,0 +1,110 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checkpoints of a machine in a fixed-layout file that is restored by mapping
+ * it, so the words of memory are paged in as they are used instead of being
+ * parsed from an object file and rebuilt by running the program again.
+ *
+ * The file is a HEADER_SIZE byte header followed by a memory image in the
+ * layout of Direct_Memory. The header holds, big-endian: the magic number and
+ * version, PC, prev_pc, the packed condition codes, R0 to R7, the instruction
+ * count and the name as a length and UTF-8 bytes. The header fills a page so
+ * the memory image is page aligned.
+ */
+public final class Machine_Snapshot {
+
+	/**
+	 * "CSNP", the first four bytes of every snapshot.
+	 */
+	public static final int MAGIC = 0x43534E50;
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 4096;
+	public static final int FILE_SIZE = HEADER_SIZE + Direct_Memory.IMAGE_SIZE;
+
+	private static final int REGISTER_COUNT = 8;
+	private static final int NAME_OFFSET = 38;
+	private static final int MAX_NAME_LENGTH = HEADER_SIZE - NAME_OFFSET;
+	private static final int WORD_MASK = 0xFFFF;
+
+	private Machine_Snapshot() {
+	}
+
+	/**
+	 * Writes the state of a machine to a snapshot file. The decode cache,
+	 * breakpoints and devices are not part of the state.
+	 *
+	 * @param machine the machine to checkpoint
+	 * @param file    path of the snapshot, replaced if it exists
+	 * @throws IOException if the file can not be written
+	 */
+	public static void save(Machine machine, Path file) throws IOException {
+		byte[] name = machine.name.getBytes(StandardCharsets.UTF_8);
+		if (name.length > MAX_NAME_LENGTH) {
+			throw new IOException("Machine name is longer than " + MAX_NAME_LENGTH + " bytes");
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_SIZE);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) machine.PC);
+		buffer.putShort((short) machine.prev_pc);
+		buffer.putShort((short) machine.getCCR());
+		for (int r = 0; r < REGISTER_COUNT; r++) {
+			buffer.putShort(machine.registers[r]);
+		}
+		buffer.putLong(machine.instructionCount);
+		buffer.putShort((short) name.length);
+		buffer.put(name);
+		buffer.position(HEADER_SIZE);
+		Direct_Memory.putImage(machine.memory, buffer);
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Creates a machine in the state saved in a snapshot file. Its memory is a
+	 * private mapping of the file, so the machine's writes are not stored in the
+	 * file and one snapshot can be restored any number of times. A snapshot
+	 * that can only be read is copied into memory instead of mapped.
+	 *
+	 * @param file path of the snapshot
+	 * @return the restored machine
+	 * @throws IOException if the file can not be mapped or is not a snapshot
+	 */
+	public static Machine restore(Path file) throws IOException {
+		ByteBuffer mapped = Direct_Memory.mapPrivately(file, FILE_SIZE, "Snapshot");
+		if (mapped.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a snapshot");
+		}
+		if (mapped.getShort(4) != VERSION) {
+			throw new IOException("Unsupported snapshot version " + mapped.getShort(4));
+		}
+		Machine machine = new Machine(new Direct_Memory(mapped.slice(HEADER_SIZE, Direct_Memory.IMAGE_SIZE)));
+		machine.PC = mapped.getShort(6) & WORD_MASK;
+		machine.prev_pc = mapped.getShort(8) & WORD_MASK;
+		machine.setCCR(mapped.getShort(10));
+		for (int r = 0; r < REGISTER_COUNT; r++) {
+			machine.registers[r] = mapped.getShort(12 + 2 * r);
+		}
+		machine.instructionCount = mapped.getLong(28);
+		int nameLength = mapped.getShort(36) & WORD_MASK;
+		if (nameLength > MAX_NAME_LENGTH) {
+			throw new IOException("Snapshot " + file + " has a corrupt name");
+		}
+		byte[] name = new byte[nameLength];
+		mapped.get(NAME_OFFSET, name);
+		machine.name = new String(name, StandardCharsets.UTF_8);
+		return machine;
+	}
+}
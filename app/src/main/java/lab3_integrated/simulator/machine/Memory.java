@@ -0,0 +1,76 @@
+package lab3_integrated.simulator.machine;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Backend holding the 64K words of the machine's memory. Addresses are
+ * unsigned 16-bit values; memory can also be viewed as 128 pages of 512
+ * words, which is how the Loader and the trace output address it.
+ */
+public interface Memory {
+
+	/**
+	 * Number of words in memory, pages and words per page.
+	 */
+	public static final int SIZE = 0x10000;
+	public static final int PAGE_COUNT = 128;
+	public static final int PAGE_SIZE = 512;
+
+	/**
+	 * Returns the word stored at the address.
+	 * 
+	 * @param address address in the range [0, 0xFFFF]
+	 * @return memory[address]
+	 */
+	public short read(int address);
+
+	/**
+	 * Stores a word at the address.
+	 * 
+	 * @param address address in the range [0, 0xFFFF]
+	 * @param value   the word to store
+	 * @updates memory
+	 * @ensures memory[address] = value
+	 */
+	public void write(int address, short value);
+
+	/**
+	 * Returns the word stored at a word of a page.
+	 * 
+	 * @param page page in the range [0, 127]
+	 * @param word word of the page in the range [0, 511]
+	 * @return memory[page * 512 + word]
+	 */
+	public default short read(int page, int word) {
+		return this.read(page * PAGE_SIZE + word);
+	}
+
+	/**
+	 * Stores a word at a word of a page.
+	 * 
+	 * @param page  page in the range [0, 127]
+	 * @param word  word of the page in the range [0, 511]
+	 * @param value the word to store
+	 * @updates memory
+	 * @ensures memory[page * 512 + word] = value
+	 */
+	public default void write(int page, int word, short value) {
+		this.write(page * PAGE_SIZE + word, value);
+	}
+
+	/**
+	 * Stores the words remaining in a buffer at consecutive addresses, starting
+	 * at the address.
+	 * 
+	 * @param address address of the first word, with address + words.remaining()
+	 *                at most SIZE
+	 * @param words   the words to store
+	 * @updates memory, words
+	 * @ensures memory[address, address + |#words|) = #words
+	 */
+	public default void write(int address, ShortBuffer words) {
+		while (words.hasRemaining()) {
+			this.write(address++, words.get());
+		}
+	}
+}
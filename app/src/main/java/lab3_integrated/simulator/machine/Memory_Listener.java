@@ -0,0 +1,15 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Notified by the Machine whenever an instruction writes a word of memory, so
+ * anything derived from the contents of memory can be dropped.
+ */
+public interface Memory_Listener {
+
+	/**
+	 * Called after the word at the address was written by ST, STI or STR.
+	 * 
+	 * @param address the address that was written
+	 */
+	public void wordWritten(int address);
+}
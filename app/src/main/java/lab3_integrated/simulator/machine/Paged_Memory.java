@@ -0,0 +1,40 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Memory held as 128 pages of 512 words each, the original layout of the
+ * machine's memory.
+ */
+public class Paged_Memory implements Memory {
+
+	/**
+	 * The pages of memory.
+	 */
+	private final short[][] pages;
+
+	/**
+	 * Creates memory with every word set to zero.
+	 */
+	public Paged_Memory() {
+		this.pages = new short[PAGE_COUNT][PAGE_SIZE];
+	}
+
+	@Override
+	public short read(int address) {
+		return this.pages[(address / PAGE_SIZE) % PAGE_COUNT][address % PAGE_SIZE];
+	}
+
+	@Override
+	public void write(int address, short value) {
+		this.pages[(address / PAGE_SIZE) % PAGE_COUNT][address % PAGE_SIZE] = value;
+	}
+
+	@Override
+	public short read(int page, int word) {
+		return this.pages[page][word];
+	}
+
+	@Override
+	public void write(int page, int word, short value) {
+		this.pages[page][word] = value;
+	}
+}
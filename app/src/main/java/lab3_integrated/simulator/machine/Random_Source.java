@@ -0,0 +1,14 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Source of the values the RND trap stores into R0.
+ */
+public interface Random_Source {
+
+	/**
+	 * Returns the next random value.
+	 * 
+	 * @return a value in the range of a signed short
+	 */
+	public short nextShort();
+}
@@ -0,0 +1,67 @@
+package lab3_integrated.simulator.machine;
+
+/**
+ * Outcome of running a batch of instructions with Machine.run.
+ */
+public final class Run_Result {
+
+	/**
+	 * Why a run stopped: a HALT trap was executed, the instruction budget was used
+	 * up, the PC reached a breakpoint, or a TRAP with a vector outside the trap
+	 * table was executed.
+	 */
+	public static enum Exit_Reason {
+		HALT, BUDGET_EXHAUSTED, BREAKPOINT, INVALID_TRAP
+	};
+
+	private final long instructionsRetired;
+	private final int finalPC;
+	private final Exit_Reason exitReason;
+
+	/**
+	 * Constructor with every field as a parameter.
+	 *
+	 * @param instructionsRetired the number of instructions executed
+	 * @param finalPC             the PC when the run stopped
+	 * @param exitReason          why the run stopped
+	 */
+	public Run_Result(long instructionsRetired, int finalPC, Exit_Reason exitReason) {
+		this.instructionsRetired = instructionsRetired;
+		this.finalPC = finalPC;
+		this.exitReason = exitReason;
+	}
+
+	/**
+	 * Returns the number of instructions executed by the run.
+	 *
+	 * @return the number of instructions retired
+	 */
+	public long getInstructionsRetired() {
+		return this.instructionsRetired;
+	}
+
+	/**
+	 * Returns the PC when the run stopped, which is the address of the next
+	 * instruction to run.
+	 *
+	 * @return the final PC
+	 */
+	public int getFinalPC() {
+		return this.finalPC;
+	}
+
+	/**
+	 * Returns why the run stopped.
+	 *
+	 * @return the exit reason
+	 */
+	public Exit_Reason getExitReason() {
+		return this.exitReason;
+	}
+
+	@Override
+	public String toString() {
+		return this.exitReason + " after " + this.instructionsRetired + " instructions at PC x"
+				+ Integer.toHexString(this.finalPC).toUpperCase();
+	}
+}
@@ -0,0 +1,60 @@
+package lab3_integrated.simulator.machine;
+
+import java.util.InputMismatchException;
+import java.util.Scanner;
+
+/**
+ * Interactive input read from a Scanner, prompting on the console before each
+ * read and prompting again until INN is given a valid number.
+ */
+public class Scanner_Input implements Input_Device {
+
+	private static final String NEWLINE = System.lineSeparator();
+
+	private final Scanner in;
+
+	/**
+	 * Constructor with the Scanner as the parameter.
+	 * 
+	 * @param in the Scanner input is read from
+	 */
+	public Scanner_Input(Scanner in) {
+		this.in = in;
+	}
+
+	@Override
+	public char readCharacter(Console_Device console) {
+		// Getting the character input
+		console.message("\nEnter a character: ");
+		console.flush();
+		char input = this.in.next().charAt(0);
+		console.message(NEWLINE);
+		return input;
+	}
+
+	@Override
+	public short readNumber(Console_Device console) {
+		// Specifying the rules for input
+		console.message("\nRequirments for input" + NEWLINE);
+		console.message("\t1. Must be written as a decimal number" + NEWLINE);
+		console.message("\t2. Must be within the range of [" + Short.MIN_VALUE + ", " + Short.MAX_VALUE + "]\n" + NEWLINE);
+		int input = Short.MIN_VALUE - 1;
+
+		// Trying to parse the proper input
+		do {
+			try {
+				console.message("Enter a valid input adhering to the rules: ");
+				console.flush();
+				input = this.in.nextInt();
+			} catch (InputMismatchException e) {
+				console.message("Invalid input." + NEWLINE);
+			}
+
+			// Clearing the buffer
+			this.in.nextLine();
+		} while (input < Short.MIN_VALUE || input > Short.MAX_VALUE);
+
+		console.message("\nValue of the given input: " + input + "\n" + NEWLINE);
+		return (short) input;
+	}
+}
@@ -0,0 +1,128 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+/**
+ * Input given ahead of time as a queue of whitespace separated tokens, read
+ * without prompting or blocking. IN takes the first character of the next
+ * token, and INN takes the next token that is a decimal number in the range of
+ * a signed short, skipping any others as the interactive prompt would reject
+ * them. Tokens can be added while the program runs.
+ */
+public class Scripted_Input implements Input_Device {
+
+	private final ArrayDeque<String> tokens;
+
+	/**
+	 * Creates input with no tokens.
+	 */
+	public Scripted_Input() {
+		this.tokens = new ArrayDeque<>();
+	}
+
+	/**
+	 * Creates input holding the tokens of the text.
+	 * 
+	 * @param text the input, tokens separated by whitespace
+	 */
+	public Scripted_Input(CharSequence text) {
+		this();
+		this.add(text);
+	}
+
+	/**
+	 * Creates input holding the tokens of UTF-8 encoded bytes.
+	 * 
+	 * @param bytes the input, tokens separated by whitespace
+	 * @return the input
+	 */
+	public static Scripted_Input fromBytes(byte[] bytes) {
+		return new Scripted_Input(new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Creates input holding the tokens of a file.
+	 * 
+	 * @param file the path of the file, tokens separated by whitespace
+	 * @return the input
+	 * @throws IOException if the file can not be read
+	 */
+	public static Scripted_Input fromFile(Path file) throws IOException {
+		return fromBytes(Files.readAllBytes(file));
+	}
+
+	/**
+	 * Adds the tokens of the text to the end of the input.
+	 * 
+	 * @param text tokens separated by whitespace
+	 */
+	public void add(CharSequence text) {
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean separator = i == text.length() || Character.isWhitespace(text.charAt(i));
+			if (separator && start >= 0) {
+				this.tokens.add(text.subSequence(start, i).toString());
+				start = -1;
+			} else if (!separator && start < 0) {
+				start = i;
+			}
+		}
+	}
+
+	/**
+	 * Adds a character for IN to the end of the input.
+	 * 
+	 * @param c the character
+	 */
+	public void addCharacter(char c) {
+		this.tokens.add(String.valueOf(c));
+	}
+
+	/**
+	 * Adds a number for INN to the end of the input.
+	 * 
+	 * @param value the number
+	 */
+	public void addNumber(short value) {
+		this.tokens.add(Short.toString(value));
+	}
+
+	/**
+	 * Returns the number of tokens not read yet.
+	 * 
+	 * @return the number of tokens left
+	 */
+	public int remaining() {
+		return this.tokens.size();
+	}
+
+	@Override
+	public char readCharacter(Console_Device console) {
+		String token = this.tokens.poll();
+		if (token == null) {
+			throw new NoSuchElementException("No input left for IN");
+		}
+		return token.charAt(0);
+	}
+
+	@Override
+	public short readNumber(Console_Device console) {
+		String token;
+		while ((token = this.tokens.poll()) != null) {
+			try {
+				int value = Integer.parseInt(token);
+				if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+					return (short) value;
+				}
+			} catch (NumberFormatException e) {
+				/* Skipped like an invalid answer to the prompt */
+			}
+		}
+		throw new NoSuchElementException("No input left for INN");
+	}
+}
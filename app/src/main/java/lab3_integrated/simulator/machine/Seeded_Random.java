@@ -0,0 +1,26 @@
+package lab3_integrated.simulator.machine;
+
+import java.util.Random;
+
+/**
+ * Random values for RND from a seeded generator, so two machines given the same
+ * seed see the same sequence.
+ */
+public class Seeded_Random implements Random_Source {
+
+	private final Random random;
+
+	/**
+	 * Constructor with the seed as the parameter.
+	 * 
+	 * @param seed the seed of the generator
+	 */
+	public Seeded_Random(long seed) {
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public short nextShort() {
+		return (short) this.random.nextInt(1 << 16);
+	}
+}
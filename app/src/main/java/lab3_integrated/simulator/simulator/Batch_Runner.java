@@ -0,0 +1,296 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import lab3_integrated.simulator.loader.Image_Cache;
+import lab3_integrated.simulator.loader.Loader;
+import lab3_integrated.simulator.loader.Loader_Exception;
+import lab3_integrated.simulator.machine.Capture_Console;
+import lab3_integrated.simulator.machine.Input_Device;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Run_Result;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+/**
+ * Runs many executables in parallel on a work-stealing pool, each on its own
+ * machine with its own instruction budget, and summarizes how each run ended.
+ * Jobs share no state but a cache of the programs loaded, so throughput grows
+ * with the number of cores, and an executable run by many jobs is parsed once.
+ */
+public final class Batch_Runner {
+
+	/**
+	 * Budget of the jobs that do not give one, the simulator's default.
+	 */
+	public static final long DEFAULT_BUDGET = 1000;
+
+	/**
+	 * Number of jobs a task runs itself instead of splitting them. Runs vary
+	 * widely in length, so tasks are split down to single jobs.
+	 */
+	private static final int SPLIT_THRESHOLD = 1;
+
+	/**
+	 * An executable to run, with its instruction budget and optionally a file of
+	 * answers for the IN and INN traps.
+	 */
+	public static final class Job {
+		private final Path executable;
+		private final long budget;
+		private final Path input;
+
+		/**
+		 * Constructor with every field as a parameter.
+		 *
+		 * @param executable path of the executable
+		 * @param budget     the maximum number of instructions to run
+		 * @param input      file of whitespace separated answers, or null for none
+		 */
+		public Job(Path executable, long budget, Path input) {
+			this.executable = executable;
+			this.budget = budget;
+			this.input = input;
+		}
+
+		public Path getExecutable() {
+			return this.executable;
+		}
+	}
+
+	/**
+	 * How a job ended: the Run_Result and the characters output by the program,
+	 * or the error that stopped it.
+	 */
+	public static final class Result {
+		private final Path executable;
+		private final Run_Result run;
+		private final String error;
+		private final String output;
+
+		private Result(Path executable, Run_Result run, String error, String output) {
+			this.executable = executable;
+			this.run = run;
+			this.error = error;
+			this.output = output;
+		}
+
+		public Path getExecutable() {
+			return this.executable;
+		}
+
+		/**
+		 * Returns the result of the run.
+		 *
+		 * @return the result, or null if the job failed
+		 */
+		public Run_Result getRun() {
+			return this.run;
+		}
+
+		/**
+		 * Returns why the job failed.
+		 *
+		 * @return the error, or null if the run finished
+		 */
+		public String getError() {
+			return this.error;
+		}
+
+		public String getOutput() {
+			return this.output;
+		}
+
+		/**
+		 * Returns the line of the summary for the job: the executable, exit reason
+		 * or error, instructions retired, final PC and output, separated by tabs.
+		 * Tabs, line breaks and backslashes in the output are escaped.
+		 *
+		 * @return the summary line
+		 */
+		public String toSummaryLine() {
+			String reason = this.run == null ? "ERROR: " + this.error : this.run.getExitReason().toString();
+			String retired = this.run == null ? "-" : Long.toString(this.run.getInstructionsRetired());
+			String pc = this.run == null ? "-" : "x" + Integer.toHexString(this.run.getFinalPC()).toUpperCase();
+			return this.executable + "\t" + reason + "\t" + retired + "\t" + pc + "\t" + escape(this.output);
+		}
+	}
+
+	private final ForkJoinPool pool;
+	private final Image_Cache cache;
+
+	/**
+	 * Creates a runner with one worker per available processor.
+	 */
+	public Batch_Runner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism the number of workers
+	 */
+	public Batch_Runner(int parallelism) {
+		this(parallelism, new Image_Cache(Image_Cache.DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * @param parallelism the number of workers
+	 * @param cache       the cache the jobs load their executables through
+	 */
+	public Batch_Runner(int parallelism, Image_Cache cache) {
+		this.pool = new ForkJoinPool(parallelism);
+		this.cache = cache;
+	}
+
+	public Image_Cache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Reads the jobs of a directory or manifest. A directory runs each of its .o
+	 * files with the default budget. Each line of a manifest is an executable,
+	 * optionally followed by its budget and its input file; blank lines and lines
+	 * starting with # are skipped, and paths are relative to the manifest.
+	 *
+	 * @param source        directory of executables or manifest file
+	 * @param defaultBudget budget of the jobs that do not give one
+	 * @return the jobs, in file name or manifest order
+	 * @throws IOException if the directory or manifest can not be read or a
+	 *                     manifest line is invalid
+	 */
+	public static List<Job> readJobs(Path source, long defaultBudget) throws IOException {
+		List<Job> jobs = new ArrayList<>();
+		if (Files.isDirectory(source)) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(source, "*.o")) {
+				for (Path file : files) {
+					jobs.add(new Job(file, defaultBudget, null));
+				}
+			}
+			jobs.sort((a, b) -> a.executable.compareTo(b.executable));
+			return jobs;
+		}
+		Path base = source.toAbsolutePath().getParent();
+		int lineNumber = 0;
+		for (String line : Files.readAllLines(source)) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("\\s+");
+			try {
+				long budget = fields.length > 1 ? Long.parseLong(fields[1]) : defaultBudget;
+				Path input = fields.length > 2 ? base.resolve(fields[2]) : null;
+				if (fields.length > 3 || budget < 0) {
+					throw new NumberFormatException();
+				}
+				jobs.add(new Job(base.resolve(fields[0]), budget, input));
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid job on line " + lineNumber + " of " + source + ": " + line);
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Runs the jobs on the pool, splitting them between the workers, which steal
+	 * jobs from each other as they finish.
+	 *
+	 * @param jobs the jobs to run
+	 * @return the results, in the order of the jobs
+	 */
+	public List<Result> run(List<Job> jobs) {
+		Result[] results = new Result[jobs.size()];
+		this.pool.invoke(new Batch_Task(jobs, this.cache, results, 0, jobs.size()));
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Stops the workers once the running jobs are done.
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	/**
+	 * Writes a header line and the summary line of each result.
+	 *
+	 * @param results the results to summarize
+	 * @param out     the stream to write to
+	 */
+	public static void writeSummary(List<Result> results, PrintStream out) {
+		out.println("executable\texit\tinstructions\tpc\toutput");
+		for (Result result : results) {
+			out.println(result.toSummaryLine());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Loads and runs one job on its own machine.
+	 *
+	 * @param job   the job
+	 * @param cache the cache to load the executable through
+	 * @return the result of the job
+	 */
+	static Result runJob(Job job, Image_Cache cache) {
+		Machine machine = new Machine();
+		Capture_Console console = new Capture_Console(true);
+		machine.console = console;
+		try {
+			new Loader(false, cache).load(job.executable.toString(), machine);
+			Input_Device input = job.input == null ? new Scripted_Input() : Scripted_Input.fromFile(job.input);
+			Run_Result run = machine.run(job.budget, input);
+			machine.console.flush();
+			return new Result(job.executable, run, null, console.getOutput());
+		} catch (Loader_Exception | IOException | RuntimeException e) {
+			String error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+			return new Result(job.executable, null, error, console.getOutput());
+		}
+	}
+
+	private static String escape(String text) {
+		return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	/**
+	 * Task running a range of the jobs, split in halves until each task has
+	 * one job left.
+	 */
+	private static final class Batch_Task extends RecursiveAction {
+		private final List<Job> jobs;
+		private final Image_Cache cache;
+		private final Result[] results;
+		private final int from;
+		private final int to;
+
+		Batch_Task(List<Job> jobs, Image_Cache cache, Result[] results, int from, int to) {
+			this.jobs = jobs;
+			this.cache = cache;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= SPLIT_THRESHOLD) {
+				for (int i = this.from; i < this.to; i++) {
+					this.results[i] = runJob(this.jobs.get(i), this.cache);
+				}
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new Batch_Task(this.jobs, this.cache, this.results, this.from, middle),
+					new Batch_Task(this.jobs, this.cache, this.results, middle, this.to));
+		}
+	}
+}
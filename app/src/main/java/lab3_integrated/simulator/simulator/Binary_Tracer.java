@@ -0,0 +1,97 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory_Listener;
+
+/**
+ * Records each instruction run by the interpreter as a Trace_Record, from the
+ * registers and memory it changed. The interpreter calls before and after
+ * around every instruction.
+ */
+final class Binary_Tracer implements Memory_Listener, Closeable {
+
+	private static final int REGISTER_COUNT = 8;
+	private static final int LINK_REGISTER = 7;
+
+	private final Machine machine;
+	private final Trace_Writer writer;
+
+	/**
+	 * Registers, PC, word and the memory written by the current instruction.
+	 */
+	private final short[] registers;
+	private int pc;
+	private short word;
+	private int address;
+
+	/**
+	 * Starts a trace file and listens to the writes of the machine.
+	 *
+	 * @param machine the machine about to run its first traced instruction
+	 * @param file    path of the trace file
+	 * @throws IOException if the file can not be created
+	 */
+	Binary_Tracer(Machine machine, Path file) throws IOException {
+		this.machine = machine;
+		this.writer = new Trace_Writer(file, machine);
+		this.registers = new short[REGISTER_COUNT];
+		machine.memoryListener = this;
+	}
+
+	/**
+	 * Called after the instruction at the address was fetched.
+	 *
+	 * @param pc the address of the instruction
+	 */
+	void before(int pc) {
+		this.pc = pc;
+		this.word = this.machine.memory.read(pc);
+		System.arraycopy(this.machine.registers, 0, this.registers, 0, REGISTER_COUNT);
+		this.address = -1;
+	}
+
+	/**
+	 * Called after the instruction ran, records it.
+	 */
+	void after() {
+		Machine m = this.machine;
+		int flags = m.getCCR();
+		int register = 0;
+		short registerValue = 0;
+		short link = 0;
+		for (int r = 0; r < REGISTER_COUNT; r++) {
+			if (m.registers[r] == this.registers[r]) {
+				continue;
+			}
+			if (r == LINK_REGISTER && (flags & Trace_Record.REGISTER_WRITTEN) != 0) {
+				flags |= Trace_Record.LINK_WRITTEN;
+				link = m.registers[r];
+			} else {
+				flags |= Trace_Record.REGISTER_WRITTEN;
+				register = r;
+				registerValue = m.registers[r];
+			}
+		}
+		short value = 0;
+		if (this.address >= 0) {
+			flags |= Trace_Record.MEMORY_WRITTEN;
+			value = m.memory.read(this.address);
+		}
+		this.writer.write(Trace_Record.first(this.pc, this.word, m.PC, flags, register),
+				Trace_Record.second(registerValue, Math.max(this.address, 0), value, link));
+	}
+
+	@Override
+	public void wordWritten(int address) {
+		this.address = address;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.writer.close();
+	}
+}
@@ -0,0 +1,554 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import lab3_integrated.simulator.machine.Instruction_Decoder;
+
+/**
+ * Compiles the straight-line body of a basic block into a hidden class
+ * implementing Compiled_Block. The generated code works directly on the
+ * register array and the Flat_Memory array of the machine; stores go through
+ * Machine.writeWord so the engines hear about them.
+ *
+ * Only the last condition code update of the block is emitted (or the last
+ * one before a deoptimization exit), since nothing inside the block reads the
+ * CCRs.
+ *
+ * The class files are version 49 so no stack map frames have to be written.
+ */
+final class Block_Compiler {
+
+	/**
+	 * Internal names and descriptors referenced by the generated class.
+	 */
+	private static final String CLASS_NAME = "lab3_integrated/simulator/simulator/Jit_Block";
+	private static final String OBJECT = "java/lang/Object";
+	private static final String BLOCK = "lab3_integrated/simulator/simulator/Compiled_Block";
+	private static final String MACHINE = "lab3_integrated/simulator/machine/Machine";
+	private static final String ENGINE = "lab3_integrated/simulator/simulator/Tiered_Engine";
+	private static final String RUN_DESCRIPTOR = "(L" + MACHINE + ";[S[SL" + ENGINE + ";)I";
+
+	/**
+	 * Class file constants.
+	 */
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int CLASS_VERSION = 49;
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+	private static final int MAX_STACK = 6;
+	private static final int MAX_LOCALS = 6;
+
+	/**
+	 * Local variable slots of the run method.
+	 */
+	private static final int MACHINE_SLOT = 1;
+	private static final int REGISTERS_SLOT = 2;
+	private static final int MEMORY_SLOT = 3;
+	private static final int ENGINE_SLOT = 4;
+	private static final int ADDRESS_SLOT = 5;
+
+	/**
+	 * JVM opcodes used by the generated code.
+	 */
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC_W = 0x13;
+	private static final int ILOAD = 0x15;
+	private static final int ALOAD = 0x19;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int SALOAD = 0x35;
+	private static final int ISTORE = 0x36;
+	private static final int SASTORE = 0x56;
+	private static final int IADD = 0x60;
+	private static final int IAND = 0x7e;
+	private static final int IXOR = 0x82;
+	private static final int I2S = 0x93;
+	private static final int IFEQ = 0x99;
+	private static final int IRETURN = 0xac;
+	private static final int RETURN = 0xb1;
+	private static final int GETFIELD = 0xb4;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+
+	/**
+	 * Machine constants.
+	 */
+	private static final int WORD_MASK = 0xFFFF;
+	private static final int PAGE_SHIFT = 9;
+
+	private final MethodHandles.Lookup lookup;
+
+	/**
+	 * @param lookup full privilege lookup in this package, used to define the
+	 *               hidden classes
+	 */
+	Block_Compiler(MethodHandles.Lookup lookup) {
+		this.lookup = lookup;
+	}
+
+	/**
+	 * Returns whether an instruction can be part of a compiled block body.
+	 *
+	 * @param opcode the opcode of the instruction
+	 * @return false for the instructions that end a block
+	 */
+	static boolean isCompilable(int opcode) {
+		switch (opcode) {
+		case Instruction_Decoder.ADD:
+		case Instruction_Decoder.AND:
+		case Instruction_Decoder.NOT:
+		case Instruction_Decoder.LD:
+		case Instruction_Decoder.LDI:
+		case Instruction_Decoder.LDR:
+		case Instruction_Decoder.LEA:
+		case Instruction_Decoder.ST:
+		case Instruction_Decoder.STI:
+		case Instruction_Decoder.STR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Compiles a block body.
+	 *
+	 * @param start the address of the first instruction
+	 * @param words the instructions of the body, all compilable and on one page
+	 * @return the compiled block
+	 */
+	Compiled_Block compile(int start, short[] words) {
+		byte[] classFile = this.classFile(start, words);
+		try {
+			Class<?> block = this.lookup.defineHiddenClass(classFile, true).lookupClass();
+			return (Compiled_Block) this.lookup.findConstructor(block, MethodType.methodType(void.class)).invoke();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Unable to compile the block at 0x" + Integer.toHexString(start), e);
+		}
+	}
+
+	/**
+	 * Writes the class file of a block.
+	 */
+	private byte[] classFile(int start, short[] words) {
+		Constant_Pool pool = new Constant_Pool();
+		int thisClass = pool.classRef(CLASS_NAME);
+		int superClass = pool.classRef(OBJECT);
+		int blockInterface = pool.classRef(BLOCK);
+		int code = pool.utf8("Code");
+		int init = pool.utf8("<init>");
+		int voidDescriptor = pool.utf8("()V");
+		int run = pool.utf8("run");
+		int runDescriptor = pool.utf8(RUN_DESCRIPTOR);
+
+		Bytecode constructor = new Bytecode(pool);
+		constructor.op(ALOAD_0);
+		constructor.op(INVOKESPECIAL);
+		constructor.u2(pool.methodRef(OBJECT, "<init>", "()V"));
+		constructor.op(RETURN);
+
+		Bytecode body = new Bytecode(pool);
+		body.block(start, words);
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			out.writeShort(0);
+			out.writeShort(CLASS_VERSION);
+			pool.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(blockInterface);
+			out.writeShort(0); // fields
+			out.writeShort(2); // methods
+			writeMethod(out, init, voidDescriptor, code, constructor);
+			writeMethod(out, run, runDescriptor, code, body);
+			out.writeShort(0); // class attributes
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, Bytecode code)
+			throws IOException {
+		byte[] instructions = code.toByteArray();
+		out.writeShort(ACC_PUBLIC);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);
+		out.writeShort(codeName);
+		out.writeInt(12 + instructions.length);
+		out.writeShort(MAX_STACK);
+		out.writeShort(MAX_LOCALS);
+		out.writeInt(instructions.length);
+		out.write(instructions);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // code attributes
+	}
+
+	/**
+	 * Constant pool of a class file, reusing equal entries.
+	 */
+	private static final class Constant_Pool {
+		private static final int UTF8 = 1;
+		private static final int INTEGER = 3;
+		private static final int CLASS = 7;
+		private static final int FIELD_REF = 9;
+		private static final int METHOD_REF = 10;
+		private static final int NAME_AND_TYPE = 12;
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(this.bytes);
+		private final Map<String, Integer> indexes = new HashMap<>();
+		private int count = 1;
+
+		int utf8(String value) {
+			return this.entry("U" + value, () -> {
+				this.out.writeByte(UTF8);
+				this.out.writeUTF(value);
+			});
+		}
+
+		int integer(int value) {
+			return this.entry("I" + value, () -> {
+				this.out.writeByte(INTEGER);
+				this.out.writeInt(value);
+			});
+		}
+
+		int classRef(String name) {
+			int utf8 = this.utf8(name);
+			return this.entry("C" + name, () -> {
+				this.out.writeByte(CLASS);
+				this.out.writeShort(utf8);
+			});
+		}
+
+		int methodRef(String owner, String name, String descriptor) {
+			return this.memberRef(METHOD_REF, owner, name, descriptor);
+		}
+
+		int fieldRef(String owner, String name, String descriptor) {
+			return this.memberRef(FIELD_REF, owner, name, descriptor);
+		}
+
+		private int memberRef(int tag, String owner, String name, String descriptor) {
+			int ownerClass = this.classRef(owner);
+			int nameUtf8 = this.utf8(name);
+			int descriptorUtf8 = this.utf8(descriptor);
+			int nameAndType = this.entry("N" + name + descriptor, () -> {
+				this.out.writeByte(NAME_AND_TYPE);
+				this.out.writeShort(nameUtf8);
+				this.out.writeShort(descriptorUtf8);
+			});
+			return this.entry("M" + tag + owner + "." + name + descriptor, () -> {
+				this.out.writeByte(tag);
+				this.out.writeShort(ownerClass);
+				this.out.writeShort(nameAndType);
+			});
+		}
+
+		private int entry(String key, Entry_Writer writer) {
+			Integer index = this.indexes.get(key);
+			if (index == null) {
+				try {
+					writer.write();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				index = this.count++;
+				this.indexes.put(key, index);
+			}
+			return index;
+		}
+
+		void writeTo(DataOutputStream classFile) throws IOException {
+			classFile.writeShort(this.count);
+			classFile.write(this.bytes.toByteArray());
+		}
+
+		private interface Entry_Writer {
+			void write() throws IOException;
+		}
+	}
+
+	/**
+	 * Code of one method.
+	 */
+	private static final class Bytecode {
+		private final Constant_Pool pool;
+		private byte[] code = new byte[64];
+		private int length = 0;
+
+		/**
+		 * Register whose value the CCRs must be set from before leaving the block, or
+		 * -1 if no instruction so far sets the CCRs.
+		 */
+		private int ccrRegister = -1;
+
+		Bytecode(Constant_Pool pool) {
+			this.pool = pool;
+		}
+
+		void op(int opcode) {
+			if (this.length == this.code.length) {
+				this.code = Arrays.copyOf(this.code, this.length * 2);
+			}
+			this.code[this.length++] = (byte) opcode;
+		}
+
+		void u2(int value) {
+			this.op(value >>> 8);
+			this.op(value);
+		}
+
+		int position() {
+			return this.length;
+		}
+
+		void patchU2(int position, int value) {
+			this.code[position] = (byte) (value >>> 8);
+			this.code[position + 1] = (byte) value;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.code, this.length);
+		}
+
+		void push(int value) {
+			if (value >= -1 && value <= 5) {
+				this.op(ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				this.op(BIPUSH);
+				this.op(value);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				this.op(SIPUSH);
+				this.u2(value);
+			} else {
+				this.op(LDC_W);
+				this.u2(this.pool.integer(value));
+			}
+		}
+
+		void load(int opcode, int slot) {
+			this.op(opcode);
+			this.op(slot);
+		}
+
+		/**
+		 * Pushes registers[reg].
+		 */
+		void register(int reg) {
+			this.load(ALOAD, REGISTERS_SLOT);
+			this.push(reg);
+			this.op(SALOAD);
+		}
+
+		/**
+		 * Pushes memory[address] for a constant address.
+		 */
+		void word(int address) {
+			this.load(ALOAD, MEMORY_SLOT);
+			this.push(address);
+			this.op(SALOAD);
+		}
+
+		/**
+		 * Pushes memory[address] for the address held in the address slot.
+		 */
+		void wordAtSlot() {
+			this.load(ALOAD, MEMORY_SLOT);
+			this.load(ILOAD, ADDRESS_SLOT);
+			this.op(SALOAD);
+		}
+
+		/**
+		 * Stores the unsigned value on the stack into the address slot.
+		 */
+		void storeAddress() {
+			this.push(WORD_MASK);
+			this.op(IAND);
+			this.load(ISTORE, ADDRESS_SLOT);
+		}
+
+		/**
+		 * Computes register[baseR] + index6 into the address slot.
+		 */
+		void baseAddress(int baseR, int index6) {
+			this.register(baseR);
+			this.push(WORD_MASK);
+			this.op(IAND);
+			this.push(index6);
+			this.op(IADD);
+			this.storeAddress();
+		}
+
+		/**
+		 * Sets the CCRs from the last register written, if any.
+		 */
+		void updateCCR() {
+			if (this.ccrRegister >= 0) {
+				this.load(ALOAD, MACHINE_SLOT);
+				this.register(this.ccrRegister);
+				this.op(INVOKEVIRTUAL);
+				this.u2(this.pool.methodRef(MACHINE, "updateCCR", "(S)V"));
+			}
+		}
+
+		/**
+		 * Writes register[sr] through Machine.writeWord to the address slot, then
+		 * leaves the block if the write deoptimized it.
+		 */
+		void storeWord(int sr, int executed) {
+			this.load(ALOAD, MACHINE_SLOT);
+			this.load(ILOAD, ADDRESS_SLOT);
+			this.register(sr);
+			this.op(INVOKEVIRTUAL);
+			this.u2(this.pool.methodRef(MACHINE, "writeWord", "(IS)V"));
+
+			this.load(ALOAD, ENGINE_SLOT);
+			this.op(GETFIELD);
+			this.u2(this.pool.fieldRef(ENGINE, "deoptimized", "Z"));
+			int branch = this.position();
+			this.op(IFEQ);
+			this.u2(0);
+			this.updateCCR();
+			this.push(executed);
+			this.op(IRETURN);
+			this.patchU2(branch + 1, this.position() - branch);
+		}
+
+		/**
+		 * Starts writing registers[dr] = value, the value has to be pushed next.
+		 */
+		void startRegisterWrite(int dr) {
+			this.load(ALOAD, REGISTERS_SLOT);
+			this.push(dr);
+		}
+
+		/**
+		 * Finishes writing registers[dr] and remembers it for the CCRs.
+		 */
+		void endRegisterWrite(int dr) {
+			this.op(I2S);
+			this.op(SASTORE);
+			this.ccrRegister = dr;
+		}
+
+		/**
+		 * Emits the body of the block and the final return.
+		 */
+		void block(int start, short[] words) {
+			for (int i = 0; i < words.length; i++) {
+				this.instruction(start + i, words[i], i + 1);
+			}
+			this.updateCCR();
+			this.push(words.length);
+			this.op(IRETURN);
+		}
+
+		/**
+		 * Emits one instruction.
+		 *
+		 * @param address  the address of the instruction
+		 * @param word     the instruction
+		 * @param executed number of instructions executed once this one is done
+		 */
+		private void instruction(int address, short word, int executed) {
+			int dr = Instruction_Decoder.dr(word);
+			int sr1 = Instruction_Decoder.sr1(word);
+			int pcAddress = pageAddress((address + 1) & WORD_MASK, Instruction_Decoder.pgoffset9(word));
+
+			switch (Instruction_Decoder.opcode(word)) {
+			case Instruction_Decoder.ADD:
+			case Instruction_Decoder.AND:
+				this.startRegisterWrite(dr);
+				this.register(sr1);
+				if (Instruction_Decoder.isImmediate(word)) {
+					this.push(signExtend(Instruction_Decoder.imm5(word)));
+				} else {
+					this.register(Instruction_Decoder.sr2(word));
+				}
+				this.op(Instruction_Decoder.opcode(word) == Instruction_Decoder.ADD ? IADD : IAND);
+				this.endRegisterWrite(dr);
+				break;
+			case Instruction_Decoder.NOT:
+				this.startRegisterWrite(dr);
+				this.register(sr1);
+				this.push(-1);
+				this.op(IXOR);
+				this.endRegisterWrite(dr);
+				break;
+			case Instruction_Decoder.LD:
+				this.startRegisterWrite(dr);
+				this.word(pcAddress);
+				this.endRegisterWrite(dr);
+				break;
+			case Instruction_Decoder.LDI:
+				this.word(pcAddress);
+				this.storeAddress();
+				this.startRegisterWrite(dr);
+				this.wordAtSlot();
+				this.endRegisterWrite(dr);
+				break;
+			case Instruction_Decoder.LDR:
+				this.baseAddress(sr1, Instruction_Decoder.index6(word));
+				this.startRegisterWrite(dr);
+				this.wordAtSlot();
+				this.endRegisterWrite(dr);
+				break;
+			case Instruction_Decoder.LEA:
+				this.startRegisterWrite(dr);
+				this.push((short) pcAddress);
+				this.endRegisterWrite(dr);
+				break;
+			case Instruction_Decoder.ST:
+				this.push(pcAddress);
+				this.load(ISTORE, ADDRESS_SLOT);
+				this.storeWord(dr, executed);
+				break;
+			case Instruction_Decoder.STI:
+				this.word(pcAddress);
+				this.storeAddress();
+				this.storeWord(dr, executed);
+				break;
+			case Instruction_Decoder.STR:
+				this.baseAddress(sr1, Instruction_Decoder.index6(word));
+				this.storeWord(dr, executed);
+				break;
+			default:
+				throw new IllegalArgumentException("Instruction 0x" + Integer.toHexString(word & WORD_MASK)
+						+ " ends a block and can't be compiled");
+			}
+		}
+
+		/**
+		 * Address formed from the page of the PC and a 9-bit offset, as
+		 * Machine.getAddressPC does.
+		 */
+		private static int pageAddress(int pc, int pgoffset9) {
+			return (((pc >> PAGE_SHIFT) << PAGE_SHIFT) + pgoffset9) & WORD_MASK;
+		}
+
+		/**
+		 * Sign extends a 5-bit immediate, as Machine.signExtend does.
+		 */
+		private static int signExtend(int imm5) {
+			return (imm5 << 27) >> 27;
+		}
+	}
+}
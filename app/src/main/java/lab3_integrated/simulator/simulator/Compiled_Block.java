@@ -0,0 +1,26 @@
+package lab3_integrated.simulator.simulator;
+
+import lab3_integrated.simulator.machine.Machine;
+
+/**
+ * The straight-line body of a basic block compiled to JVM bytecode by the
+ * Block_Compiler. The body covers the instructions before the BRx, JSR, JSRR,
+ * RET, TRAP or DBUG ending the block; the ending instruction itself is run by
+ * the Tiered_Engine.
+ */
+interface Compiled_Block {
+
+	/**
+	 * Runs the instructions of the block. PC and prev_pc are not updated while
+	 * the block runs, the engine sets them from the returned count.
+	 *
+	 * @param machine   the machine to run on
+	 * @param registers the register array of the machine
+	 * @param memory    the words of the machine's Flat_Memory
+	 * @param engine    the engine running the block, checked for deoptimization
+	 *                  after each store
+	 * @return the number of instructions executed, less than the block length
+	 *         if a store deoptimized the block
+	 */
+	int run(Machine machine, short[] registers, short[] memory, Tiered_Engine engine);
+}
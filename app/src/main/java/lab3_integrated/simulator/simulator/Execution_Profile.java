@@ -0,0 +1,230 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import lab3_integrated.simulator.machine.Decode_Cache;
+import lab3_integrated.simulator.machine.Instruction_Decoder;
+import lab3_integrated.simulator.machine.Machine;
+
+/**
+ * Counts of the instructions run by a session: how many times each address
+ * was run, how many instructions of each opcode ran, and how many times the
+ * BRx at each address branched or fell through. Counting is two or three
+ * array increments per instruction, cheap enough to leave on for whole runs.
+ *
+ * The Threaded_Engine counts only the address of each instruction, plus the
+ * branches of BRx. The runs of each address are added to the count of the
+ * opcode of its node when the node is rebuilt and when the counts are read,
+ * so a profile is counted by one engine.
+ */
+public final class Execution_Profile {
+
+	private static final int ADDRESSES = 0x10000;
+	private static final int OPCODES = 16;
+
+	/**
+	 * Number of times each address ran, incremented by the Threaded_Engine
+	 * itself.
+	 */
+	final long[] counts = new long[ADDRESSES];
+	private final long[] opcodeCounts = new long[OPCODES];
+	private final long[] taken = new long[ADDRESSES];
+	private final long[] notTaken = new long[ADDRESSES];
+
+	/**
+	 * Opcode of the node the Threaded_Engine built at each address, or -1, and
+	 * the count of the address already added to the opcode counts.
+	 */
+	private final byte[] nodeOpcodes = new byte[ADDRESSES];
+	private final long[] nodeCounted = new long[ADDRESSES];
+
+	public Execution_Profile() {
+		Arrays.fill(this.nodeOpcodes, (byte) -1);
+	}
+
+	/**
+	 * Counts an instruction about to run, and for BRx whether it branches.
+	 *
+	 * @param address the address of the instruction
+	 * @param entry   the decoded instruction
+	 * @param machine the machine about to run it, whose condition codes decide
+	 *                the branch
+	 * @updates this
+	 */
+	void count(int address, int entry, Machine machine) {
+		int opcode = Decode_Cache.opcode(entry);
+		this.counts[address]++;
+		this.opcodeCounts[opcode]++;
+		if (opcode == Instruction_Decoder.BRX) {
+			this.countBranch(address, nzp(entry), machine);
+		}
+	}
+
+	/**
+	 * Records that the Threaded_Engine built a node at an address, adding the
+	 * runs of the node it replaces to the count of that node's opcode.
+	 *
+	 * @param address the address of the node
+	 * @param opcode  the opcode of the node
+	 * @updates this
+	 */
+	void nodeBuilt(int address, int opcode) {
+		this.addNodeRuns(address);
+		this.nodeOpcodes[address] = (byte) opcode;
+	}
+
+	/**
+	 * Counts whether the BRx at an address about to run branches.
+	 *
+	 * @param address the address of the BRx
+	 * @param nzp     the condition codes the BRx tests
+	 * @param machine the machine about to run it
+	 * @updates this
+	 */
+	void countBranch(int address, int nzp, Machine machine) {
+		if ((machine.getCCR() & nzp) != 0) {
+			this.taken[address]++;
+		} else {
+			this.notTaken[address]++;
+		}
+	}
+
+	/**
+	 * Returns the condition codes a decoded BRx tests, in the bits of the CCR.
+	 */
+	static int nzp(int entry) {
+		return (Decode_Cache.n(entry) << 2) | (Decode_Cache.z(entry) << 1) | Decode_Cache.p(entry);
+	}
+
+	private void addNodeRuns(int address) {
+		int opcode = this.nodeOpcodes[address];
+		if (opcode >= 0) {
+			this.opcodeCounts[opcode] += this.counts[address] - this.nodeCounted[address];
+			this.nodeCounted[address] = this.counts[address];
+		}
+	}
+
+	/**
+	 * Adds the runs of every node not added yet to the opcode counts.
+	 */
+	private void addAllNodeRuns() {
+		for (int address = 0; address < ADDRESSES; address++) {
+			this.addNodeRuns(address);
+		}
+	}
+
+	/**
+	 * Returns the number of times the instruction at the address ran.
+	 *
+	 * @param address the address
+	 * @return the count
+	 */
+	public long getCount(int address) {
+		return this.counts[address];
+	}
+
+	/**
+	 * Returns the number of instructions of the opcode that ran.
+	 *
+	 * @param opcode the opcode
+	 * @return the count
+	 */
+	public long getOpcodeCount(int opcode) {
+		this.addAllNodeRuns();
+		return this.opcodeCounts[opcode];
+	}
+
+	/**
+	 * Returns the number of times the BRx at the address branched.
+	 *
+	 * @param address the address
+	 * @return the count
+	 */
+	public long getTaken(int address) {
+		return this.taken[address];
+	}
+
+	/**
+	 * Returns the number of times the BRx at the address fell through.
+	 *
+	 * @param address the address
+	 * @return the count
+	 */
+	public long getNotTaken(int address) {
+		return this.notTaken[address];
+	}
+
+	/**
+	 * Returns the number of instructions counted.
+	 *
+	 * @return the total of the opcode counts
+	 */
+	public long getTotal() {
+		this.addAllNodeRuns();
+		long total = 0;
+		for (long count : this.opcodeCounts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Writes the hot-spot report: each address that ran, most run first, with
+	 * its share of the instructions, the instruction at the address when the run
+	 * ended and for BRx its branch counts, then the count of each opcode that
+	 * ran, most run first.
+	 *
+	 * @param machine the machine the profile was counted on
+	 * @param out     the stream the report is written to
+	 */
+	public void writeReport(Machine machine, PrintStream out) {
+		long total = this.getTotal();
+		out.println("Instructions run: " + total);
+		out.println();
+		out.printf("%-8s %14s %8s  %-5s %s%n", "address", "count", "share", "op", "branches");
+		for (int address : hottest(this.counts)) {
+			int instruction = machine.memory.read(machine.getMemoryPageLocation(address),
+					machine.getMemoryWordLocation(address)) & 0xFFFF;
+			String branches = "";
+			if (this.taken[address] + this.notTaken[address] > 0) {
+				branches = "taken " + this.taken[address] + ", not taken " + this.notTaken[address];
+			}
+			out.printf("x%04X    %14d %7.2f%%  %-5s %s%n", address, this.counts[address],
+					share(this.counts[address], total), Simulator.INSTRUCTION_NAMES[instruction >>> 12], branches);
+		}
+		out.println();
+		out.printf("%-8s %14s %8s%n", "opcode", "count", "share");
+		for (int opcode : hottest(this.opcodeCounts)) {
+			out.printf("%-8s %14d %7.2f%%%n", Simulator.INSTRUCTION_NAMES[opcode], this.opcodeCounts[opcode],
+					share(this.opcodeCounts[opcode], total));
+		}
+		out.flush();
+	}
+
+	/**
+	 * Returns the indexes of the counts that are not zero, by descending count,
+	 * then by index.
+	 */
+	private static int[] hottest(long[] counts) {
+		long[] keys = new long[counts.length];
+		int size = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				// Counts fit in 47 bits for any run this simulator can do in practice,
+				// so the count and the index sort as one key
+				keys[size++] = (-counts[i] << 16) | i;
+			}
+		}
+		Arrays.sort(keys, 0, size);
+		int[] indexes = new int[size];
+		for (int i = 0; i < size; i++) {
+			indexes[i] = (int) (keys[i] & 0xFFFF);
+		}
+		return indexes;
+	}
+
+	private static double share(long count, long total) {
+		return total == 0 ? 0 : 100.0 * count / total;
+	}
+}
@@ -1,374 +1,275 @@
 package lab3_integrated.simulator.simulator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Scanner;
+import lab3_integrated.simulator.machine.Buffered_Console;
+import lab3_integrated.simulator.machine.Event_Recorder;
+import lab3_integrated.simulator.machine.Event_Replayer;
+import lab3_integrated.simulator.machine.Input_Device;
+import lab3_integrated.simulator.machine.Scanner_Input;
+import lab3_integrated.simulator.machine.Seeded_Random;
 import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Machine_Snapshot;
+import lab3_integrated.simulator.loader.Image_Cache;
 import lab3_integrated.simulator.loader.Loader;
+import lab3_integrated.simulator.loader.Loader_Exception;
 
-
+/**
+ * Command-line front end of the simulator. simulator_main reads the settings
+ * in the static fields, loads the executable and runs it in a
+ * Simulator_Session, which holds all of the state of one simulation.
+ */
 public class Simulator {
 
 	public static enum Mode{QUIET, TRACE, STEP};
-	public static Mode mode;
-	public static Machine machine;
-	private static int REGISTER_SIZE = 8;
-	private static int SHORT_MAX_VALUE = 0x10000;
-	private static int defaultLoopNum = 1000;
-	private static Scanner read;
-	
 	/**
-	 * Constants for the lower 8 bits of certain TRAP instructors
+	 * Engines that can run the program. THREADED and TIERED are only used in Quiet
+	 * mode, the other modes always run on the interpreter so they can trace each
+	 * step.
 	 */
-	private static int IN_VECT = 0x23;
-	private static int INN_VECT = 0x33;
-	private static int RND_VECT = 0x43;
-
-	
-	public static void simulator_main(String fileName) {
-		int pc, loopNum;
-		String state, numInstructs;
-		boolean halt;
-		read = new Scanner(System.in);
-		machine = new Machine();
-		
-		Loader.parseInputFile(fileName, machine, read);
-		
-		System.out.println("Please enter 1 for Quiet mode, 2 for Trace mode, or 3 for Step mode");
-		state = read.nextLine();
-		switch (state) {
-			case "2" -> mode = Mode.TRACE;
-			case "3" -> mode = Mode.STEP;
-			default -> mode = Mode.QUIET;
-		}
-		
-		System.out.println("Please enter the maximum number of instructions you'd like the program to run for");
-		numInstructs = read.nextLine();
-		if (isNum(numInstructs)) {
-			loopNum = Integer.parseInt(numInstructs);
-		} else {
-			loopNum = defaultLoopNum;
-		}
-		
-		for (int i = 0; i < loopNum; i++) {
-			pc = machine.getPC();
-			short instruction = machine.memory[machine.getMemoryPageLocation(pc)][machine.getMemoryWordLocation(pc)];
-			halt = ParseInstruction(instruction);
-			if (halt) {
-				break;
-			}
-			if (mode == Mode.STEP) {
-				System.out.println("Press enter when you want to continue");
-				read.nextLine();
-			}
-		}
-		read.close();
-	}
+	public static enum Engine{INTERPRETER, THREADED, TIERED};
+	public static Engine engine = parseEngine(System.getProperty("simulator.engine"));
 	/**
-	 * Parses the instruction that is taken from the space in memory and runs said instruction
-	 * 
-	 * @param instruction taken from the space in memory assigned by the PC
-	 * @return returns whether the program should be halted by the HALT instruction
+	 * Whether the console only writes the characters output by the program,
+	 * without the descriptions of each trap or the simulator's messages.
 	 */
-	public static boolean ParseInstruction(short instruction) {
-		boolean halt = false;
-		String instructString = Integer.toBinaryString(instruction);
-		if (instructString.length() > 16) {
-			instructString = instructString.substring(16);
-		}
-		instructString = addLeadingZeros(instructString);
-		short instruct = Short.parseShort(instructString.substring(0,4));
-		// Destination register
-		int dr = Integer.parseInt(instructString.substring(4,7), 2);
-		// Source register 1
-		int sr1 = Integer.parseInt(instructString.substring(7,10), 2);
-		// Source register 2
-		int sr2 = Integer.parseInt(instructString.substring(13), 2);
-		// nzp flags in the ccrs
-		int n = Integer.parseInt(instructString.substring(4, 5), 2);
-		int z = Integer.parseInt(instructString.substring(5, 6), 2);
-		int p = Integer.parseInt(instructString.substring(6, 7), 2);
-		int L = Integer.parseInt(instructString.substring(4, 5), 2);
-		int imm5 = Integer.parseInt(instructString.substring(11), 2);
-		int pgoffset = Integer.parseInt(instructString.substring(7), 2);
-		int BaseR = Integer.parseInt(instructString.substring(7, 10), 2);
-		int index = Integer.parseInt(instructString.substring(10), 2);
-		// Trap vector to indicate which trap method to run
-		int trapVect = Integer.parseInt(instructString.substring(8), 2);
-		switch (instruct) {
-			case 1:
-				outputMachineStateBeforeCheck("ADD");
-				if (instructString.charAt(10) == '0') {
-					machine.ADD_REG(dr, sr1, sr2);
-				} else {
-					machine.ADD_IMM(dr, sr1, imm5);
-				}
-				outputAffectedRegisters(dr, sr1, sr2);
-				outputMachineStateAfterCheck("ADD");
-				break;
-			case 101:
-				outputMachineStateBeforeCheck("AND");
-				if (instructString.charAt(10) == '0') {
-					machine.AND_REG(dr, sr1, sr2);
-				} else {
-					machine.AND_IMM(dr, sr1, imm5);
-				}
-				outputAffectedRegisters(dr, sr1, sr2);
-				outputMachineStateAfterCheck("AND");
-				break;
-			case 0:
-				outputMachineStateBeforeCheck("BRx");
-				machine.BRx(n, z, p, pgoffset);
-				outputAffectedPC(machine.PC, 0, -1);
-				outputMachineStateAfterCheck("BRx");
-				break;
-			case 1000:
-				outputMachineStateBeforeCheck("DBUG");
-				outputMachineState();
-				outputMachineStateAfterCheck("DBUG");
-				break;
-			case 100:
-				outputMachineStateBeforeCheck("JSR");
-				machine.JSR(L, pgoffset);
-				outputAffectedPC(machine.PC, L, -1);
-				outputMachineStateAfterCheck("JSR");
-				break;
-			case 1100:
-				outputMachineStateBeforeCheck("JSRR");
-				machine.JSRR(L, BaseR, index);
-				outputAffectedPC(machine.PC, L, BaseR);
-				outputMachineStateAfterCheck("JSRR");
-				break;
-			case 10:
-				outputMachineStateBeforeCheck("LD");
-				machine.LD(dr, pgoffset);
-				outputLoadStore(machine.prev_pc, -1, dr, -1, false);
-				outputMachineStateAfterCheck("LD");
-				break;
-			case 1010:
-				outputMachineStateBeforeCheck("LDI");
-				machine.LDI(dr, pgoffset);
-				outputLoadStore(machine.prev_pc, machine.PC, dr, -1, false);
-				outputMachineStateAfterCheck("LDI");
-				break;
-			case 110:
-				outputMachineStateBeforeCheck("LDR");
-				machine.LDR(dr, BaseR, index);
-				outputLoadStore(machine.prev_pc, -1, dr, BaseR, false);
-				outputMachineStateAfterCheck("LDR");
-				break;
-			case 1110:
-				outputMachineStateBeforeCheck("LEA");
-				machine.LEA(dr, pgoffset);
-				outputLoadStore(-1, -1, dr, -1, false);
-				outputMachineStateAfterCheck("LEA");
-				break;
-			case 1001:
-				outputMachineStateBeforeCheck("NOT");
-				machine.NOT(dr, sr1);
-				outputOtherReg(dr, sr1);
-				outputMachineStateAfterCheck("NOT");
-				break;
-			case 1101:
-				outputMachineStateBeforeCheck("RET");
-				machine.RET();
-				outputOtherReg(7, -1);
-				outputMachineStateAfterCheck("RET");
-				break;
-			case 11:
-				outputMachineStateBeforeCheck("ST");
-				machine.ST(dr, pgoffset);
-				outputLoadStore(machine.getAddressPC(machine.PC, pgoffset), -1, sr1, -1, true);
-				outputMachineStateAfterCheck("ST");
-				break;
-			case 1011:
-				int address = machine.getAddressPC(machine.PC, pgoffset);
-				int new_address = machine.memory[machine.getMemoryPageLocation(address)][machine.getMemoryWordLocation(address)];
-				outputMachineStateBeforeCheck("STI");
-				machine.STI(dr, pgoffset);
-				outputLoadStore(address, new_address, sr1, -1, true);
-				outputMachineStateAfterCheck("STI");
-				break;
-			case 111:
-				outputMachineStateBeforeCheck("STR");
-				machine.STR(dr, BaseR, index);
-				outputLoadStore(machine.getAddressReg(BaseR, index), -1, sr1, BaseR, true);
-				outputMachineStateAfterCheck("STR");
-				break;
-			case 1111:
-				outputMachineStateBeforeCheck("TRAP");
-				halt = machine.TRAP(trapVect, read);
-				if (trapVect == IN_VECT || trapVect == INN_VECT || trapVect == RND_VECT) {
-					outputAffectedRegisters(0, -1, -1);
-				}
-				outputMachineStateAfterCheck("TRAP");
-				break;
-		}
-		return halt;
-	}
-	
+	public static boolean rawOutput = false;
 	/**
-	 * Outputting the state the machine before executing the instructions.
-	 * 
-	 * @param instName the name of the instruction
+	 * Seed of the values of RND, or null for Math.random. Runs can also be
+	 * recorded to an event log, or replay one, so they repeat exactly.
 	 */
-	private static void outputMachineStateBeforeCheck(String instName) {
-		if (mode == Mode.TRACE || mode == Mode.STEP) {
-			System.out.println("\nState of the machine BEFORE executing the " + instName + " instruction\n");
-			outputMachineState();
-		}
-	}
-
+	public static Long seed;
+	public static Path recordFile;
+	public static Path replayFile;
 	/**
-	 * Outputting the state the machine after executing the instructions and
-	 * affected memory locations and CCRs.
-	 * 
-	 * @param instName the name of the instruction
+	 * File each instruction is recorded to in the binary trace format, or null.
+	 * Binary traced runs always use the interpreter.
 	 */
-	private static void outputMachineStateAfterCheck(String instName) {
-		if (mode == Mode.TRACE || mode == Mode.STEP) {
-			System.out.println("\nState of the machine AFTER executing the " + instName + " instruction\n");
-			outputMachineState();
-		}
-	}
-
+	public static Path traceFile;
 	/**
-	 * Output the state of the machine (Instruction, memory page, registers, and
-	 * CCRs).
+	 * Filter choosing which instructions Trace and Step mode print, or null to
+	 * print every instruction. It does not apply to the binary trace.
 	 */
-	private static void outputMachineState() {
-		System.out.println("Current instruction: 0x" + Integer.toHexString(machine.prev_pc));
-		System.out.println("Next instruction: 0x" + Integer.toHexString(machine.PC));
-
-		System.out.println("Memory page: " + machine.getMemoryPageLocation(machine.PC));
-
-		System.out.println("Registers: ");
-
-		for (int i = 0; i < REGISTER_SIZE; i++) {
-			System.out.println("R" + i + ": " + machine.registers[i]);
-		}
-
-		System.out.println("CCRs: ");
+	public static Trace_Filter traceFilter;
+	/**
+	 * Snapshot the machine is restored from instead of loading the executable,
+	 * and snapshot it is saved to when the run is done, or null.
+	 */
+	public static Path restoreFile;
+	public static Path snapshotFile;
+	/**
+	 * File the hot-spot report of the run is written to, or null to not profile
+	 * the run. Profiled runs on the tiered engine use its threaded tier.
+	 */
+	public static Path profileFile;
+	/**
+	 * Whether the executable is mapped into memory and parsed in place instead of
+	 * read into a buffer, which loads large executables faster.
+	 */
+	public static boolean mapExecutable = false;
+	/**
+	 * Cache the executable is loaded through, or null to parse it every time.
+	 */
+	public static Image_Cache imageCache;
+	private static int defaultLoopNum = 1000;
 
-		int n = 0, z = 0, p = 0;
+	/**
+	 * Names of the instructions in the trace output, indexed by opcode.
+	 */
+	static final String[] INSTRUCTION_NAMES = { "BRx", "ADD", "LD", "ST", "JSR", "AND", "LDR", "STR", "DBUG", "NOT",
+			"LDI", "STI", "JSRR", "RET", "LEA", "TRAP" };
 
-		if (machine.ccr[0]) {
-			n = 1;
+	/**
+	 * Returns the engine named by the simulator.engine system property. An
+	 * invalid name is reported the way an invalid --engine is, and the
+	 * interpreter is used, so a mistyped property does not stop the class from
+	 * loading.
+	 *
+	 * @param name the name of the engine in any case, or null for the default
+	 * @return the engine, or INTERPRETER if the name is null or invalid
+	 */
+	static Engine parseEngine(String name) {
+		if (name == null) {
+			return Engine.INTERPRETER;
 		}
-
-		if (machine.ccr[1]) {
-			z = 1;
+		try {
+			return Engine.valueOf(name.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.err.println("ERROR: invalid value " + name + " for -Dsimulator.engine, using the interpreter");
+			return Engine.INTERPRETER;
 		}
+	}
 
-		if (machine.ccr[2]) {
-			p = 1;
-		}
+	public static void simulator_main(String fileName, Engine engine) {
+		Simulator.engine = engine;
+		simulator_main(fileName);
+	}
 
-		System.out.println("N: " + n + "\tZ: " + z + "\tP: " + p);
-		System.out.println();
+	public static void simulator_main(String fileName) {
+		simulator_main(fileName, null, null, new Scanner(System.in));
 	}
 
 	/**
-	 * Print the affected registers with data movement instructions.
+	 * Loads and runs the executable, only prompting for the mode and the maximum
+	 * number of instructions if they are not given.
 	 * 
-	 * @param DR  destination register
-	 * @param SR1 source register 1
-	 * @param SR2 source register 2/immediate value
+	 * @param fileName the path of the executable
+	 * @param runMode  the mode to run in, or null to prompt for it
+	 * @param maxInstructions the maximum number of instructions to run, or null to
+	 *                 prompt for it
+	 * @param in       the input for the prompts and the IN and INN traps, closed
+	 *                 when the run is done
 	 */
-	private static void outputAffectedRegisters(int DR, int SR1, int SR2) {
-		if (mode == Mode.TRACE || mode == Mode.STEP) {
-			System.out.println("Affected Register: R" + DR);
-
-			if (SR1 >= 1) {
-				if (SR2 < 0) {
-					System.out.println("Used Register: R" + SR1);
-				} else {
-					System.out.println("Used Register: R" + SR1 + ", R" + SR2);
-				}
-			}
-		}
-
+	public static void simulator_main(String fileName, Mode runMode, Integer maxInstructions, Scanner in) {
+		simulator_main(fileName, runMode, maxInstructions, in, new Scanner_Input(in));
 	}
 
 	/**
-	 * Output the PC value with instructions that change the flow of control.
+	 * Loads and runs the executable with the IN and INN traps reading from their
+	 * own input device.
 	 * 
-	 * @param PC  program counter
-	 * @param L   bit to see if the address was saved or not
-	 * @param reg base register (addressing mode)
+	 * @param fileName the path of the executable, not read if restoreFile is set
+	 * @param runMode  the mode to run in, or null to prompt for it
+	 * @param maxInstructions the maximum number of instructions to run, or null to
+	 *                 prompt for it
+	 * @param in       the input for the prompts, closed when the run is done
+	 * @param trapInput the input read by the IN and INN traps
 	 */
-	private static void outputAffectedPC(int PC, int L, int reg) {
-		if (mode == Mode.TRACE || mode == Mode.STEP) {
-
-			System.out.println("Previous PC value: " + ((machine.prev_pc + 1) % SHORT_MAX_VALUE));
-			System.out.println("New PC value: " + PC);
-
-			if (L == 1) {
-				System.out.print("Affected Register: R7");
+	public static void simulator_main(String fileName, Mode runMode, Integer maxInstructions, Scanner in,
+			Input_Device trapInput) {
+		int loopNum;
+		Mode mode;
+		String state, numInstructs;
+		Machine machine = null;
+		if (restoreFile != null) {
+			try {
+				machine = Machine_Snapshot.restore(restoreFile);
+			} catch (IOException e) {
+				System.err.println("Could not restore the snapshot: " + e.getMessage());
+				System.exit(1);
 			}
-
-			if (reg >= 0) {
-				System.out.print("R" + reg);
+		} else {
+			machine = new Machine();
+			try {
+				new Loader(mapExecutable, imageCache).load(fileName, machine);
+			} catch (Loader_Exception e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
 			}
-
-			System.out.println();
 		}
-	}
-
-	/**
-	 * Outputs the addresses/registers affected by the load/store instructions.
-	 * 
-	 * @param address     one memory touch address
-	 * @param new_address two memory touch address
-	 * @param ds_reg      destination/source register
-	 * @param base_reg    base register (addressing mode)
-	 * @param b           flag to alter between destination or source register
-	 */
-	private static void outputLoadStore(int address, int new_address, int ds_reg, int base_reg, boolean b) {
-		if (mode == Mode.TRACE || mode == Mode.STEP) {
-
-			if (address >= 0) {
-				System.out.print("Address affected: 0x" + Integer.toHexString(address));
-			}
-
-			if (new_address >= 0) {
-				System.out.print(", 0x" + Integer.toHexString(new_address));
+		
+		if (runMode != null) {
+			mode = runMode;
+		} else {
+			System.out.println("Please enter 1 for Quiet mode, 2 for Trace mode, or 3 for Step mode");
+			state = in.nextLine();
+			switch (state) {
+				case "2" -> mode = Mode.TRACE;
+				case "3" -> mode = Mode.STEP;
+				default -> mode = Mode.QUIET;
 			}
-
-			System.out.println();
-
-			if (!b) {
-				System.out.print("Registers affected: R" + ds_reg);
+		}
+		
+		if (maxInstructions != null) {
+			loopNum = maxInstructions;
+		} else {
+			System.out.println("Please enter the maximum number of instructions you'd like the program to run for");
+			numInstructs = in.nextLine();
+			if (isNum(numInstructs)) {
+				loopNum = Integer.parseInt(numInstructs);
 			} else {
-				System.out.print("Registers used: R" + ds_reg);
+				loopNum = defaultLoopNum;
+			}
+		}
+		
+		// Trace and Step output is written straight to System.out, so the console
+		// only buffers in Quiet mode to keep the two in order
+		machine.console = new Buffered_Console(System.out, mode == Mode.QUIET ? Buffered_Console.DEFAULT_THRESHOLD : 0,
+				rawOutput);
+		Input_Device input = setUpEvents(machine, trapInput);
+		Simulator_Session session = new Simulator_Session(machine, mode, input, in, System.out);
+		session.setEngine(engine);
+		session.setTraceFilter(traceFilter);
+		Binary_Tracer tracer = null;
+		if (traceFile != null) {
+			try {
+				tracer = new Binary_Tracer(machine, traceFile);
+			} catch (IOException e) {
+				System.err.println("Could not open the trace file: " + e.getMessage());
+				System.exit(1);
+			}
+			session.setTracer(tracer);
+		}
+		Execution_Profile profile = null;
+		if (profileFile != null) {
+			profile = new Execution_Profile();
+			session.setProfile(profile);
+		}
+		
+		session.run(loopNum);
+		machine.console.flush();
+		if (profile != null) {
+			try (PrintStream report = new PrintStream(Files.newOutputStream(profileFile))) {
+				profile.writeReport(machine, report);
+			} catch (IOException e) {
+				System.err.println("Could not write the profile: " + e.getMessage());
+			}
+		}
+		if (snapshotFile != null) {
+			try {
+				Machine_Snapshot.save(machine, snapshotFile);
+			} catch (IOException e) {
+				System.err.println("Could not write the snapshot: " + e.getMessage());
 			}
-
-			System.out.println();
 		}
+		if (tracer != null) {
+			try {
+				tracer.close();
+			} catch (IOException e) {
+				System.err.println("Could not write the trace file: " + e.getMessage());
+			}
+		}
+		if (input instanceof Event_Recorder recorder) {
+			try {
+				recorder.close();
+			} catch (IOException e) {
+				System.err.println("Could not write the event log: " + e.getMessage());
+			}
+		}
+		in.close();
 	}
 
 	/**
-	 * Output the state of registers for the NOT and RET instructions.
+	 * Seeds the random source of the machine and sets up the recording or replay
+	 * of its events, according to seed, recordFile and replayFile.
 	 * 
-	 * @param DR destination register
-	 * @param SR source register
+	 * @param machine   the machine about to run
+	 * @param trapInput the input read by the IN and INN traps
+	 * @return the input the IN and INN traps read, an Event_Recorder to close
+	 *         when the run is done if the run is recorded
 	 */
-	private static void outputOtherReg(int DR, int SR) {
-		if (mode == Mode.TRACE || mode == Mode.STEP) {
-
-			System.out.print("Registers affected: R" + DR);
-
-			if (SR >= 0) {
-				System.out.print("Registers used: R" + SR);
-			}
+	private static Input_Device setUpEvents(Machine machine, Input_Device trapInput) {
+		if (seed != null) {
+			machine.random = new Seeded_Random(seed);
 		}
-	}
-	
-	private static String addLeadingZeros(String instructString) {
-		while (instructString.length() < 16) {
-			instructString = "0" + instructString;
+		try {
+			if (replayFile != null) {
+				try (InputStream log = Files.newInputStream(replayFile)) {
+					return new Event_Replayer(machine, log);
+				}
+			} else if (recordFile != null) {
+				return new Event_Recorder(machine, trapInput, Files.newOutputStream(recordFile));
+			}
+		} catch (IOException e) {
+			System.err.println("Could not open the event log: " + e.getMessage());
+			System.exit(1);
 		}
-		
-		return instructString;
+		return trapInput;
 	}
-	
+
 	private static boolean isNum(String str) {
 		for (int i = 0; i < str.length(); i++) {
 			if (str.charAt(i) < '0' || str.charAt(i) > '9') {
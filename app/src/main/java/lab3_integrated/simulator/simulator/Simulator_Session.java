@@ -0,0 +1,666 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.PrintStream;
+import java.util.Scanner;
+
+import lab3_integrated.simulator.machine.Decode_Cache;
+import lab3_integrated.simulator.machine.Input_Device;
+import lab3_integrated.simulator.machine.Instruction_Decoder;
+import lab3_integrated.simulator.machine.Machine;
+
+/**
+ * One simulation: a machine with the program loaded, the mode it runs in, the
+ * input of its IN and INN traps and the stream its trace is printed to. The
+ * machine's console is the session's console. Sessions share no state, so any
+ * number of them can run at once on different threads.
+ */
+public class Simulator_Session {
+
+	private static final int REGISTER_SIZE = 8;
+	private static final int SHORT_MAX_VALUE = 0x10000;
+
+	/**
+	 * Constants for the lower 8 bits of certain TRAP instructors
+	 */
+	private static final int IN_VECT = 0x23;
+	private static final int INN_VECT = 0x33;
+	private static final int RND_VECT = 0x43;
+
+	private final Machine machine;
+	private final Simulator.Mode mode;
+	private final Input_Device input;
+
+	/**
+	 * Input read when Step mode waits for enter, or null.
+	 */
+	private final Scanner read;
+
+	/**
+	 * Stream the trace and the state of the machine are printed to.
+	 */
+	private final PrintStream out;
+
+	private Simulator.Engine engine;
+	private Trace_Filter traceFilter;
+	private Binary_Tracer tracer;
+	private Execution_Profile profile;
+
+	/**
+	 * Registers before the instruction being run, when a register is watched.
+	 */
+	private final short[] watchedRegisters;
+	private boolean watchedChanged;
+
+	/**
+	 * Constructor with every part of the session as a parameter. The session
+	 * runs on the interpreter, without a trace filter or binary trace.
+	 * 
+	 * @param machine the machine with the program loaded
+	 * @param mode    the mode to run in
+	 * @param input   the input read by the IN and INN traps
+	 * @param read    the input read by Step mode, only used in Step mode
+	 * @param out     the stream the trace is printed to
+	 * @throws IllegalArgumentException if the mode is STEP and read is null
+	 */
+	public Simulator_Session(Machine machine, Simulator.Mode mode, Input_Device input, Scanner read,
+			PrintStream out) {
+		if (mode == Simulator.Mode.STEP && read == null) {
+			throw new IllegalArgumentException("Step mode needs an input to wait on");
+		}
+		this.machine = machine;
+		this.mode = mode;
+		this.input = input;
+		this.read = read;
+		this.out = out;
+		this.engine = Simulator.Engine.INTERPRETER;
+		this.watchedRegisters = new short[REGISTER_SIZE];
+	}
+
+	/**
+	 * Constructor for a session printing to standard output, which can not run
+	 * in Step mode.
+	 * 
+	 * @param machine the machine with the program loaded
+	 * @param mode    the mode to run in
+	 * @param input   the input read by the IN and INN traps
+	 */
+	public Simulator_Session(Machine machine, Simulator.Mode mode, Input_Device input) {
+		this(machine, mode, input, null, System.out);
+	}
+
+	/**
+	 * Returns the machine the session runs.
+	 * 
+	 * @return the machine
+	 */
+	public Machine getMachine() {
+		return this.machine;
+	}
+
+	/**
+	 * Returns the mode the session runs in.
+	 * 
+	 * @return the mode
+	 */
+	public Simulator.Mode getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * Sets the engine run uses in Quiet mode.
+	 * 
+	 * @param engine the engine
+	 * @updates this
+	 */
+	public void setEngine(Simulator.Engine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Sets the filter choosing which instructions Trace and Step mode print.
+	 * 
+	 * @param traceFilter the filter, or null to print every instruction
+	 * @updates this
+	 */
+	public void setTraceFilter(Trace_Filter traceFilter) {
+		this.traceFilter = traceFilter;
+	}
+
+	/**
+	 * Sets the tracer every instruction is recorded to. Binary traced runs always
+	 * use the interpreter.
+	 * 
+	 * @param tracer the tracer, or null
+	 * @updates this
+	 */
+	void setTracer(Binary_Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Sets the profile every instruction is counted in. Profiled runs on the
+	 * tiered engine run on its threaded tier, since compiled blocks are not
+	 * counted.
+	 * 
+	 * @param profile the profile, or null
+	 * @updates this
+	 */
+	public void setProfile(Execution_Profile profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * Runs the program on the session's engine, or on the interpreter when the
+	 * session traces, steps or records a binary trace.
+	 * 
+	 * @param loopNum the maximum number of instructions to run
+	 * @return the number of instructions run
+	 */
+	public int run(int loopNum) {
+		if (this.tracer == null && this.mode == Simulator.Mode.QUIET) {
+			if (this.engine == Simulator.Engine.THREADED
+					|| (this.engine == Simulator.Engine.TIERED && this.profile != null)) {
+				Threaded_Engine threaded = new Threaded_Engine(this.machine, this.input, this.out);
+				threaded.setProfile(this.profile);
+				return threaded.run(loopNum);
+			} else if (this.engine == Simulator.Engine.TIERED) {
+				return new Tiered_Engine(this.machine, this.input, this.out).run(loopNum);
+			}
+		}
+		return this.interpret(loopNum);
+	}
+
+	/**
+	 * Runs the program loaded in the machine one decoded instruction at a time,
+	 * tracing and stepping according to the mode.
+	 * 
+	 * @param loopNum the maximum number of instructions to run
+	 * @return the number of instructions run
+	 */
+	public int interpret(int loopNum) {
+		if (this.traceFilter != null && this.mode != Simulator.Mode.QUIET) {
+			return this.interpretFiltered(loopNum, this.traceFilter);
+		}
+		if (this.profile != null) {
+			return this.interpretProfiled(loopNum, this.profile);
+		}
+		int pc;
+		boolean halt;
+		for (int i = 0; i < loopNum; i++) {
+			pc = this.machine.getPC();
+			if (this.tracer != null) {
+				this.tracer.before(pc);
+				halt = this.executeDecoded(this.machine.fetchDecoded(pc));
+				this.tracer.after();
+			} else {
+				halt = this.executeDecoded(this.machine.fetchDecoded(pc));
+			}
+			if (halt) {
+				return i + 1;
+			}
+			if (this.mode == Simulator.Mode.STEP) {
+				this.out.println("Press enter when you want to continue");
+				this.read.nextLine();
+			}
+		}
+		return loopNum;
+	}
+
+	/**
+	 * Runs the program like interpret, counting each instruction in the profile.
+	 * It is a loop of its own so the loop of unprofiled runs does not check for
+	 * the profile.
+	 * 
+	 * @param loopNum the maximum number of instructions to run
+	 * @param profile the profile the instructions are counted in
+	 * @return the number of instructions run
+	 */
+	private int interpretProfiled(int loopNum, Execution_Profile profile) {
+		for (int i = 0; i < loopNum; i++) {
+			int pc = this.machine.getPC();
+			int entry = this.machine.fetchDecoded(pc);
+			profile.count(pc, entry, this.machine);
+			boolean halt;
+			if (this.tracer != null) {
+				this.tracer.before(pc);
+				halt = this.executeDecoded(entry);
+				this.tracer.after();
+			} else {
+				halt = this.executeDecoded(entry);
+			}
+			if (halt) {
+				return i + 1;
+			}
+			if (this.mode == Simulator.Mode.STEP) {
+				this.out.println("Press enter when you want to continue");
+				this.read.nextLine();
+			}
+		}
+		return loopNum;
+	}
+
+	/**
+	 * Runs the program like interpret, only tracing and stepping through the
+	 * instructions the filter selects. The others are run without any of the
+	 * trace checks.
+	 * 
+	 * @param loopNum the maximum number of instructions to run
+	 * @param filter  the filter selecting the instructions to trace
+	 * @return the number of instructions run
+	 */
+	private int interpretFiltered(int loopNum, Trace_Filter filter) {
+		int register = filter.register();
+		for (int i = 0; i < loopNum; i++) {
+			int pc = this.machine.getPC();
+			int entry = this.machine.fetchDecoded(pc);
+			if (this.profile != null) {
+				this.profile.count(pc, entry, this.machine);
+			}
+			if (this.tracer != null) {
+				this.tracer.before(pc);
+			}
+			boolean traced = filter.selects(pc, Decode_Cache.opcode(entry));
+			boolean halt;
+			if (!traced) {
+				halt = this.execute(entry);
+			} else if (register == Trace_Filter.NO_REGISTER) {
+				halt = this.executeDecoded(entry);
+			} else {
+				halt = this.executeWatched(entry, register);
+				traced = this.watchedChanged;
+			}
+			if (this.tracer != null) {
+				this.tracer.after();
+			}
+			if (halt) {
+				return i + 1;
+			}
+			if (traced && this.mode == Simulator.Mode.STEP) {
+				this.out.println("Press enter when you want to continue");
+				this.read.nextLine();
+			}
+		}
+		return loopNum;
+	}
+
+	/**
+	 * Runs an instruction that was already decoded into an entry of the
+	 * Decode_Cache.
+	 * 
+	 * @param entry the decoded instruction
+	 * @return returns whether the program should be halted by the HALT instruction
+	 */
+	public boolean executeDecoded(int entry) {
+		int instruct = Decode_Cache.opcode(entry);
+		// Address STI reads its target from, and that target
+		int address = -1, new_address = -1;
+		if (instruct == Instruction_Decoder.STI) {
+			address = this.machine.getAddressPC(this.machine.PC, Decode_Cache.pgoffset9(entry));
+			new_address = this.machine.memory.read(this.machine.getMemoryPageLocation(address), this.machine.getMemoryWordLocation(address));
+		}
+		this.outputMachineStateBeforeCheck(Simulator.INSTRUCTION_NAMES[instruct]);
+		boolean halt = this.execute(entry);
+		if (this.mode == Simulator.Mode.TRACE || this.mode == Simulator.Mode.STEP) {
+			this.outputAffected(entry, address, new_address);
+		}
+		this.outputMachineStateAfterCheck(Simulator.INSTRUCTION_NAMES[instruct]);
+		return halt;
+	}
+
+	/**
+	 * Runs a decoded instruction without tracing it. Like the other instructions,
+	 * DBUG still outputs the state of the machine.
+	 * 
+	 * @param entry the decoded instruction
+	 * @return returns whether the program should be halted by the HALT instruction
+	 */
+	private boolean execute(int entry) {
+		boolean halt = false;
+		int instruct = Decode_Cache.opcode(entry);
+		// Destination register
+		int dr = Decode_Cache.dr(entry);
+		// Source register 1
+		int sr1 = Decode_Cache.sr1(entry);
+		// Source register 2
+		int sr2 = Decode_Cache.sr2(entry);
+		// nzp flags in the ccrs
+		int n = Decode_Cache.n(entry);
+		int z = Decode_Cache.z(entry);
+		int p = Decode_Cache.p(entry);
+		int L = Decode_Cache.l(entry);
+		int imm5 = Decode_Cache.imm5(entry);
+		int pgoffset = Decode_Cache.pgoffset9(entry);
+		int BaseR = Decode_Cache.baseR(entry);
+		int index = Decode_Cache.index6(entry);
+		// Trap vector to indicate which trap method to run
+		int trapVect = Decode_Cache.trapvect8(entry);
+		switch (instruct) {
+			case Instruction_Decoder.ADD:
+				if (!Decode_Cache.isImmediate(entry)) {
+					this.machine.ADD_REG(dr, sr1, sr2);
+				} else {
+					this.machine.ADD_IMM(dr, sr1, imm5);
+				}
+				break;
+			case Instruction_Decoder.AND:
+				if (!Decode_Cache.isImmediate(entry)) {
+					this.machine.AND_REG(dr, sr1, sr2);
+				} else {
+					this.machine.AND_IMM(dr, sr1, imm5);
+				}
+				break;
+			case Instruction_Decoder.BRX:
+				this.machine.BRx(n, z, p, pgoffset);
+				break;
+			case Instruction_Decoder.DBUG:
+				this.outputMachineState();
+				break;
+			case Instruction_Decoder.JSR:
+				this.machine.JSR(L, pgoffset);
+				break;
+			case Instruction_Decoder.JSRR:
+				this.machine.JSRR(L, BaseR, index);
+				break;
+			case Instruction_Decoder.LD:
+				this.machine.LD(dr, pgoffset);
+				break;
+			case Instruction_Decoder.LDI:
+				this.machine.LDI(dr, pgoffset);
+				break;
+			case Instruction_Decoder.LDR:
+				this.machine.LDR(dr, BaseR, index);
+				break;
+			case Instruction_Decoder.LEA:
+				this.machine.LEA(dr, pgoffset);
+				break;
+			case Instruction_Decoder.NOT:
+				this.machine.NOT(dr, sr1);
+				break;
+			case Instruction_Decoder.RET:
+				this.machine.RET();
+				break;
+			case Instruction_Decoder.ST:
+				this.machine.ST(dr, pgoffset);
+				break;
+			case Instruction_Decoder.STI:
+				this.machine.STI(dr, pgoffset);
+				break;
+			case Instruction_Decoder.STR:
+				this.machine.STR(dr, BaseR, index);
+				break;
+			case Instruction_Decoder.TRAP:
+				halt = this.machine.TRAP(trapVect, this.input);
+				break;
+		}
+		return halt;
+	}
+
+	/**
+	 * Runs a decoded instruction, tracing it like executeDecoded only if it
+	 * changed the watched register. The state before the instruction is kept
+	 * until then, and the BEFORE output is printed from it.
+	 * 
+	 * @param entry    the decoded instruction
+	 * @param register the watched register
+	 * @return returns whether the program should be halted by the HALT instruction
+	 */
+	private boolean executeWatched(int entry, int register) {
+		int instruct = Decode_Cache.opcode(entry);
+		int prevPC = this.machine.prev_pc;
+		int nextPC = this.machine.PC;
+		int ccr = this.machine.getCCR();
+		System.arraycopy(this.machine.registers, 0, this.watchedRegisters, 0, REGISTER_SIZE);
+		int address = -1, new_address = -1;
+		if (instruct == Instruction_Decoder.STI) {
+			address = this.machine.getAddressPC(this.machine.PC, Decode_Cache.pgoffset9(entry));
+			new_address = this.machine.memory.read(this.machine.getMemoryPageLocation(address), this.machine.getMemoryWordLocation(address));
+		}
+		boolean halt = this.execute(entry);
+		this.watchedChanged = this.machine.registers[register] != this.watchedRegisters[register];
+		if (this.watchedChanged) {
+			this.out.println("\nState of the machine BEFORE executing the " + Simulator.INSTRUCTION_NAMES[instruct] + " instruction\n");
+			this.outputMachineState(prevPC, nextPC, this.watchedRegisters, ccr);
+			this.outputAffected(entry, address, new_address);
+			this.outputMachineStateAfterCheck(Simulator.INSTRUCTION_NAMES[instruct]);
+		}
+		return halt;
+	}
+
+	/**
+	 * Outputting the registers, addresses and PC values the instruction that just
+	 * ran affected or used.
+	 * 
+	 * @param entry       the decoded instruction
+	 * @param address     for STI, the address its target was read from
+	 * @param new_address for STI, the target address that was written
+	 */
+	void outputAffected(int entry, int address, int new_address) {
+		int dr = Decode_Cache.dr(entry);
+		int sr1 = Decode_Cache.sr1(entry);
+		int L = Decode_Cache.l(entry);
+		int pgoffset = Decode_Cache.pgoffset9(entry);
+		int BaseR = Decode_Cache.baseR(entry);
+		int trapVect = Decode_Cache.trapvect8(entry);
+		switch (Decode_Cache.opcode(entry)) {
+			case Instruction_Decoder.ADD:
+			case Instruction_Decoder.AND:
+				this.outputAffectedRegisters(dr, sr1, Decode_Cache.sr2(entry));
+				break;
+			case Instruction_Decoder.BRX:
+				this.outputAffectedPC(this.machine.PC, 0, -1);
+				break;
+			case Instruction_Decoder.JSR:
+				this.outputAffectedPC(this.machine.PC, L, -1);
+				break;
+			case Instruction_Decoder.JSRR:
+				this.outputAffectedPC(this.machine.PC, L, BaseR);
+				break;
+			case Instruction_Decoder.LD:
+				this.outputLoadStore(this.machine.prev_pc, -1, dr, -1, false);
+				break;
+			case Instruction_Decoder.LDI:
+				this.outputLoadStore(this.machine.prev_pc, this.machine.PC, dr, -1, false);
+				break;
+			case Instruction_Decoder.LDR:
+				this.outputLoadStore(this.machine.prev_pc, -1, dr, BaseR, false);
+				break;
+			case Instruction_Decoder.LEA:
+				this.outputLoadStore(-1, -1, dr, -1, false);
+				break;
+			case Instruction_Decoder.NOT:
+				this.outputOtherReg(dr, sr1);
+				break;
+			case Instruction_Decoder.RET:
+				this.outputOtherReg(7, -1);
+				break;
+			case Instruction_Decoder.ST:
+				this.outputLoadStore(this.machine.getAddressPC(this.machine.PC, pgoffset), -1, sr1, -1, true);
+				break;
+			case Instruction_Decoder.STI:
+				this.outputLoadStore(address, new_address, sr1, -1, true);
+				break;
+			case Instruction_Decoder.STR:
+				this.outputLoadStore(this.machine.getAddressReg(BaseR, Decode_Cache.index6(entry)), -1, sr1, BaseR, true);
+				break;
+			case Instruction_Decoder.TRAP:
+				if (trapVect == IN_VECT || trapVect == INN_VECT || trapVect == RND_VECT) {
+					this.outputAffectedRegisters(0, -1, -1);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * Outputting the state the machine before executing the instructions.
+	 * 
+	 * @param instName the name of the instruction
+	 */
+	void outputMachineStateBeforeCheck(String instName) {
+		if (this.mode == Simulator.Mode.TRACE || this.mode == Simulator.Mode.STEP) {
+			this.out.println("\nState of the machine BEFORE executing the " + instName + " instruction\n");
+			this.outputMachineState();
+		}
+	}
+
+	/**
+	 * Outputting the state the machine after executing the instructions and
+	 * affected memory locations and CCRs.
+	 * 
+	 * @param instName the name of the instruction
+	 */
+	void outputMachineStateAfterCheck(String instName) {
+		if (this.mode == Simulator.Mode.TRACE || this.mode == Simulator.Mode.STEP) {
+			this.out.println("\nState of the machine AFTER executing the " + instName + " instruction\n");
+			this.outputMachineState();
+		}
+	}
+
+	/**
+	 * Output the state of the machine (Instruction, memory page, registers, and
+	 * CCRs).
+	 */
+	void outputMachineState() {
+		this.outputMachineState(this.machine.prev_pc, this.machine.PC, this.machine.registers, this.machine.getCCR());
+	}
+
+	/**
+	 * Output a state of the machine (Instruction, memory page, registers, and
+	 * CCRs) that may be earlier than its current one.
+	 * 
+	 * @param prevPC    the address of the current instruction
+	 * @param pc        the address of the next instruction
+	 * @param registers the registers
+	 * @param ccr       the CCRs, as a mask of Machine.CCR_N, CCR_Z and CCR_P
+	 */
+	private void outputMachineState(int prevPC, int pc, short[] registers, int ccr) {
+		this.machine.console.flush();
+		this.out.println("Current instruction: 0x" + Integer.toHexString(prevPC));
+		this.out.println("Next instruction: 0x" + Integer.toHexString(pc));
+
+		this.out.println("Memory page: " + this.machine.getMemoryPageLocation(pc));
+
+		this.out.println("Registers: ");
+
+		for (int i = 0; i < REGISTER_SIZE; i++) {
+			this.out.println("R" + i + ": " + registers[i]);
+		}
+
+		this.out.println("CCRs: ");
+
+		int n = (ccr & Machine.CCR_N) != 0 ? 1 : 0;
+		int z = (ccr & Machine.CCR_Z) != 0 ? 1 : 0;
+		int p = (ccr & Machine.CCR_P) != 0 ? 1 : 0;
+
+		this.out.println("N: " + n + "\tZ: " + z + "\tP: " + p);
+		this.out.println();
+	}
+
+	/**
+	 * Print the affected registers with data movement instructions.
+	 * 
+	 * @param DR  destination register
+	 * @param SR1 source register 1
+	 * @param SR2 source register 2/immediate value
+	 */
+	private void outputAffectedRegisters(int DR, int SR1, int SR2) {
+		if (this.mode == Simulator.Mode.TRACE || this.mode == Simulator.Mode.STEP) {
+			this.out.println("Affected Register: R" + DR);
+
+			if (SR1 >= 1) {
+				if (SR2 < 0) {
+					this.out.println("Used Register: R" + SR1);
+				} else {
+					this.out.println("Used Register: R" + SR1 + ", R" + SR2);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Output the PC value with instructions that change the flow of control.
+	 * 
+	 * @param PC  program counter
+	 * @param L   bit to see if the address was saved or not
+	 * @param reg base register (addressing this.mode)
+	 */
+	private void outputAffectedPC(int PC, int L, int reg) {
+		if (this.mode == Simulator.Mode.TRACE || this.mode == Simulator.Mode.STEP) {
+
+			this.out.println("Previous PC value: " + ((this.machine.prev_pc + 1) % SHORT_MAX_VALUE));
+			this.out.println("New PC value: " + PC);
+
+			if (L == 1) {
+				this.out.print("Affected Register: R7");
+			}
+
+			if (reg >= 0) {
+				this.out.print("R" + reg);
+			}
+
+			this.out.println();
+		}
+	}
+
+	/**
+	 * Outputs the addresses/registers affected by the load/store instructions.
+	 * 
+	 * @param address     one memory touch address
+	 * @param new_address two memory touch address
+	 * @param ds_reg      destination/source register
+	 * @param base_reg    base register (addressing this.mode)
+	 * @param b           flag to alter between destination or source register
+	 */
+	private void outputLoadStore(int address, int new_address, int ds_reg, int base_reg, boolean b) {
+		if (this.mode == Simulator.Mode.TRACE || this.mode == Simulator.Mode.STEP) {
+
+			if (address >= 0) {
+				this.out.print("Address affected: 0x" + Integer.toHexString(address));
+			}
+
+			if (new_address >= 0) {
+				this.out.print(", 0x" + Integer.toHexString(new_address));
+			}
+
+			this.out.println();
+
+			if (!b) {
+				this.out.print("Registers affected: R" + ds_reg);
+			} else {
+				this.out.print("Registers used: R" + ds_reg);
+			}
+
+			this.out.println();
+		}
+	}
+
+	/**
+	 * Output the state of registers for the NOT and RET instructions.
+	 * 
+	 * @param DR destination register
+	 * @param SR source register
+	 */
+	private void outputOtherReg(int DR, int SR) {
+		if (this.mode == Simulator.Mode.TRACE || this.mode == Simulator.Mode.STEP) {
+
+			this.out.print("Registers affected: R" + DR);
+
+			if (SR >= 0) {
+				this.out.print("Registers used: R" + SR);
+			}
+		}
+	}
+
+	/**
+	 * Output the state of a machine, for the engines that reach a DBUG
+	 * instruction.
+	 * 
+	 * @param machine the machine
+	 * @param out     the stream to print to
+	 */
+	static void outputMachineState(Machine machine, PrintStream out) {
+		new Simulator_Session(machine, Simulator.Mode.QUIET, null, null, out).outputMachineState();
+	}
+}
@@ -0,0 +1,308 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import lab3_integrated.simulator.machine.Decode_Cache;
+import lab3_integrated.simulator.machine.Input_Device;
+import lab3_integrated.simulator.machine.Instruction_Decoder;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory_Listener;
+
+/**
+ * Execution engine that turns each word of memory into a node with its
+ * operands already bound the first time it is fetched, so running a program
+ * is a walk over the node array with no decoding or trace checks. Nodes are
+ * dropped when the word they were built from is written.
+ *
+ * Produces the same machine state as the interpreter in Quiet mode. With an
+ * Execution_Profile, each instruction also adds one to the count of its
+ * address, and BRx nodes count their branches.
+ */
+public class Threaded_Engine implements Memory_Listener {
+
+	/**
+	 * An instruction with its operands bound.
+	 */
+	interface Node {
+		/**
+		 * Runs the instruction on the machine.
+		 *
+		 * @param machine the machine to run on
+		 * @return whether the instruction halted the machine
+		 */
+		boolean execute(Machine machine);
+	}
+
+	/**
+	 * Number of addressable words in memory.
+	 */
+	private static final int SIZE = 0x10000;
+
+	private final Machine machine;
+	private final Input_Device in;
+	private final PrintStream out;
+
+	/**
+	 * Node built for each address, or null if not built since it was last
+	 * written.
+	 */
+	private final Node[] nodes;
+
+	/**
+	 * Profile the instructions are counted in, or null.
+	 */
+	private Execution_Profile profile;
+
+	/**
+	 * Creates an engine for the machine and registers it to hear about writes.
+	 *
+	 * @param machine the machine with the program loaded
+	 * @param in      the input used by the IN and INN traps
+	 */
+	public Threaded_Engine(Machine machine, Input_Device in) {
+		this(machine, in, System.out);
+	}
+
+	/**
+	 * Creates an engine for the machine printing the state at each DBUG to a
+	 * stream.
+	 *
+	 * @param machine the machine with the program loaded
+	 * @param in      the input used by the IN and INN traps
+	 * @param out     the stream DBUG prints the state of the machine to
+	 */
+	public Threaded_Engine(Machine machine, Input_Device in, PrintStream out) {
+		this.machine = machine;
+		this.in = in;
+		this.out = out;
+		this.nodes = new Node[SIZE];
+		machine.memoryListener = this;
+	}
+
+	/**
+	 * Runs until a HALT or until the maximum number of instructions was executed.
+	 *
+	 * @param maxInstructions the maximum number of instructions to execute
+	 * @return the number of instructions executed
+	 */
+	public int run(int maxInstructions) {
+		if (this.profile != null) {
+			return this.runProfiled(maxInstructions, this.profile.counts);
+		}
+		Machine m = this.machine;
+		Node[] code = this.nodes;
+		for (int i = 0; i < maxInstructions; i++) {
+			int pc = m.getPC();
+			Node node = code[pc];
+			if (node == null) {
+				node = this.build(pc);
+			}
+			if (node.execute(m)) {
+				return i + 1;
+			}
+		}
+		return maxInstructions;
+	}
+
+	/**
+	 * Runs like run, adding one to the count of each instruction's address. It
+	 * is a loop of its own so the loop of unprofiled runs does not check for
+	 * the profile.
+	 */
+	private int runProfiled(int maxInstructions, long[] counts) {
+		Machine m = this.machine;
+		Node[] code = this.nodes;
+		for (int i = 0; i < maxInstructions; i++) {
+			int pc = m.getPC();
+			Node node = code[pc];
+			if (node == null) {
+				node = this.build(pc);
+			}
+			counts[pc]++;
+			if (node.execute(m)) {
+				return i + 1;
+			}
+		}
+		return maxInstructions;
+	}
+
+	/**
+	 * Sets the profile the instructions run are counted in. Nodes already built
+	 * are dropped, so every node is built for the profile.
+	 *
+	 * @param profile the profile, or null
+	 * @updates this
+	 */
+	void setProfile(Execution_Profile profile) {
+		this.profile = profile;
+		this.clear();
+	}
+
+	/**
+	 * Fetches and runs the next instruction. The instruction is not counted in
+	 * the profile.
+	 *
+	 * @return whether the instruction halted the machine
+	 */
+	boolean step() {
+		int pc = this.machine.getPC();
+		Node node = this.nodes[pc];
+		if (node == null) {
+			node = this.build(pc);
+		}
+		return node.execute(this.machine);
+	}
+
+	@Override
+	public void wordWritten(int address) {
+		this.nodes[address] = null;
+	}
+
+	/**
+	 * Drops every node, for when memory was changed without going through the
+	 * machine's store instructions.
+	 */
+	public void clear() {
+		Arrays.fill(this.nodes, null);
+	}
+
+	/**
+	 * Builds the node for the word at the address.
+	 *
+	 * @param address the address of the instruction
+	 * @return the node, also stored for later fetches
+	 */
+	private Node build(int address) {
+		int entry = this.machine.fetchDecoded(address);
+		Node node = this.bind(address, entry);
+		if (this.profile != null) {
+			this.profile.nodeBuilt(address, Decode_Cache.opcode(entry));
+		}
+		this.nodes[address] = node;
+		return node;
+	}
+
+	/**
+	 * Binds the operands of a decoded instruction into a node.
+	 *
+	 * @param address the address of the instruction
+	 * @param entry   the decoded instruction
+	 * @return the node running the instruction
+	 */
+	private Node bind(int address, int entry) {
+		final int dr = Decode_Cache.dr(entry);
+		final int sr1 = Decode_Cache.sr1(entry);
+		final int sr2 = Decode_Cache.sr2(entry);
+		final int imm5 = Decode_Cache.imm5(entry);
+		final int pgoffset = Decode_Cache.pgoffset9(entry);
+		final int index = Decode_Cache.index6(entry);
+		final int L = Decode_Cache.l(entry);
+
+		switch (Decode_Cache.opcode(entry)) {
+		case Instruction_Decoder.ADD:
+			if (Decode_Cache.isImmediate(entry)) {
+				return m -> {
+					m.ADD_IMM(dr, sr1, imm5);
+					return false;
+				};
+			}
+			return m -> {
+				m.ADD_REG(dr, sr1, sr2);
+				return false;
+			};
+		case Instruction_Decoder.AND:
+			if (Decode_Cache.isImmediate(entry)) {
+				return m -> {
+					m.AND_IMM(dr, sr1, imm5);
+					return false;
+				};
+			}
+			return m -> {
+				m.AND_REG(dr, sr1, sr2);
+				return false;
+			};
+		case Instruction_Decoder.BRX:
+			final int n = Decode_Cache.n(entry);
+			final int z = Decode_Cache.z(entry);
+			final int p = Decode_Cache.p(entry);
+			final Execution_Profile counted = this.profile;
+			if (counted != null) {
+				final int nzp = Execution_Profile.nzp(entry);
+				return m -> {
+					counted.countBranch(address, nzp, m);
+					m.BRx(n, z, p, pgoffset);
+					return false;
+				};
+			}
+			return m -> {
+				m.BRx(n, z, p, pgoffset);
+				return false;
+			};
+		case Instruction_Decoder.DBUG:
+			return m -> {
+				Simulator_Session.outputMachineState(m, this.out);
+				return false;
+			};
+		case Instruction_Decoder.JSR:
+			return m -> {
+				m.JSR(L, pgoffset);
+				return false;
+			};
+		case Instruction_Decoder.JSRR:
+			return m -> {
+				m.JSRR(L, sr1, index);
+				return false;
+			};
+		case Instruction_Decoder.LD:
+			return m -> {
+				m.LD(dr, pgoffset);
+				return false;
+			};
+		case Instruction_Decoder.LDI:
+			return m -> {
+				m.LDI(dr, pgoffset);
+				return false;
+			};
+		case Instruction_Decoder.LDR:
+			return m -> {
+				m.LDR(dr, sr1, index);
+				return false;
+			};
+		case Instruction_Decoder.LEA:
+			return m -> {
+				m.LEA(dr, pgoffset);
+				return false;
+			};
+		case Instruction_Decoder.NOT:
+			return m -> {
+				m.NOT(dr, sr1);
+				return false;
+			};
+		case Instruction_Decoder.RET:
+			return m -> {
+				m.RET();
+				return false;
+			};
+		case Instruction_Decoder.ST:
+			return m -> {
+				m.ST(dr, pgoffset);
+				return false;
+			};
+		case Instruction_Decoder.STI:
+			return m -> {
+				m.STI(dr, pgoffset);
+				return false;
+			};
+		case Instruction_Decoder.STR:
+			return m -> {
+				m.STR(dr, sr1, index);
+				return false;
+			};
+		default:
+			final int trapVect = Decode_Cache.trapvect8(entry);
+			final Input_Device input = this.in;
+			return m -> m.TRAP(trapVect, input);
+		}
+	}
+}
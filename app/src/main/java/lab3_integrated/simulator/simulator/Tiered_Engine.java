@@ -0,0 +1,271 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+import lab3_integrated.simulator.machine.Decode_Cache;
+import lab3_integrated.simulator.machine.Flat_Memory;
+import lab3_integrated.simulator.machine.Input_Device;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory_Listener;
+
+/**
+ * Two tier execution engine. Instructions first run on the Threaded_Engine
+ * while the engine counts how often each basic block is entered; a block ends
+ * at BRx, JSR, JSRR, RET, TRAP or DBUG, at the end of its page, or after
+ * MAX_BLOCK_LENGTH instructions. Once a block is hot its body is compiled to a
+ * hidden class by the Block_Compiler and runs from then on as JVM code.
+ *
+ * A store into a word holding compiled code deoptimizes every block compiled
+ * on that page; a block that is running stops right after the store and
+ * execution continues on the threaded tier.
+ *
+ * The JIT can be turned off for debugging with -Dsimulator.jit=false. It is
+ * also off when the machine's memory is not a Flat_Memory, since compiled
+ * code accesses the array behind it.
+ */
+public class Tiered_Engine implements Memory_Listener {
+
+	/**
+	 * Number of times a block is entered before it is compiled.
+	 */
+	static final int HOT_THRESHOLD = 50;
+
+	/**
+	 * Maximum number of instructions in a compiled block.
+	 */
+	static final int MAX_BLOCK_LENGTH = 64;
+
+	/**
+	 * Memory layout constants.
+	 */
+	private static final int SIZE = 0x10000;
+	private static final int PAGE_SIZE = 512;
+	private static final int PAGE_COUNT = 128;
+	private static final int PAGE_SHIFT = 9;
+	private static final int WORD_MASK = 0xFFFF;
+
+	private final Machine machine;
+	private final Threaded_Engine interpreter;
+	private final Block_Compiler compiler;
+
+	/**
+	 * The words of the machine's Flat_Memory, or null for other backends.
+	 */
+	private final short[] words;
+
+	/**
+	 * Compiled block starting at each address and its number of instructions.
+	 */
+	private final Compiled_Block[] blocks;
+	private final int[] blockLengths;
+
+	/**
+	 * Number of times the block starting at each address was entered, or
+	 * Integer.MIN_VALUE if no block can be compiled there.
+	 */
+	private final int[] counters;
+
+	/**
+	 * Pages with compiled blocks and the words those blocks were compiled from.
+	 */
+	private final boolean[] compiledPages;
+	private final boolean[] compiledWords;
+
+	/**
+	 * Page of the block that is running, or -1 outside of compiled code.
+	 */
+	private int runningPage;
+
+	/**
+	 * Set when a store deoptimized the running block, checked by the compiled
+	 * code after each store.
+	 */
+	boolean deoptimized;
+
+	private boolean jitEnabled;
+	private long blocksCompiled;
+	private long deoptimizations;
+
+	/**
+	 * Creates an engine with the JIT on unless the simulator.jit system property
+	 * is false.
+	 *
+	 * @param machine the machine with the program loaded
+	 * @param in      the input used by the IN and INN traps
+	 */
+	public Tiered_Engine(Machine machine, Input_Device in) {
+		this(machine, in, System.out);
+	}
+
+	/**
+	 * Creates an engine with the JIT on unless the simulator.jit system property
+	 * is false, printing the state at each DBUG to a stream.
+	 *
+	 * @param machine the machine with the program loaded
+	 * @param in      the input used by the IN and INN traps
+	 * @param out     the stream DBUG prints the state of the machine to
+	 */
+	public Tiered_Engine(Machine machine, Input_Device in, PrintStream out) {
+		this(machine, in, !"false".equalsIgnoreCase(System.getProperty("simulator.jit")), out);
+	}
+
+	/**
+	 * @param machine    the machine with the program loaded
+	 * @param in         the input used by the IN and INN traps
+	 * @param jitEnabled whether hot blocks are compiled
+	 */
+	public Tiered_Engine(Machine machine, Input_Device in, boolean jitEnabled) {
+		this(machine, in, jitEnabled, System.out);
+	}
+
+	/**
+	 * @param machine    the machine with the program loaded
+	 * @param in         the input used by the IN and INN traps
+	 * @param jitEnabled whether hot blocks are compiled
+	 * @param out        the stream DBUG prints the state of the machine to
+	 */
+	public Tiered_Engine(Machine machine, Input_Device in, boolean jitEnabled, PrintStream out) {
+		this.machine = machine;
+		this.interpreter = new Threaded_Engine(machine, in, out);
+		this.compiler = new Block_Compiler(MethodHandles.lookup());
+		this.blocks = new Compiled_Block[SIZE];
+		this.blockLengths = new int[SIZE];
+		this.counters = new int[SIZE];
+		this.compiledPages = new boolean[PAGE_COUNT];
+		this.compiledWords = new boolean[SIZE];
+		this.runningPage = -1;
+		this.words = machine.memory instanceof Flat_Memory ? ((Flat_Memory) machine.memory).words() : null;
+		this.jitEnabled = jitEnabled && this.words != null;
+		machine.memoryListener = this;
+	}
+
+	/**
+	 * Turns compiling of hot blocks on or off. Blocks already compiled are not
+	 * used while the JIT is off. The JIT stays off for memory that is not a
+	 * Flat_Memory.
+	 *
+	 * @param jitEnabled whether hot blocks are compiled
+	 */
+	public void setJitEnabled(boolean jitEnabled) {
+		this.jitEnabled = jitEnabled && this.words != null;
+	}
+
+	/**
+	 * Runs until a HALT or until the maximum number of instructions was executed.
+	 *
+	 * @param maxInstructions the maximum number of instructions to execute
+	 * @return the number of instructions executed
+	 */
+	public int run(int maxInstructions) {
+		Machine m = this.machine;
+		int executed = 0;
+		boolean blockStart = true;
+		while (executed < maxInstructions) {
+			int start = m.PC;
+			if (blockStart && this.jitEnabled) {
+				Compiled_Block block = this.blocks[start];
+				if (block == null && ++this.counters[start] == HOT_THRESHOLD) {
+					block = this.compile(start);
+				}
+				int length = this.blockLengths[start];
+				if (block != null && maxInstructions - executed >= length) {
+					int count = this.runBlock(block, start);
+					executed += count;
+					blockStart = count == length;
+					continue;
+				}
+			}
+
+			int opcode = Decode_Cache.opcode(m.fetchDecoded(start));
+			executed++;
+			if (this.interpreter.step()) {
+				break;
+			}
+			blockStart = !Block_Compiler.isCompilable(opcode);
+		}
+		return executed;
+	}
+
+	@Override
+	public void wordWritten(int address) {
+		this.interpreter.wordWritten(address);
+		int page = address >>> PAGE_SHIFT;
+		if (this.compiledPages[page] && this.compiledWords[address]) {
+			int first = page << PAGE_SHIFT;
+			Arrays.fill(this.blocks, first, first + PAGE_SIZE, null);
+			Arrays.fill(this.blockLengths, first, first + PAGE_SIZE, 0);
+			Arrays.fill(this.counters, first, first + PAGE_SIZE, 0);
+			Arrays.fill(this.compiledWords, first, first + PAGE_SIZE, false);
+			this.compiledPages[page] = false;
+			this.deoptimizations++;
+			if (page == this.runningPage) {
+				this.deoptimized = true;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of blocks compiled so far
+	 */
+	public long getBlocksCompiled() {
+		return this.blocksCompiled;
+	}
+
+	/**
+	 * @return the number of times stores into compiled code dropped the blocks of
+	 *         a page
+	 */
+	public long getDeoptimizations() {
+		return this.deoptimizations;
+	}
+
+	/**
+	 * Runs a compiled block and moves the PC past the instructions it executed.
+	 */
+	private int runBlock(Compiled_Block block, int start) {
+		Machine m = this.machine;
+		this.runningPage = start >>> PAGE_SHIFT;
+		this.deoptimized = false;
+		int count = block.run(m, m.registers, this.words, this);
+		this.runningPage = -1;
+		m.prev_pc = (start + count - 1) & WORD_MASK;
+		m.PC = (start + count) & WORD_MASK;
+		m.instructionCount += count;
+		return count;
+	}
+
+	/**
+	 * Compiles the block starting at the address.
+	 *
+	 * @param start the address of the first instruction of the block
+	 * @return the compiled block, or null if the block has no compilable body
+	 */
+	private Compiled_Block compile(int start) {
+		Machine m = this.machine;
+		int page = start >>> PAGE_SHIFT;
+		int end = start;
+		while (end - start < MAX_BLOCK_LENGTH && (end >>> PAGE_SHIFT) == page
+				&& Block_Compiler.isCompilable(Decode_Cache.opcode(m.fetchDecoded(end)))) {
+			end++;
+		}
+		if (end == start) {
+			this.counters[start] = Integer.MIN_VALUE;
+			return null;
+		}
+
+		short[] words = new short[end - start];
+		for (int i = 0; i < words.length; i++) {
+			int address = start + i;
+			words[i] = m.memory.read(address);
+			this.compiledWords[address] = true;
+		}
+		Compiled_Block block = this.compiler.compile(start, words);
+		this.blocks[start] = block;
+		this.blockLengths[start] = words.length;
+		this.compiledPages[page] = true;
+		this.blocksCompiled++;
+		return block;
+	}
+}
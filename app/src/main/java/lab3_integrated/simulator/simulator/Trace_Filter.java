@@ -0,0 +1,151 @@
+package lab3_integrated.simulator.simulator;
+
+/**
+ * Selects which instructions Trace and Step mode print. An instruction is
+ * selected when its address is in the range, its opcode is in the set and it
+ * is the Nth instruction passing those two checks. If a register is watched,
+ * a selected instruction is only printed when it changed that register.
+ *
+ * The predicates are reduced to an unsigned compare, a bit test and a
+ * countdown, so instructions that are filtered out run untraced for almost
+ * nothing.
+ */
+public final class Trace_Filter {
+
+	/**
+	 * Opcode set holding every instruction.
+	 */
+	public static final int ALL_OPCODES = 0xFFFF;
+	public static final int NO_REGISTER = -1;
+
+	private static final int WORD_MASK = 0xFFFF;
+	private static final int REGISTER_COUNT = 8;
+
+	private final int low;
+	private final int span;
+	private final int opcodes;
+	private final int every;
+	private final int register;
+	/**
+	 * Number of instructions passing the range and opcode checks until the next
+	 * one is selected.
+	 */
+	private int countdown;
+
+	/**
+	 * Constructor with every predicate as a parameter.
+	 *
+	 * @param low      the lowest address traced
+	 * @param high     the highest address traced
+	 * @param opcodes  the opcodes traced, one bit per opcode
+	 * @param every    trace every Nth instruction in the range and opcode set
+	 * @param register the register that must change for an instruction to be
+	 *                 printed, or NO_REGISTER
+	 * @throws IllegalArgumentException if a predicate is out of range
+	 */
+	public Trace_Filter(int low, int high, int opcodes, int every, int register) {
+		if (low < 0 || high > WORD_MASK || low > high) {
+			throw new IllegalArgumentException("invalid address range");
+		}
+		if ((opcodes & ~ALL_OPCODES) != 0 || opcodes == 0) {
+			throw new IllegalArgumentException("invalid opcode set");
+		}
+		if (every < 1) {
+			throw new IllegalArgumentException("the sampling interval must be at least 1");
+		}
+		if (register < NO_REGISTER || register >= REGISTER_COUNT) {
+			throw new IllegalArgumentException("invalid register R" + register);
+		}
+		this.low = low;
+		this.span = high - low;
+		this.opcodes = opcodes;
+		this.every = every;
+		this.register = register;
+		this.countdown = every;
+	}
+
+	/**
+	 * Parses a filter from a comma-separated list of predicates, any of which may
+	 * be left out:
+	 * range=3000-30FF (hexadecimal addresses, inclusive),
+	 * ops=ADD:LD:TRAP (instruction names as printed in the trace),
+	 * every=10 (every 10th instruction) and
+	 * register=R3 (only when R3 changes).
+	 *
+	 * @param spec the predicates
+	 * @return the filter
+	 * @throws IllegalArgumentException if a predicate is unknown or invalid
+	 */
+	public static Trace_Filter parse(String spec) {
+		int low = 0, high = WORD_MASK, opcodes = ALL_OPCODES, every = 1, register = NO_REGISTER;
+		for (String term : spec.split(",")) {
+			int equals = term.indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("trace filter term " + term + " has no value");
+			}
+			String name = term.substring(0, equals).trim();
+			String value = term.substring(equals + 1).trim();
+			switch (name) {
+				case "range" -> {
+					int dash = value.indexOf('-');
+					if (dash < 0) {
+						throw new IllegalArgumentException("trace range " + value + " is not low-high");
+					}
+					low = Integer.parseInt(value.substring(0, dash), 16);
+					high = Integer.parseInt(value.substring(dash + 1), 16);
+				}
+				case "ops" -> {
+					opcodes = 0;
+					for (String op : value.split(":")) {
+						opcodes |= 1 << opcodeOf(op);
+					}
+				}
+				case "every" -> every = Integer.parseInt(value);
+				case "register" -> register = Integer.parseInt(value.startsWith("R") || value.startsWith("r")
+						? value.substring(1)
+						: value);
+				default -> throw new IllegalArgumentException("unknown trace filter term " + name);
+			}
+		}
+		return new Trace_Filter(low, high, opcodes, every, register);
+	}
+
+	private static int opcodeOf(String name) {
+		for (int opcode = 0; opcode < Simulator.INSTRUCTION_NAMES.length; opcode++) {
+			if (Simulator.INSTRUCTION_NAMES[opcode].equalsIgnoreCase(name)) {
+				return opcode;
+			}
+		}
+		throw new IllegalArgumentException("unknown instruction " + name);
+	}
+
+	/**
+	 * Checks the address, opcode and sampling predicates for the instruction
+	 * about to run, counting it towards the sampling interval if it is in the
+	 * range and opcode set.
+	 *
+	 * @param pc     the address of the instruction
+	 * @param opcode the opcode of the instruction
+	 * @return whether the instruction is traced
+	 * @updates this
+	 */
+	public boolean selects(int pc, int opcode) {
+		if (Integer.compareUnsigned(pc - this.low, this.span) > 0 || (this.opcodes >>> opcode & 1) == 0) {
+			return false;
+		}
+		if (--this.countdown > 0) {
+			return false;
+		}
+		this.countdown = this.every;
+		return true;
+	}
+
+	/**
+	 * Returns the register an instruction must change to be printed.
+	 *
+	 * @return the watched register, or NO_REGISTER
+	 */
+	public int register() {
+		return this.register;
+	}
+}
@@ -0,0 +1,88 @@
+package lab3_integrated.simulator.simulator;
+
+/**
+ * One retired instruction of a binary trace file.
+ *
+ * A trace file starts with a HEADER_SIZE byte header holding the machine state
+ * before the first instruction: the int MAGIC, then as shorts the version,
+ * prev_pc, PC, packed CCRs and R0 to R7, padded with zeros. It is followed by
+ * one RECORD_SIZE byte record per instruction, stored as two big-endian longs:
+ *
+ * first: bits 0-15 PC of the instruction, 16-31 the instruction word, 32-47
+ * the PC after it ran, 48-55 flags, 56-63 the number of the register written
+ *
+ * second: bits 0-15 value of the register written, 16-31 address of the
+ * memory written, 32-47 value written to memory, 48-63 value of R7 if the
+ * instruction also wrote R7 as a link register
+ *
+ * The flags hold the packed CCRs after the instruction in bits 0-2, and whether
+ * the register, memory and link fields are used.
+ */
+final class Trace_Record {
+
+	/**
+	 * First int of every trace file, "CSTR".
+	 */
+	static final int MAGIC = 0x43535452;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int RECORD_SIZE = 16;
+
+	/**
+	 * Flag bits telling which of the fields of a record are used.
+	 */
+	static final int CCR_MASK = 0x07;
+	static final int REGISTER_WRITTEN = 0x08;
+	static final int MEMORY_WRITTEN = 0x10;
+	static final int LINK_WRITTEN = 0x20;
+
+	private static final int WORD_MASK = 0xFFFF;
+
+	final int pc;
+	final short word;
+	final int nextPC;
+	final int flags;
+	final int register;
+	final short registerValue;
+	final int address;
+	final short value;
+	final short link;
+
+	/**
+	 * Decodes a record from its two longs.
+	 *
+	 * @param first  the first long of the record
+	 * @param second the second long of the record
+	 */
+	Trace_Record(long first, long second) {
+		this.pc = (int) first & WORD_MASK;
+		this.word = (short) (first >>> 16);
+		this.nextPC = (int) (first >>> 32) & WORD_MASK;
+		this.flags = (int) (first >>> 48) & 0xFF;
+		this.register = (int) (first >>> 56);
+		this.registerValue = (short) second;
+		this.address = (int) (second >>> 16) & WORD_MASK;
+		this.value = (short) (second >>> 32);
+		this.link = (short) (second >>> 48);
+	}
+
+	/**
+	 * Packs the first long of a record.
+	 */
+	static long first(int pc, short word, int nextPC, int flags, int register) {
+		return (pc & WORD_MASK) | (long) (word & WORD_MASK) << 16 | (long) (nextPC & WORD_MASK) << 32
+				| (long) (flags & 0xFF) << 48 | (long) register << 56;
+	}
+
+	/**
+	 * Packs the second long of a record.
+	 */
+	static long second(short registerValue, int address, short value, short link) {
+		return (registerValue & WORD_MASK) | (long) (address & WORD_MASK) << 16 | (long) (value & WORD_MASK) << 32
+				| (long) (link & WORD_MASK) << 48;
+	}
+
+	boolean has(int flag) {
+		return (this.flags & flag) != 0;
+	}
+}
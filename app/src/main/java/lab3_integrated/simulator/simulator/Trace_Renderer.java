@@ -0,0 +1,116 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lab3_integrated.simulator.machine.Decode_Cache;
+import lab3_integrated.simulator.machine.Instruction_Decoder;
+import lab3_integrated.simulator.machine.Machine;
+
+/**
+ * Offline tool printing a binary trace file in the text format of Trace mode.
+ * The machine state is rebuilt from the header and the changes in each record,
+ * and printed by the same methods the simulator traces with. Output of the
+ * program itself, such as OUT and PUTS, is not part of the trace.
+ *
+ * Usage: Trace_Renderer <trace file>
+ */
+public final class Trace_Renderer {
+
+	private static final int REGISTER_COUNT = 8;
+	private static final int LINK_REGISTER = 7;
+	private static final int WORD_MASK = 0xFFFF;
+
+	private Trace_Renderer() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: Trace_Renderer <trace file>");
+			System.exit(1);
+		}
+		try {
+			render(Path.of(args[0]));
+		} catch (IOException e) {
+			System.err.println("Could not read the trace: " + e.getMessage());
+			System.exit(1);
+		}
+		System.out.flush();
+	}
+
+	/**
+	 * Prints the trace to System.out.
+	 *
+	 * @param file path of the trace file
+	 * @throws IOException if the file can not be read or is not a trace
+	 */
+	static void render(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != Trace_Record.MAGIC) {
+				throw new IOException(file + " is not a trace file");
+			}
+			int version = in.readUnsignedShort();
+			if (version != Trace_Record.VERSION) {
+				throw new IOException("Unsupported trace version " + version);
+			}
+			Machine machine = new Machine();
+			machine.prev_pc = in.readUnsignedShort();
+			machine.PC = in.readUnsignedShort();
+			machine.setCCR(in.readUnsignedShort());
+			for (int r = 0; r < REGISTER_COUNT; r++) {
+				machine.registers[r] = in.readShort();
+			}
+			in.skipNBytes(Trace_Record.HEADER_SIZE - 28);
+
+			Simulator_Session session = new Simulator_Session(machine, Simulator.Mode.TRACE, null);
+			while (true) {
+				long first;
+				try {
+					first = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				renderRecord(session, new Trace_Record(first, in.readLong()));
+			}
+		}
+	}
+
+	/**
+	 * Prints one instruction and applies its changes to the machine.
+	 */
+	private static void renderRecord(Simulator_Session session, Trace_Record record) {
+		Machine machine = session.getMachine();
+		int entry = Decode_Cache.decode(record.word);
+		int opcode = Decode_Cache.opcode(entry);
+		String name = Simulator.INSTRUCTION_NAMES[opcode];
+
+		// State after the instruction was fetched
+		machine.prev_pc = record.pc;
+		machine.PC = (record.pc + 1) & WORD_MASK;
+		int address = -1, new_address = -1;
+		if (opcode == Instruction_Decoder.STI) {
+			address = machine.getAddressPC(machine.PC, Decode_Cache.pgoffset9(entry));
+			new_address = (short) record.address;
+		}
+		session.outputMachineStateBeforeCheck(name);
+		if (opcode == Instruction_Decoder.DBUG) {
+			session.outputMachineState();
+		}
+
+		// State after the instruction ran
+		machine.PC = record.nextPC;
+		machine.setCCR(record.flags & Trace_Record.CCR_MASK);
+		if (record.has(Trace_Record.REGISTER_WRITTEN)) {
+			machine.registers[record.register] = record.registerValue;
+		}
+		if (record.has(Trace_Record.LINK_WRITTEN)) {
+			machine.registers[LINK_REGISTER] = record.link;
+		}
+		session.outputAffected(entry, address, new_address);
+		session.outputMachineStateAfterCheck(name);
+	}
+}
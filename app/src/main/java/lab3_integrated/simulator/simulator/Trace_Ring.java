@@ -0,0 +1,85 @@
+package lab3_integrated.simulator.simulator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free ring buffer of trace records for one producer thread and one
+ * consumer thread. The producer only writes tail and the consumer only writes
+ * head, each publishing with a release store that the other side reads with an
+ * acquire load.
+ */
+final class Trace_Ring {
+
+	private final long[] slots;
+	private final int mask;
+
+	/**
+	 * Number of records taken by the consumer and added by the producer.
+	 */
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Last value of head seen by the producer, so it only reads head again when
+	 * the ring looks full.
+	 */
+	private long cachedHead;
+
+	/**
+	 * @param capacity number of records the ring holds, a power of two
+	 */
+	Trace_Ring(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		this.slots = new long[capacity * 2];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Adds a record, called only by the producer.
+	 *
+	 * @return false if the ring is full
+	 */
+	boolean offer(long first, long second) {
+		long t = this.tail.get();
+		if (t - this.cachedHead > this.mask) {
+			this.cachedHead = this.head.getAcquire();
+			if (t - this.cachedHead > this.mask) {
+				return false;
+			}
+		}
+		int slot = ((int) t & this.mask) << 1;
+		this.slots[slot] = first;
+		this.slots[slot + 1] = second;
+		this.tail.setRelease(t + 1);
+		return true;
+	}
+
+	/**
+	 * Moves as many records as fit into the buffer, called only by the consumer.
+	 *
+	 * @param out the buffer the records are put into
+	 * @return the number of records moved
+	 */
+	int drain(ByteBuffer out) {
+		long h = this.head.get();
+		long available = this.tail.getAcquire() - h;
+		int count = (int) Math.min(available, out.remaining() / Trace_Record.RECORD_SIZE);
+		for (int i = 0; i < count; i++) {
+			int slot = ((int) (h + i) & this.mask) << 1;
+			out.putLong(this.slots[slot]);
+			out.putLong(this.slots[slot + 1]);
+		}
+		this.head.setRelease(h + count);
+		return count;
+	}
+
+	/**
+	 * @return whether the consumer has taken every record added
+	 */
+	boolean isEmpty() {
+		return this.head.get() == this.tail.getAcquire();
+	}
+}
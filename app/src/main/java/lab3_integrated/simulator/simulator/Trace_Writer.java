@@ -0,0 +1,135 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+import lab3_integrated.simulator.machine.Machine;
+
+/**
+ * Writes trace records to a file from a background thread. The simulator adds
+ * records to a Trace_Ring and the writer thread drains it into a direct buffer
+ * that is written with a FileChannel, so the simulator never waits on the file
+ * unless the ring is full.
+ */
+final class Trace_Writer implements Closeable {
+
+	private static final int RING_CAPACITY = 1 << 16;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Time the writer thread sleeps when the ring is empty.
+	 */
+	private static final long IDLE_NANOS = 100_000;
+
+	/**
+	 * Number of times a full ring is retried before the simulator yields to the
+	 * writer thread instead of spinning.
+	 */
+	private static final int SPIN_LIMIT = 100;
+
+	private final Trace_Ring ring;
+	private final FileChannel channel;
+	private final Thread thread;
+	private volatile boolean closed;
+	private volatile IOException failure;
+
+	/**
+	 * Creates the trace file, writes its header from the machine's state and
+	 * starts the writer thread.
+	 *
+	 * @param file    path of the trace file, replaced if it exists
+	 * @param machine the machine about to run its first traced instruction
+	 * @throws IOException if the file can not be created or written
+	 */
+	Trace_Writer(Path file, Machine machine) throws IOException {
+		this.ring = new Trace_Ring(RING_CAPACITY);
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(Trace_Record.HEADER_SIZE);
+		header.putInt(Trace_Record.MAGIC);
+		header.putShort((short) Trace_Record.VERSION);
+		header.putShort((short) machine.prev_pc);
+		header.putShort((short) machine.PC);
+		header.putShort((short) machine.getCCR());
+		for (short register : machine.registers) {
+			header.putShort(register);
+		}
+		header.clear();
+		while (header.hasRemaining()) {
+			this.channel.write(header);
+		}
+		this.thread = new Thread(this::drainLoop, "trace-writer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Adds a record, waiting for the writer thread if the ring is full.
+	 *
+	 * @throws UncheckedIOException if the writer thread failed to write the file
+	 */
+	void write(long first, long second) {
+		for (int spins = 0; !this.ring.offer(first, second); spins++) {
+			if (this.failure != null) {
+				throw new UncheckedIOException(this.failure);
+			}
+			LockSupport.unpark(this.thread);
+			if (spins < SPIN_LIMIT) {
+				Thread.onSpinWait();
+			} else {
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * Waits for every record to be written, then closes the file.
+	 *
+	 * @throws IOException if writing the file failed
+	 */
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		LockSupport.unpark(this.thread);
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.channel.close();
+		if (this.failure != null) {
+			throw this.failure;
+		}
+	}
+
+	/**
+	 * Body of the writer thread.
+	 */
+	private void drainLoop() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		try {
+			while (true) {
+				buffer.clear();
+				if (this.ring.drain(buffer) == 0) {
+					if (this.closed && this.ring.isEmpty()) {
+						return;
+					}
+					LockSupport.parkNanos(IDLE_NANOS);
+					continue;
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					this.channel.write(buffer);
+				}
+			}
+		} catch (IOException e) {
+			this.failure = e;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package lab3_integrated;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.simulator.Simulator;
+
+class App_OptionsTest {
+
+    @Test
+    void parsesAFullCommandLine() {
+        App.Options options = App.parseOptions(new String[] { "--ipla", "3600", "--mode", "quiet", "--max", "1000",
+                "--input", "answers.txt", "--engine", "threaded", "--output", "raw", "--seed", "42", "--record",
+                "events.log", "--trace", "run.trace", "--trace-filter", "range=3000-30FF,every=2", "--snapshot",
+                "run.snap", "--profile", "run.profile", "--loader", "mapped", "--executable", "binary",
+                "--image-cache", "images", "program.asm", "Subr.asm", "Val.asm" });
+        assertEquals("3600", options.ipla);
+        assertEquals(Simulator.Mode.QUIET, options.mode);
+        assertEquals(1000, options.maxInstructions.intValue());
+        assertEquals("answers.txt", options.input);
+        assertEquals(Simulator.Engine.THREADED, options.engine);
+        assertTrue(options.rawOutput);
+        assertEquals(42L, options.seed.longValue());
+        assertEquals("events.log", options.record);
+        assertNull(options.replay);
+        assertEquals("run.trace", options.trace);
+        assertNotNull(options.traceFilter);
+        assertEquals("run.snap", options.snapshot);
+        assertEquals("run.profile", options.profile);
+        assertTrue(options.mapExecutable);
+        assertTrue(options.binaryExecutable);
+        assertEquals("images", options.imageCache);
+        assertEquals(List.of("program.asm", "Subr.asm", "Val.asm"), options.sources);
+    }
+
+    @Test
+    void optionsLeftOutAreNull() {
+        App.Options options = App.parseOptions(new String[] { "program.asm" });
+        assertNull(options.ipla);
+        assertNull(options.mode);
+        assertNull(options.maxInstructions);
+        assertNull(options.engine);
+        assertEquals(List.of("program.asm"), options.sources);
+    }
+
+    @Test
+    void rejectsUnknownOptionsAndMissingValues() {
+        assertRejected("unknown option --speed", "--speed", "fast", "program.asm");
+        assertRejected("missing value for --max", "program.asm", "--max");
+    }
+
+    @Test
+    void rejectsInvalidValues() {
+        assertRejected("invalid value 36G0 for --ipla", "--ipla", "36G0", "program.asm");
+        assertRejected("invalid value fast for --mode", "--mode", "fast", "program.asm");
+        assertRejected("invalid value jit for --engine", "--engine", "jit", "program.asm");
+        assertRejected("invalid value ten for --max", "--max", "ten", "program.asm");
+        assertRejected("invalid value verbose for --output", "--output", "verbose", "program.asm");
+        assertRejected("invalid value copied for --loader", "--loader", "copied", "program.asm");
+        assertRejected("invalid value zip for --executable", "--executable", "zip", "program.asm");
+    }
+
+    @Test
+    void rejectsOptionsThatCanNotBeUsedTogether() {
+        assertRejected("--record and --replay can not be used together", "--record", "a.log", "--replay", "b.log",
+                "program.asm");
+        assertRejected("--restore can not be used with source files", "--restore", "run.snap", "program.asm");
+        assertRejected("--batch can not be used with --restore or source files", "--batch", "jobs", "program.asm");
+        assertRejected("--batch can not be used with --restore or source files", "--batch", "jobs", "--restore",
+                "run.snap");
+        assertRejected("--serve can not be used with --batch, --restore or source files", "--serve", "7000",
+                "--batch", "jobs");
+        assertRejected("--serve can not be used with --batch, --restore or source files", "--serve", "7000",
+                "program.asm");
+        assertRejected("--summary can only be used with --batch", "--summary", "summary.txt", "program.asm");
+    }
+
+    private static void assertRejected(String message, String... args) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> App.parseOptions(args));
+        assertEquals(message, e.getMessage());
+    }
+}
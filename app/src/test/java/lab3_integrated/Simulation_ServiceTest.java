@@ -0,0 +1,133 @@
+package lab3_integrated;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Simulation_ServiceTest {
+
+    // Prints "Hi " and 7, then halts
+    private static final String HI = String.join("\n",
+            "Main     .ORIG          ",
+            "         .ENT    Start",
+            "Start    LEA     R0,Msg",
+            "         TRAP    x22",
+            "         AND     R0,R0,#0",
+            "         ADD     R0,R0,#7",
+            "         TRAP    x31",
+            "         TRAP    x25",
+            "Msg      .STRZ   \"Hi \"",
+            "         .END    Start");
+
+    // Echoes the character read by IN, then halts
+    private static final String ECHO = String.join("\n", "HECHO  30000003", "T3000F023", "T3001F021", "T3002F025",
+            "E3000");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void assemblesLinksAndRunsSources() throws Exception {
+        Simulation_Service service = start("0");
+        try {
+            String reply = send(service.getAddress(), "RUN --ipla 3000 --output raw --max 100", "SOURCE hi.asm 10", HI,
+                    "END");
+            assertEquals("Hi 7\nDONE 6 x3006\n", reply);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void runsConcurrentJobsOnASocket() throws Exception {
+        Path socket = this.dir.resolve("service.sock");
+        Simulation_Service service = start(socket.toString());
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> jobs = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String answer = Character.toString('a' + i);
+                jobs.add(() -> send(service.getAddress(), "RUN --output raw", "EXECUTABLE 5", ECHO, "INPUT 1", answer,
+                        "END"));
+            }
+            List<Future<String>> replies = clients.invokeAll(jobs);
+            for (int i = 0; i < jobs.size(); i++) {
+                assertEquals((char) ('a' + i) + "DONE 3 x3003\n", replies.get(i).get());
+            }
+        } finally {
+            clients.shutdown();
+            service.close();
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    void reportsInvalidJobs() throws Exception {
+        Simulation_Service service = start("0");
+        try {
+            SocketAddress address = service.getAddress();
+            assertEquals("ERROR --ipla is needed to link\n", send(address, "RUN", "SOURCE hi.asm 10", HI, "END"));
+            assertTrue(send(address, "RUN --ipla 3000", "SOURCE bad.asm 1", "Main", "END")
+                    .startsWith("ERROR bad.asm: "));
+            // The linker's own reason reaches the client
+            assertEquals("ERROR Need a \"Main  \" segment\n",
+                    send(address, "RUN --ipla 3000", "OBJECT lib.o 3", "HLib   00000001", "T00001234", "E0000", "END"));
+            assertEquals("ERROR Step mode can not be used in a job\n", send(address, "RUN --mode step", "END"));
+            assertEquals("ERROR a job ends with END\n", send(address, "RUN", "EXECUTABLE 5", ECHO));
+            assertTrue(send(address, "RUN", "EXECUTABLE 5", ECHO, "END").startsWith("ERROR No input left"));
+        } finally {
+            service.close();
+        }
+    }
+
+    private static Simulation_Service start(String address) throws IOException {
+        Simulation_Service service = Simulation_Service.open(address);
+        Thread thread = new Thread(() -> {
+            try {
+                service.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return service;
+    }
+
+    /**
+     * Sends the lines of a job and returns the reply.
+     */
+    private static String send(SocketAddress address, String... lines) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            Writer out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            out.write(String.join("\n", lines) + "\n");
+            out.flush();
+            channel.shutdownOutput();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            StringBuilder reply = new StringBuilder();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                reply.append(line).append('\n');
+            }
+            return reply.toString();
+        }
+    }
+}
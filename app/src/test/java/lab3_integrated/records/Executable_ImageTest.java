@@ -0,0 +1,112 @@
+package lab3_integrated.records;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.loader.Loader;
+import lab3_integrated.simulator.loader.Loader_Exception;
+import lab3_integrated.simulator.machine.Cow_Memory;
+import lab3_integrated.simulator.machine.Direct_Memory;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory;
+
+class Executable_ImageTest {
+
+	/**
+	 * A program with words left out of its text records, which load as zero.
+	 */
+	private static final String PROGRAM = String.join("\n", "HPROG_1300A0006", "T300A1234", "T300Bf025", "T300E8001",
+			"T300F0000", "E300B");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void convertsBetweenTextAndBinary() throws Exception {
+		Path text = this.dir.resolve("prog.o");
+		Files.writeString(text, PROGRAM);
+		Executable_Image image = Loader.readImage(text.toString());
+		assertEquals("PROG_1", image.getName());
+		assertEquals(0x300A, image.getLoadAddress());
+		assertEquals(0x300B, image.getEntry());
+		assertEquals(6, image.getLength());
+		assertEquals(0, image.getWord(2));
+		assertEquals((short) 0x8001, image.getWord(4));
+
+		Path binary = this.dir.resolve("prog.bin");
+		image.write(binary, true);
+		assertEquals(Executable_Image.HEADER_SIZE + 2 * 6 + Executable_Image.CHECKSUM_SIZE, Files.size(binary));
+		Path back = this.dir.resolve("back.o");
+		Loader.readImage(binary.toString()).write(back, false);
+		assertEquals(image.toText(), Files.readString(back));
+
+		// Every backend loads the image as the text executable loads
+		Machine expected = new Machine();
+		new Loader().load(text.toString(), expected);
+		for (Memory memory : new Memory[] { new Direct_Memory(), new Cow_Memory() }) {
+			for (boolean mapped : new boolean[] { false, true }) {
+				Machine machine = new Machine(memory);
+				Loader loader = new Loader(mapped);
+				loader.load(binary.toString(), machine);
+				assertEquals(expected.name, machine.name);
+				assertEquals(expected.PC, machine.PC);
+				assertEquals(0x3010, loader.getUpperBound());
+				for (int address = 0x3000; address < 0x3020; address++) {
+					assertEquals(expected.memory.read(address), machine.memory.read(address));
+				}
+			}
+		}
+	}
+
+	@Test
+	void imagesAreHalfTheText() throws Exception {
+		short[] words = new short[0x1000];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = (short) (i * 0x9E37);
+		}
+		Executable_Image image = new Executable_Image("BIG   ", 0xF000, 0xF000, words);
+		Path binary = this.dir.resolve("big.bin");
+		image.write(binary, true);
+		Path text = this.dir.resolve("big.o");
+		image.write(text, false);
+		// Four hex digits a word in the joined T records, against two bytes
+		assertTrue(Files.size(text) > 1.9 * Files.size(binary));
+
+		Machine machine = new Machine();
+		new Loader().load(binary.toString(), machine);
+		assertEquals((short) (0xFFF * 0x9E37), machine.memory.read(0xFFFF));
+	}
+
+	@Test
+	void rejectsDamagedImages() throws Exception {
+		Path text = this.dir.resolve("prog.o");
+		Files.writeString(text, PROGRAM);
+		byte[] image = Loader.readImage(text.toString()).toBinary();
+
+		byte[] flipped = image.clone();
+		flipped[Executable_Image.HEADER_SIZE + 3] ^= 1;
+		byte[] truncated = Arrays.copyOf(image, image.length - 1);
+		byte[] newer = image.clone();
+		newer[Executable_Image.VERSION_OFFSET + 1] = 2;
+		assertLoadFails(flipped, "image checksum invalid");
+		assertLoadFails(truncated, "image length invalid");
+		assertLoadFails(newer, "image version unsupported");
+
+		Path outside = this.dir.resolve("outside.o");
+		Files.writeString(outside, "HPROG_130000001\nT30001234\nT30011234\nE3000");
+		Loader_Exception e = assertThrows(Loader_Exception.class, () -> Loader.readImage(outside.toString()));
+		assertTrue(e.getMessage().endsWith("text record outside of the program"), e.getMessage());
+	}
+
+	private void assertLoadFails(byte[] image, String problem) throws Exception {
+		Path file = this.dir.resolve("damaged.bin");
+		Files.write(file, image);
+		Loader_Exception e = assertThrows(Loader_Exception.class, () -> new Loader().load(file.toString(), new Machine()));
+		assertTrue(e.getMessage().endsWith("Requirement failed: " + problem), e.getMessage());
+	}
+}
@@ -0,0 +1,48 @@
+package lab3_integrated.records;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Record_WriterTest {
+
+	@Test
+	void joinsConsecutiveWordsAndKeepsOtherRecords() throws Exception {
+		StringWriter out = new StringWriter();
+		Record_Writer records = new Record_Writer(out);
+		records.write("HMain  00000006\nNStart=0\n");
+		records.write("T00004800\nT00012200\nT0002f025\n");
+		records.write("T00034800X9Displ\n");
+		records.write("T00040001\nT00060002\nE0000");
+		records.flush();
+
+		assertEquals(String.join("\n", "HMain  00000006", "NStart=0", "T000048002200F025", "T00034800X9Displ",
+				"T00040001", "T00060002", "E0000"), out.toString());
+	}
+
+	@Test
+	void writesRunsOfEqualWordsAsFills() throws Exception {
+		StringWriter out = new StringWriter();
+		Record_Writer records = new Record_Writer(out);
+		records.word(0x2FFF, (short) 0x1234);
+		// Sixteen zeros, then more distinct words than fit in one record
+		for (int address = 0x3000; address < 0x3010 + Record_Writer.MAX_RECORD_WORDS + 2; address++) {
+			records.word(address, (short) (address < 0x3010 ? 0 : address));
+		}
+		// A run too short for a fill stays in the T record
+		for (int address = 0x4000; address < 0x4000 + Record_Writer.MIN_FILL_RUN - 1; address++) {
+			records.word(address, (short) 0xFFFF);
+		}
+		records.close();
+
+		String[] lines = out.toString().split("\n");
+		assertEquals(5, lines.length);
+		assertEquals("T2FFF1234", lines[0]);
+		assertEquals("F300000100000", lines[1]);
+		assertEquals(5 + 4 * Record_Writer.MAX_RECORD_WORDS, lines[2].length());
+		assertTrue(lines[2].startsWith("T301030103011"), lines[2]);
+		assertEquals("T303030303031", lines[3]);
+		assertEquals("T4000" + "FFFF".repeat(Record_Writer.MIN_FILL_RUN - 1), lines[4]);
+	}
+}
@@ -0,0 +1,114 @@
+package lab3_integrated.simulator.loader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.records.Executable_Image;
+import lab3_integrated.simulator.machine.Machine;
+
+class Image_CacheTest {
+
+	private static final String PROGRAM = "HPROG  300A0006\nT300A1234\nT300Bf025\nT300E8001\nE300B";
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void repeatedLoadsHitAndEvictTheLeastRecentlyUsed() throws Exception {
+		Path first = this.dir.resolve("first.o");
+		Files.writeString(first, PROGRAM);
+		// The same contents at another path are the same program
+		Path copy = this.dir.resolve("copy.o");
+		Files.writeString(copy, PROGRAM);
+		Path second = this.dir.resolve("second.o");
+		Files.writeString(second, "HSECOND40000010\nT4000F025\nE4000");
+		Path third = this.dir.resolve("third.o");
+		Files.writeString(third, "HTHIRD 50000001\nT5000F025\nE5000");
+
+		Image_Cache cache = new Image_Cache(2);
+		Loader loader = new Loader(false, cache);
+		Machine expected = new Machine();
+		new Loader().load(first.toString(), expected);
+		for (Path file : new Path[] { first, copy }) {
+			Machine machine = new Machine();
+			loader.load(file.toString(), machine);
+			assertEquals(expected.name, machine.name);
+			assertEquals(expected.PC, machine.PC);
+			assertEquals(0x3010, loader.getUpperBound());
+			for (int address = 0x3000; address < 0x3020; address++) {
+				assertEquals(expected.memory.read(address), machine.memory.read(address));
+			}
+		}
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		loader.load(second.toString(), new Machine());
+		loader.load(first.toString(), new Machine());
+		loader.load(third.toString(), new Machine());
+		// The second program was used least recently, so it was evicted
+		loader.load(first.toString(), new Machine());
+		loader.load(second.toString(), new Machine());
+		assertEquals(3, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	void directoriesAreSharedAndDamagedEntriesMiss() throws Exception {
+		Path program = this.dir.resolve("prog.o");
+		Files.writeString(program, PROGRAM);
+		Path images = this.dir.resolve("cache");
+
+		new Loader(false, new Image_Cache(4, images)).load(program.toString(), new Machine());
+		Image_Cache later = new Image_Cache(4, images);
+		Machine machine = new Machine();
+		new Loader(false, later).load(program.toString(), machine);
+		assertEquals(1, later.getDiskHits());
+		assertEquals(0, later.getMisses());
+		assertEquals((short) 0x8001, machine.memory.read(0x300E));
+
+		Path entry;
+		try (var files = Files.list(images)) {
+			entry = files.findFirst().orElseThrow();
+		}
+		byte[] image = Files.readAllBytes(entry);
+		image[Executable_Image.HEADER_SIZE] ^= 1;
+		Files.write(entry, image);
+		Image_Cache damaged = new Image_Cache(4, images);
+		machine = new Machine();
+		new Loader(false, damaged).load(program.toString(), machine);
+		assertEquals(1, damaged.getMisses());
+		assertEquals(0x1234, machine.memory.read(0x300A));
+		// The damaged entry was replaced
+		Image_Cache repaired = new Image_Cache(4, images);
+		new Loader(false, repaired).load(program.toString(), new Machine());
+		assertEquals(1, repaired.getDiskHits());
+	}
+
+	@Test
+	void programsAnImageCanNotHoldLoadWithoutTheCache() throws Exception {
+		Path outside = this.dir.resolve("outside.o");
+		Files.writeString(outside, "HPROG  30000001\nT30001234\nT30011234\nE3000");
+		Path binary = this.dir.resolve("prog.bin");
+		Files.writeString(this.dir.resolve("prog.o"), PROGRAM);
+		Loader.readImage(this.dir.resolve("prog.o").toString()).write(binary, true);
+
+		Image_Cache cache = new Image_Cache(4);
+		Loader loader = new Loader(false, cache);
+		for (int i = 0; i < 2; i++) {
+			Machine machine = new Machine();
+			loader.load(outside.toString(), machine);
+			assertEquals(0x1234, machine.memory.read(0x3001));
+			machine = new Machine();
+			loader.load(binary.toString(), machine);
+			assertEquals(0x300B, machine.PC);
+		}
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+	}
+}
@@ -0,0 +1,145 @@
+package lab3_integrated.simulator.loader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Machine;
+
+class LoaderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void loadsProgramAndKeepsBoundsPerLoader() throws Exception {
+		Path first = this.dir.resolve("first.o");
+		Files.writeString(first, "HFIRST 30000002\nT30001234\nT3001F025\nE3001");
+		Path second = this.dir.resolve("second.o");
+		Files.writeString(second, "HSECOND40000010\nT4000F025\nE4000");
+
+		Loader firstLoader = new Loader();
+		Loader secondLoader = new Loader();
+		Machine machine = new Machine();
+		firstLoader.load(first.toString(), machine);
+		secondLoader.load(second.toString(), new Machine());
+
+		assertEquals("FIRST ", machine.name);
+		assertEquals(0x3001, machine.PC);
+		assertEquals(0x1234, machine.memory.read(0x3000));
+		assertEquals(0x3000, firstLoader.getInitialLoadAddress());
+		assertEquals(0x3002, firstLoader.getUpperBound());
+		assertEquals(0x4010, secondLoader.getUpperBound());
+	}
+
+	@Test
+	void invalidFilesThrowInsteadOfExiting() throws Exception {
+		Path noEnd = this.dir.resolve("noend.o");
+		Files.writeString(noEnd, "HFIRST 30000002\nT30001234");
+		Path badText = this.dir.resolve("badtext.o");
+		Files.writeString(badText, "HFIRST 30000002\nT3000XYZ\nE3000");
+
+		Loader loader = new Loader();
+		assertThrows(Loader_Exception.class, () -> loader.load(noEnd.toString(), new Machine()));
+		assertThrows(Loader_Exception.class, () -> loader.load(badText.toString(), new Machine()));
+		assertThrows(Loader_Exception.class, () -> loader.load(this.dir.resolve("missing.o").toString(), new Machine()));
+	}
+
+	@Test
+	void readsAnyLineEndingAndLowerCaseHex() throws Exception {
+		for (boolean mapped : new boolean[] { false, true }) {
+			for (String separator : new String[] { "\n", "\r\n", "\r" }) {
+				Path file = this.dir.resolve("crlf.o");
+				Files.writeString(file, String.join(separator, "Hlow_r 3000000a", "T3000abcd", "T3001F025", "Ea001")
+						+ separator);
+				Machine machine = new Machine();
+				new Loader(mapped).load(file.toString(), machine);
+				assertEquals("low_r ", machine.name);
+				assertEquals((short) 0xABCD, machine.memory.read(0x3000));
+				assertEquals(0xA001, machine.PC);
+			}
+		}
+	}
+
+	@Test
+	void loadsRecordsOfManyWordsAndFills() throws Exception {
+		Path file = this.dir.resolve("joined.o");
+		Files.writeString(file, "HJOINED300001F5\nT30001234abcdF025\nF30100100FFFF\nFFFFF00010007\nT3003beef\nE3001");
+		for (boolean mapped : new boolean[] { false, true }) {
+			Machine machine = new Machine();
+			new Loader(mapped).load(file.toString(), machine);
+			assertEquals(0x1234, machine.memory.read(0x3000));
+			assertEquals((short) 0xABCD, machine.memory.read(0x3001));
+			assertEquals((short) 0xF025, machine.memory.read(0x3002));
+			assertEquals((short) 0xBEEF, machine.memory.read(0x3003));
+			assertEquals(0, machine.memory.read(0x300F));
+			assertEquals((short) 0xFFFF, machine.memory.read(0x3010));
+			assertEquals((short) 0xFFFF, machine.memory.read(0x310F));
+			assertEquals(0, machine.memory.read(0x3110));
+			assertEquals(7, machine.memory.read(0xFFFF));
+			assertEquals(0x3001, machine.PC);
+		}
+	}
+
+	@Test
+	void mappedAndReadLoadsMatch() throws Exception {
+		StringBuilder executable = new StringBuilder("HBIG   00000000\n");
+		for (int address = 0; address < 0x10000; address += 3) {
+			executable.append(String.format("T%04X%04X\n", address, address ^ 0x5A5A));
+		}
+		executable.append("E1234");
+		Path file = this.dir.resolve("big.o");
+		Files.writeString(file, executable);
+
+		Loader readLoader = new Loader();
+		Machine read = new Machine();
+		// A second load reuses the buffer of the first
+		readLoader.load(file.toString(), new Machine());
+		readLoader.load(file.toString(), read);
+		Machine mapped = new Machine();
+		new Loader(true).load(file.toString(), mapped);
+		for (int address = 0; address < 0x10000; address++) {
+			assertEquals(read.memory.read(address), mapped.memory.read(address));
+		}
+		assertEquals((short) (0x3003 ^ 0x5A5A), mapped.memory.read(0x3003));
+		assertEquals(0x1234, mapped.PC);
+		assertEquals(read.PC, mapped.PC);
+	}
+
+	@Test
+	void reportsTheRequirementThatFailed() throws Exception {
+		String[][] cases = {
+				{ "HFIRST 30000002\n\nT30001234\nE3000", "unspecified error" },
+				{ "HFIRST 30000002\nX30001234\nE3000", "unspecified error" },
+				{ "HFIR$T 30000002\nE3000", "header invalid" },
+				{ "HFIRST 3000002\nE3000", "header invalid" },
+				{ "HFIRST 30000002\nHFIRST 30000002\nE3000", "header invalid" },
+				{ "T30001234\nHFIRST 30000002\nE3000", "header invalid" },
+				{ "HFIRST 30000002\nT300012345\nE3000", "text record invalid" },
+				{ "HFIRST 30000002\nT3000123G\nE3000", "text record invalid" },
+				{ "HFIRST 30000002\nT3000123456789\nE3000", "text record invalid" },
+				{ "HFIRST 30000002\nTFFFF12345678\nE3000", "text record invalid" },
+				{ "HFIRST 30000002\nF30000000FFFF\nE3000", "fill record invalid" },
+				{ "HFIRST 30000002\nFFFFF0002FFFF\nE3000", "fill record invalid" },
+				{ "HFIRST 30000002\nF30000002FFF\nE3000", "fill record invalid" },
+				{ "HFIRST 30000002\nE300", "end record invalid" },
+				{ "HFIRST 30000002\nE3000\nT30001234", "end record invalid" },
+				{ "HFIRST 30000002\nE3000\n\n", "end record invalid" },
+				{ "HFIRST 30000002\nT30001234\n", "missing a header or end record" },
+				{ "", "missing a header or end record" },
+				{ "HFIRST 30000002\nT30001\u00e934\nE3000", "text record invalid" } };
+		for (String[] invalid : cases) {
+			Path file = this.dir.resolve("invalid.o");
+			Files.writeString(file, invalid[0]);
+			for (boolean mapped : new boolean[] { false, true }) {
+				Loader_Exception e = assertThrows(Loader_Exception.class,
+						() -> new Loader(mapped).load(file.toString(), new Machine()));
+				assertTrue(e.getMessage().endsWith("Requirement failed: " + invalid[1]),
+						invalid[0] + ": " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package lab3_integrated.simulator.loader;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+
+import lab3_integrated.simulator.machine.Machine;
+
+/**
+ * Compares the time to load executables of 1K, 10K and 64K text records read
+ * into a buffer and mapped into memory, with the Scanner and regex parser the
+ * byte parser replaced. The same programs are also loaded as text records of
+ * many words, as the linker writes them, and as binary images, and the text
+ * records are loaded again through an Image_Cache, which hits after the first
+ * round.
+ *
+ * Run with: gradle benchmark -Pbenchmark=lab3_integrated.simulator.loader.Loader_Benchmark
+ */
+public class Loader_Benchmark {
+
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) throws Exception {
+		Path dir = Files.createTempDirectory("loader-benchmark");
+		System.out.printf("%-8s %12s %12s %12s %12s %12s %12s%n", "records", "scanner ms", "read ms", "mapped ms",
+				"joined ms", "image ms", "cached ms");
+		for (int records : new int[] { 1000, 10000, 65535 }) {
+			Path file = dir.resolve(records + ".o");
+			Files.writeString(file, executable(records));
+			Path joined = dir.resolve(records + "-joined.o");
+			Loader.readImage(file.toString()).write(joined, false);
+			Path image = dir.resolve(records + ".bin");
+			Loader.readImage(file.toString()).write(image, true);
+			Loader read = new Loader();
+			Loader mapped = new Loader(true);
+			Loader cached = new Loader(false, new Image_Cache(4));
+			System.out.printf("%-8d %12.3f %12.3f %12.3f %12.3f %12.3f %12.3f%n", records,
+					best(machine -> scannerLoad(file.toString(), machine)),
+					best(machine -> read.load(file.toString(), machine)),
+					best(machine -> mapped.load(file.toString(), machine)),
+					best(machine -> read.load(joined.toString(), machine)),
+					best(machine -> read.load(image.toString(), machine)),
+					best(machine -> cached.load(file.toString(), machine)));
+		}
+	}
+
+	/**
+	 * Returns an executable storing a word at each of the first addresses.
+	 */
+	private static String executable(int records) {
+		StringBuilder executable = new StringBuilder("HBENCH 0000").append(String.format("%04X%n", records));
+		for (int address = 0; address < records; address++) {
+			executable.append(String.format("T%04X%04X%n", address, address ^ 0x5A5A));
+		}
+		return executable.append("E0000").toString();
+	}
+
+	interface Load {
+		void run(Machine machine) throws Exception;
+	}
+
+	/**
+	 * Returns the best time of a load over the measured rounds, in milliseconds.
+	 */
+	private static double best(Load load) throws Exception {
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			Machine machine = new Machine();
+			long start = System.nanoTime();
+			load.run(machine);
+			long elapsed = System.nanoTime() - start;
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, elapsed / 1e6);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The loading of the Loader before it parsed bytes: a Scanner over the file,
+	 * a Pattern compiled for each record and substrings parsed for each field.
+	 * Only valid executables are loaded, so failures just throw.
+	 */
+	private static void scannerLoad(String path, Machine machine) throws Exception {
+		try (Scanner scan = new Scanner(new File(path))) {
+			while (scan.hasNextLine()) {
+				String data = scan.nextLine();
+				switch (data.charAt(0)) {
+				case 'H':
+					check("^H[A-Za-z0-9 _]{6}[0-9A-Fa-f]{4}[0-9A-Fa-f]{4}$", data);
+					machine.name = data.substring(1, 7);
+					Integer.parseInt(data.substring(7, 11), 16);
+					Integer.parseInt(data.substring(11), 16);
+					break;
+				case 'T':
+					check("^T[0-9A-Fa-f]{4}[0-9A-Fa-f]{4}$", data);
+					int word = Integer.parseInt(data.substring(5), 16);
+					int address = Integer.parseInt(data.substring(1, 5), 16);
+					machine.memory.write(machine.getMemoryPageLocation(address),
+							machine.getMemoryWordLocation(address), (short) word);
+					break;
+				default:
+					check("^E[0-9A-Fa-f]{4}$", data);
+					machine.setPC(Short.parseShort(data.substring(1), 16));
+				}
+			}
+		}
+	}
+
+	private static void check(String regex, String line) {
+		if (!Pattern.compile(regex).matcher(line).matches()) {
+			throw new IllegalArgumentException(line);
+		}
+	}
+}
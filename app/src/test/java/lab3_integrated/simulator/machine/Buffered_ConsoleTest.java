@@ -0,0 +1,73 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Buffered_ConsoleTest {
+
+	private static final String NEWLINE = System.lineSeparator();
+
+	@Test
+	void writesOnlyAtThresholdOrFlush() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Buffered_Console console = new Buffered_Console(new PrintStream(bytes), 4, true);
+		console.outputCharacter('a');
+		console.outputString("bc");
+		assertEquals("", bytes.toString());
+		console.outputCharacter('d');
+		assertEquals("abcd", bytes.toString());
+		console.outputNumber((short) -7);
+		assertEquals("abcd", bytes.toString());
+		console.flush();
+		assertEquals("abcd-7" + NEWLINE, bytes.toString());
+	}
+
+	@Test
+	void rawModeKeepsOnlyProgramOutput() {
+		Machine machine = programMachine();
+		Capture_Console console = new Capture_Console(true);
+		machine.console = console;
+		machine.run(100, new Scripted_Input());
+		assertEquals("Hi!-3" + NEWLINE, console.getOutput());
+	}
+
+	@Test
+	void decoratedModeMatchesSimulatorMessages() {
+		Machine machine = programMachine();
+		Capture_Console console = new Capture_Console(false);
+		machine.console = console;
+		machine.run(100, new Scripted_Input());
+		assertEquals("\nThe null-terminated String formed from the address in R0 in ASCII: Hi\n" + NEWLINE
+				+ "\nThe character formed in R0 in ASCII: !\n" + NEWLINE
+				+ "\nThe current value in R0 in decimal: -3\n" + NEWLINE
+				+ "\nA HALT instruction was encountered. Terminating executing instructions.\n" + NEWLINE,
+				console.getOutput());
+	}
+
+	/**
+	 * A machine with a program that outputs "Hi" with PUTS, '!' with OUT and -3
+	 * with OUTN, then halts.
+	 */
+	private static Machine programMachine() {
+		Machine machine = new Machine();
+		short[] program = { (short) 0xE010, // LEA R0,x3010
+				(short) 0xF022, // TRAP x22
+				(short) 0x2013, // LD R0,x3013
+				(short) 0xF021, // TRAP x21
+				(short) 0x2014, // LD R0,x3014
+				(short) 0xF031, // TRAP x31
+				(short) 0xF025 }; // TRAP x25
+		for (int i = 0; i < program.length; i++) {
+			machine.memory.write(0x3000 + i, program[i]);
+		}
+		machine.memory.write(0x3010, (short) 'H');
+		machine.memory.write(0x3011, (short) 'i');
+		machine.memory.write(0x3013, (short) '!');
+		machine.memory.write(0x3014, (short) -3);
+		machine.setPC(0x3000);
+		return machine;
+	}
+}
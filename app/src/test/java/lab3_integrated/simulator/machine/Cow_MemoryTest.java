@@ -0,0 +1,71 @@
+package lab3_integrated.simulator.machine;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Cow_MemoryTest {
+
+	@Test
+	void forksOnlyCopyWrittenPages() {
+		Cow_Memory parent = new Cow_Memory();
+		parent.write(0x3000, (short) 1);
+		parent.write(0x3001, (short) 2);
+		assertEquals(1, parent.getCopiedPages());
+
+		Cow_Memory child = parent.fork();
+		assertEquals(0, parent.getCopiedPages());
+		assertEquals(1, child.read(0x3000));
+		child.write(0x3000, (short) 10);
+		child.write(0x18, 1, (short) 20);
+		assertEquals(1, child.getCopiedPages());
+		assertEquals(10, child.read(0x3000));
+		assertEquals(20, child.read(0x3001));
+		assertEquals(1, parent.read(0x3000));
+		assertEquals(2, parent.read(0x3001));
+
+		parent.write(0x3000, (short) 5);
+		assertEquals(5, parent.read(0x3000));
+		assertEquals(10, child.read(0x3000));
+		assertEquals(0, new Cow_Memory().read(0x3000));
+	}
+
+	@Test
+	void forkedMachinesRunIndependently() {
+		Machine parent = new Machine(new Cow_Memory());
+		parent.console = new Capture_Console(true);
+		short[] program = { (short) 0xE640, // LEA R3,x3040
+				(short) 0x54A0, // AND R2,R2,#0
+				(short) 0x14A5, // ADD R2,R2,#5
+				(short) 0x74C0, // Loop STR R2,R3,#0
+				(short) 0x16E1, // ADD R3,R3,#1
+				(short) 0x14BF, // ADD R2,R2,#-1
+				(short) 0x0203, // BRP Loop
+				(short) 0xF025 }; // TRAP x25
+		for (int i = 0; i < program.length; i++) {
+			parent.memory.write(0x3000 + i, program[i]);
+		}
+		parent.setPC(0x3000);
+		parent.run(3, new Scripted_Input());
+
+		Machine first = parent.fork();
+		first.console = new Capture_Console(true);
+		// x3001 was already run, so this only checks the parent's page is not written
+		first.memory.write(0x3001, (short) 0x14A3);
+		assertEquals(Run_Result.Exit_Reason.HALT, first.run(1000, new Scripted_Input()).getExitReason());
+		Machine second = parent.fork();
+		second.console = new Capture_Console(true);
+		second.registers[2] = 2;
+		assertEquals(Run_Result.Exit_Reason.HALT, second.run(1000, new Scripted_Input()).getExitReason());
+
+		assertEquals(5, first.memory.read(0x3040));
+		assertEquals(1, first.memory.read(0x3044));
+		assertEquals(2, second.memory.read(0x3040));
+		assertEquals(0, second.memory.read(0x3042));
+		assertEquals(0, parent.memory.read(0x3040));
+		assertEquals((short) 0x54A0, parent.memory.read(0x3001));
+		assertEquals(0x3003, parent.PC);
+		assertEquals(3 + 21, first.instructionCount);
+		assertEquals(Machine.CCR_Z, first.getCCR());
+		assertThrows(IllegalStateException.class, () -> new Machine().fork());
+	}
+}
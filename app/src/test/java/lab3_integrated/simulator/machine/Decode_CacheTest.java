@@ -0,0 +1,45 @@
+package lab3_integrated.simulator.machine;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Decode_CacheTest {
+
+	@Test
+	void entriesMatchDecoderForAllWords() {
+		for (int word = 0; word < 0x10000; word++) {
+			short instruction = (short) word;
+			int entry = Decode_Cache.decode(instruction);
+			assertTrue(entry != Decode_Cache.EMPTY);
+			assertEquals(Instruction_Decoder.opcode(instruction), Decode_Cache.opcode(entry));
+			assertEquals(Instruction_Decoder.dr(instruction), Decode_Cache.dr(entry));
+			assertEquals(Instruction_Decoder.sr1(instruction), Decode_Cache.sr1(entry));
+			assertEquals(Instruction_Decoder.sr2(instruction), Decode_Cache.sr2(entry));
+			assertEquals(Instruction_Decoder.n(instruction), Decode_Cache.n(entry));
+			assertEquals(Instruction_Decoder.z(instruction), Decode_Cache.z(entry));
+			assertEquals(Instruction_Decoder.p(instruction), Decode_Cache.p(entry));
+			assertEquals(Instruction_Decoder.isImmediate(instruction), Decode_Cache.isImmediate(entry));
+			assertEquals(Instruction_Decoder.imm5(instruction), Decode_Cache.imm5(entry));
+			assertEquals(Instruction_Decoder.index6(instruction), Decode_Cache.index6(entry));
+			assertEquals(Instruction_Decoder.pgoffset9(instruction), Decode_Cache.pgoffset9(entry));
+			assertEquals(Instruction_Decoder.trapvect8(instruction), Decode_Cache.trapvect8(entry));
+		}
+	}
+
+	@Test
+	void storeInvalidatesDecodedWord() {
+		Machine machine = new Machine();
+		machine.PC = 0x3000;
+		machine.memory.write(0x3010, (short) 0x1261); // ADD R1,R1,#1 at x3010
+
+		int first = machine.fetchDecoded(0x3010);
+		assertEquals(first, machine.fetchDecoded(0x3010));
+		assertEquals(1, machine.decodeCache.getMisses());
+		assertEquals(1, machine.decodeCache.getHits());
+
+		machine.registers[2] = (short) 0xF025; // TRAP x25
+		machine.ST(2, 0x10);
+		assertEquals(Instruction_Decoder.TRAP, Decode_Cache.opcode(machine.fetchDecoded(0x3010)));
+		assertEquals(2, machine.decodeCache.getMisses());
+	}
+}
@@ -0,0 +1,52 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Direct_MemoryTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsAndWritesWords() {
+		Memory memory = new Direct_Memory();
+		assertEquals(0, memory.read(0xFFFF));
+		memory.write(0x3000, (short) 0xF025);
+		memory.write(0xFFFF, (short) -2);
+		assertEquals((short) 0xF025, memory.read(0x3000));
+		assertEquals((short) 0xF025, memory.read(0x18, 0));
+		assertEquals(-2, memory.read(127, 511));
+	}
+
+	@Test
+	void mappedImageMatchesSavedMemoryAndLeavesFileUnchanged() throws IOException {
+		Memory source = new Flat_Memory();
+		for (int address = 0; address < Memory.SIZE; address += 7) {
+			source.write(address, (short) (address * 31));
+		}
+		Path image = this.dir.resolve("memory.img");
+		Direct_Memory.saveImage(source, image);
+		byte[] saved = Files.readAllBytes(image);
+
+		Machine machine = new Machine(Direct_Memory.map(image));
+		for (int address = 0; address < Memory.SIZE; address++) {
+			assertEquals(source.read(address), machine.memory.read(address));
+		}
+		machine.writeWord(0x3000, (short) 0x1234);
+		assertEquals(0x1234, machine.memory.read(0x3000));
+		assertArrayEquals(saved, Files.readAllBytes(image));
+	}
+
+	@Test
+	void rejectsImageOfWrongSize() throws IOException {
+		Path image = this.dir.resolve("short.img");
+		Files.write(image, new byte[10]);
+		assertThrows(IOException.class, () -> Direct_Memory.map(image));
+	}
+}
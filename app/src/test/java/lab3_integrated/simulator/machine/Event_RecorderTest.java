@@ -0,0 +1,91 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Event_RecorderTest {
+
+	private static final String INPUT = "10 a -20 b 30 c 40 d 50 e";
+
+	@Test
+	void replayRepeatsRecordedRun() throws IOException {
+		Machine recorded = loopMachine();
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		Event_Recorder recorder = new Event_Recorder(recorded, new Scripted_Input(INPUT), log);
+		assertEquals(Run_Result.Exit_Reason.HALT, recorded.run(1000, recorder).getExitReason());
+		recorder.close();
+		assertEquals(15, recorder.getEvents());
+
+		Machine replayed = loopMachine();
+		Event_Replayer replayer = new Event_Replayer(replayed, new ByteArrayInputStream(log.toByteArray()));
+		assertEquals(Run_Result.Exit_Reason.HALT, replayed.run(1000, replayer).getExitReason());
+		assertTrue(replayer.isFinished());
+
+		assertEquals(recorded.instructionCount, replayed.instructionCount);
+		assertArrayEquals(recorded.registers, replayed.registers);
+		for (int address = 0; address < Memory.SIZE; address++) {
+			assertEquals(recorded.memory.read(address), replayed.memory.read(address), "memory at " + address);
+		}
+		// 4 byte header and 4 bytes per event, as no delta needs a second byte
+		assertEquals(4 + 15 * 4, log.size());
+	}
+
+	@Test
+	void replayDetectsDivergence() throws IOException {
+		Machine recorded = loopMachine();
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		Event_Recorder recorder = new Event_Recorder(recorded, new Scripted_Input(INPUT), log);
+		recorded.run(1000, recorder);
+		recorder.close();
+
+		// Starting after the LEA moves every event one instruction earlier
+		Machine replayed = loopMachine();
+		replayed.setPC(0x3001);
+		Event_Replayer replayer = new Event_Replayer(replayed, new ByteArrayInputStream(log.toByteArray()));
+		assertThrows(IllegalStateException.class, () -> replayed.run(1000, replayer));
+	}
+
+	@Test
+	void seededRandomRepeats() {
+		Machine first = loopMachine();
+		Machine second = loopMachine();
+		first.random = new Seeded_Random(42);
+		second.random = new Seeded_Random(42);
+		first.run(1000, new Scripted_Input(INPUT));
+		second.run(1000, new Scripted_Input(INPUT));
+		for (int address = 0x3040; address < 0x304F; address++) {
+			assertEquals(first.memory.read(address), second.memory.read(address), "memory at " + address);
+		}
+	}
+
+	/**
+	 * A machine with a program that stores RND, INN and IN values into a table at
+	 * x3040 five times, then halts.
+	 */
+	private static Machine loopMachine() {
+		Machine machine = new Machine();
+		machine.console = new Capture_Console(true);
+		short[] program = { (short) 0xE640, // LEA R3,x3040
+				(short) 0x54A0, // AND R2,R2,#0
+				(short) 0x14A5, // ADD R2,R2,#5
+				(short) 0xF043, // Loop TRAP x43
+				(short) 0x70C0, // STR R0,R3,#0
+				(short) 0xF033, // TRAP x33
+				(short) 0x70C1, // STR R0,R3,#1
+				(short) 0xF023, // TRAP x23
+				(short) 0x70C2, // STR R0,R3,#2
+				(short) 0x16E3, // ADD R3,R3,#3
+				(short) 0x14BF, // ADD R2,R2,#-1
+				(short) 0x0203, // BRP Loop
+				(short) 0xF025 }; // TRAP x25
+		for (int i = 0; i < program.length; i++) {
+			machine.memory.write(0x3000 + i, program[i]);
+		}
+		machine.setPC(0x3000);
+		return machine;
+	}
+}
@@ -0,0 +1,64 @@
+package lab3_integrated.simulator.machine;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential test of the bit-mask decoder against the String based decoding
+ * that Simulator.ParseInstruction used before, over every 16-bit word.
+ */
+class Instruction_DecoderTest {
+
+	/**
+	 * Opcodes in the order of the old decimal-parsed switch cases (index is the
+	 * opcode value).
+	 */
+	private static final short[] LEGACY_OPCODES = { 0, 1, 10, 11, 100, 101, 110, 111, 1000, 1001, 1010, 1011, 1100,
+			1101, 1110, 1111 };
+
+	@Test
+	void matchesStringDecoderForAllWords() {
+		for (int word = 0; word < 0x10000; word++) {
+			short instruction = (short) word;
+			String bits = legacyBits(instruction);
+			String hex = "0x" + Integer.toHexString(word);
+
+			assertEquals(Short.parseShort(bits.substring(0, 4)),
+					LEGACY_OPCODES[Instruction_Decoder.opcode(instruction)], "opcode of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(4, 7), 2), Instruction_Decoder.dr(instruction), "DR of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(7, 10), 2), Instruction_Decoder.sr1(instruction),
+					"SR1 of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(13), 2), Instruction_Decoder.sr2(instruction), "SR2 of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(4, 5), 2), Instruction_Decoder.n(instruction), "n of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(5, 6), 2), Instruction_Decoder.z(instruction), "z of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(6, 7), 2), Instruction_Decoder.p(instruction), "p of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(4, 5), 2), Instruction_Decoder.l(instruction), "L of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(11), 2), Instruction_Decoder.imm5(instruction),
+					"imm5 of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(7), 2), Instruction_Decoder.pgoffset9(instruction),
+					"pgoffset9 of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(7, 10), 2), Instruction_Decoder.baseR(instruction),
+					"BaseR of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(10), 2), Instruction_Decoder.index6(instruction),
+					"index6 of " + hex);
+			assertEquals(Integer.parseInt(bits.substring(8), 2), Instruction_Decoder.trapvect8(instruction),
+					"trapvect8 of " + hex);
+			assertEquals(bits.charAt(10) != '0', Instruction_Decoder.isImmediate(instruction),
+					"immediate flag of " + hex);
+		}
+	}
+
+	/**
+	 * The binary String the old decoder built for an instruction.
+	 */
+	private static String legacyBits(short instruction) {
+		String instructString = Integer.toBinaryString(instruction);
+		if (instructString.length() > 16) {
+			instructString = instructString.substring(16);
+		}
+		while (instructString.length() < 16) {
+			instructString = "0" + instructString;
+		}
+		return instructString;
+	}
+}
@@ -0,0 +1,102 @@
+package lab3_integrated.simulator.machine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Machine_SnapshotTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void restoredMachineContinuesLikeOriginal() throws IOException {
+		Machine original = loopMachine();
+		original.name = "LOOP";
+		original.run(20, new Scripted_Input());
+		Path snapshot = this.dir.resolve("loop.snap");
+		Machine_Snapshot.save(original, snapshot);
+		assertEquals(Machine_Snapshot.FILE_SIZE, Files.size(snapshot));
+
+		Machine restored = Machine_Snapshot.restore(snapshot);
+		assertEquals("LOOP", restored.name);
+		assertSameState(original, restored);
+
+		original.run(1000, new Scripted_Input());
+		restored.console = new Capture_Console(true);
+		assertEquals(Run_Result.Exit_Reason.HALT, restored.run(1000, new Scripted_Input()).getExitReason());
+		assertSameState(original, restored);
+	}
+
+	@Test
+	void restoreLeavesSnapshotUnchanged() throws IOException {
+		Machine original = loopMachine();
+		Path snapshot = this.dir.resolve("loop.snap");
+		Machine_Snapshot.save(original, snapshot);
+		byte[] saved = Files.readAllBytes(snapshot);
+
+		Machine first = Machine_Snapshot.restore(snapshot);
+		first.console = new Capture_Console(true);
+		first.run(1000, new Scripted_Input());
+		assertArrayEquals(saved, Files.readAllBytes(snapshot));
+		assertSameState(original, Machine_Snapshot.restore(snapshot));
+	}
+
+	@Test
+	void restoresSnapshotsThatCanOnlyBeRead() throws IOException {
+		Machine original = loopMachine();
+		Path snapshot = this.dir.resolve("shared.snap");
+		Machine_Snapshot.save(original, snapshot);
+		assertTrue(snapshot.toFile().setWritable(false, false));
+
+		for (int i = 0; i < 2; i++) {
+			Machine restored = Machine_Snapshot.restore(snapshot);
+			assertSameState(original, restored);
+			restored.console = new Capture_Console(true);
+			assertEquals(Run_Result.Exit_Reason.HALT, restored.run(1000, new Scripted_Input()).getExitReason());
+		}
+	}
+
+	@Test
+	void rejectsFilesThatAreNotSnapshots() throws IOException {
+		Path small = this.dir.resolve("small.snap");
+		Files.write(small, new byte[10]);
+		assertThrows(IOException.class, () -> Machine_Snapshot.restore(small));
+		Path image = this.dir.resolve("zero.snap");
+		Files.write(image, new byte[Machine_Snapshot.FILE_SIZE]);
+		assertThrows(IOException.class, () -> Machine_Snapshot.restore(image));
+	}
+
+	private static void assertSameState(Machine expected, Machine actual) {
+		assertEquals(expected.PC, actual.PC, "PC");
+		assertEquals(expected.prev_pc, actual.prev_pc, "previous PC");
+		assertEquals(expected.getCCR(), actual.getCCR(), "CCRs");
+		assertArrayEquals(expected.registers, actual.registers, "registers");
+		assertEquals(expected.instructionCount, actual.instructionCount, "instruction count");
+		for (int address = 0; address < Memory.SIZE; address++) {
+			assertEquals(expected.memory.read(address), actual.memory.read(address), "memory at " + address);
+		}
+	}
+
+	private static Machine loopMachine() {
+		Machine machine = new Machine();
+		machine.console = new Capture_Console(true);
+		short[] program = { (short) 0xE640, // LEA R3,x3040
+				(short) 0x54A0, // AND R2,R2,#0
+				(short) 0x14AF, // ADD R2,R2,#15
+				(short) 0x74C0, // Loop STR R2,R3,#0
+				(short) 0x16E1, // ADD R3,R3,#1
+				(short) 0x14BF, // ADD R2,R2,#-1
+				(short) 0x0203, // BRP Loop
+				(short) 0xF025 }; // TRAP x25
+		for (int i = 0; i < program.length; i++) {
+			machine.memory.write(0x3000 + i, program[i]);
+		}
+		machine.setPC(0x3000);
+		return machine;
+	}
+}
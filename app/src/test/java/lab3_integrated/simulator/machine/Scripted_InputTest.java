@@ -0,0 +1,68 @@
+package lab3_integrated.simulator.machine;
+
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Scripted_InputTest {
+
+	@Test
+	void readsTokensInOrderAndSkipsInvalidNumbers() {
+		Scripted_Input input = Scripted_Input.fromBytes("abc  12\n x 99999 -5\t".getBytes());
+		Capture_Console console = new Capture_Console(false);
+		assertEquals('a', input.readCharacter(console));
+		assertEquals(12, input.readNumber(console));
+		assertEquals(-5, input.readNumber(console));
+		assertEquals(0, input.remaining());
+		assertEquals("", console.getOutput());
+		assertThrows(NoSuchElementException.class, () -> input.readCharacter(console));
+	}
+
+	@Test
+	void drivesManyCasesThroughOneLoadedProgram() {
+		Machine machine = echoMachine();
+		Scripted_Input input = new Scripted_Input();
+		for (short value = -300; value <= 300; value++) {
+			input.addCharacter((char) ('A' + (value & 15)));
+			input.addNumber(value);
+
+			machine.setPC(0x3000);
+			Run_Result result = machine.run(100, input);
+			assertEquals(Run_Result.Exit_Reason.HALT, result.getExitReason());
+			assertEquals('A' + (value & 15), machine.registers[1]);
+			assertEquals(value, machine.registers[0]);
+		}
+	}
+
+	@Test
+	void scannerInputStillPrompts() {
+		Machine machine = echoMachine();
+		Capture_Console console = new Capture_Console(false);
+		machine.console = console;
+		machine.setPC(0x3000);
+		machine.run(100, new Scanner_Input(new Scanner("Q\nnope\n42\n")));
+		assertEquals(42, machine.registers[0]);
+		assertEquals('Q', machine.registers[1]);
+		assertTrue(console.getOutput().contains("Enter a character: "));
+		assertTrue(console.getOutput().contains("Invalid input."));
+	}
+
+	/**
+	 * A machine with a program that reads a character into R1 with IN and a number
+	 * into R0 with INN, then halts.
+	 */
+	private static Machine echoMachine() {
+		Machine machine = new Machine();
+		machine.console = new Capture_Console(true);
+		short[] program = { (short) 0xF023, // TRAP x23
+				(short) 0x1220, // ADD R1,R0,#0
+				(short) 0xF033, // TRAP x33
+				(short) 0xF025 }; // TRAP x25
+		for (int i = 0; i < program.length; i++) {
+			machine.memory.write(0x3000 + i, program[i]);
+		}
+		return machine;
+	}
+}
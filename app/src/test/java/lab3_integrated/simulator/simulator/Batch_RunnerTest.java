@@ -0,0 +1,95 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Capture_Console;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Run_Result;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Batch_RunnerTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void parallelRunsMatchSingleRuns() throws Exception {
+		String[] programs = { Test_Programs.LINKED, Test_Programs.ALL_OPS, Test_Programs.HOT_LOOP,
+				Test_Programs.SELF_MODIFYING_LOOP, Test_Programs.SAMPLE };
+		for (int copy = 0; copy < 6; copy++) {
+			for (int i = 0; i < programs.length; i++) {
+				Files.writeString(this.dir.resolve("job" + copy + "_" + i + ".o"), programs[i]);
+			}
+		}
+		List<Batch_Runner.Job> jobs = Batch_Runner.readJobs(this.dir, 20000);
+		assertEquals(30, jobs.size());
+
+		Batch_Runner runner = new Batch_Runner(4);
+		List<Batch_Runner.Result> results;
+		try {
+			results = runner.run(jobs);
+		} finally {
+			runner.shutdown();
+		}
+		for (int i = 0; i < jobs.size(); i++) {
+			Batch_Runner.Result result = results.get(i);
+			assertEquals(jobs.get(i).getExecutable(), result.getExecutable());
+			Machine machine = Test_Programs.load(this.dir, Files.readString(result.getExecutable()));
+			Capture_Console console = new Capture_Console(true);
+			machine.console = console;
+			Run_Result expected = machine.run(20000, new Scripted_Input());
+			assertNull(result.getError());
+			assertEquals(expected.toString(), result.getRun().toString());
+			assertEquals(console.getOutput(), result.getOutput());
+		}
+	}
+
+	@Test
+	void manifestGivesBudgetsAndInputs() throws Exception {
+		Files.writeString(this.dir.resolve("linked.o"), Test_Programs.LINKED);
+		Files.writeString(this.dir.resolve("hot.o"), Test_Programs.HOT_LOOP);
+		Files.writeString(this.dir.resolve("bad.o"), "HBAD   30000001\nT3000\nE3000");
+		// IN, OUT, HALT
+		Files.writeString(this.dir.resolve("echo.o"), "HECHO  30000003\nT3000F023\nT3001F021\nT3002F025\nE3000");
+		Files.writeString(this.dir.resolve("echo.txt"), "z");
+		Path manifest = this.dir.resolve("jobs.txt");
+		Files.writeString(manifest, String.join("\n", "# regression corpus", "linked.o", "hot.o 50", "", "bad.o",
+				"echo.o 10 echo.txt", "echo.o 10"));
+
+		Batch_Runner runner = new Batch_Runner(2);
+		List<Batch_Runner.Result> results = runner.run(Batch_Runner.readJobs(manifest, 1000));
+		runner.shutdown();
+		assertEquals(Run_Result.Exit_Reason.HALT, results.get(0).getRun().getExitReason());
+		assertEquals(Run_Result.Exit_Reason.BUDGET_EXHAUSTED, results.get(1).getRun().getExitReason());
+		assertEquals(50, results.get(1).getRun().getInstructionsRetired());
+		assertNull(results.get(2).getRun());
+		assertTrue(results.get(2).getError().contains("text record invalid"));
+		assertEquals("z", results.get(3).getOutput());
+		assertEquals(3, results.get(3).getRun().getInstructionsRetired());
+		assertNotNull(results.get(4).getError());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Batch_Runner.writeSummary(results, new PrintStream(bytes, true));
+		List<String> lines = new ArrayList<>(bytes.toString().lines().toList());
+		assertEquals(6, lines.size());
+		assertEquals(manifest.getParent().resolve("hot.o") + "\tBUDGET_EXHAUSTED\t50\tx300A\t", lines.get(2));
+		assertTrue(lines.get(3).contains("\tERROR: "));
+	}
+
+	@Test
+	void rejectsInvalidManifestLines() throws IOException {
+		Path manifest = this.dir.resolve("jobs.txt");
+		Files.writeString(manifest, "linked.o many");
+		assertThrows(IOException.class, () -> Batch_Runner.readJobs(manifest, 1000));
+	}
+}
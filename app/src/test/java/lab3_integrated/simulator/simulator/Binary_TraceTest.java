@@ -0,0 +1,110 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Capture_Console;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Binary_TraceTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void renderedTraceMatchesTraceMode() throws Exception {
+		assertRendersTraceMode(Test_Programs.LINKED, 1000);
+		assertRendersTraceMode(Test_Programs.ALL_OPS, 1000);
+		assertRendersTraceMode(Test_Programs.SELF_MODIFYING_LOOP, 200);
+	}
+
+	@Test
+	void recordsAreFixedSize() throws Exception {
+		Path trace = this.dir.resolve("hot.trace");
+		Machine machine = Test_Programs.load(this.dir, Test_Programs.HOT_LOOP);
+		int executed = binaryTrace(machine, trace, 100000);
+		assertEquals(Trace_Record.HEADER_SIZE + (long) executed * Trace_Record.RECORD_SIZE, Files.size(trace));
+	}
+
+	@Test
+	void ringKeepsOrderAcrossThreads() throws Exception {
+		Trace_Ring ring = new Trace_Ring(64);
+		int total = 10000;
+		Thread producer = new Thread(() -> {
+			for (long i = 0; i < total; i++) {
+				while (!ring.offer(i, ~i)) {
+					Thread.yield();
+				}
+			}
+		});
+		producer.start();
+		ByteBuffer buffer = ByteBuffer.allocate(10 * Trace_Record.RECORD_SIZE);
+		long expected = 0;
+		while (expected < total) {
+			buffer.clear();
+			int count = ring.drain(buffer);
+			if (count == 0) {
+				// On one processor the producer only runs if this thread yields
+				Thread.yield();
+			}
+			buffer.flip();
+			for (int i = 0; i < count; i++) {
+				assertEquals(expected, buffer.getLong());
+				assertEquals(~expected, buffer.getLong());
+				expected++;
+			}
+		}
+		producer.join();
+		assertTrue(ring.isEmpty());
+	}
+
+	private void assertRendersTraceMode(String executable, int maxInstructions) throws Exception {
+		Machine traced = Test_Programs.load(this.dir, executable);
+		traced.console = new Capture_Console(true);
+		String text = captureOutput(() -> {
+			new Simulator_Session(traced, Simulator.Mode.TRACE, new Scripted_Input()).interpret(maxInstructions);
+		});
+
+		Path trace = this.dir.resolve("program.trace");
+		Machine recorded = Test_Programs.load(this.dir, executable);
+		recorded.console = new Capture_Console(true);
+		captureOutput(() -> binaryTrace(recorded, trace, maxInstructions));
+
+		assertEquals(text, captureOutput(() -> Trace_Renderer.render(trace)));
+	}
+
+	private static int binaryTrace(Machine machine, Path trace, int maxInstructions) throws Exception {
+		Simulator_Session session = new Simulator_Session(machine, Simulator.Mode.QUIET, new Scripted_Input());
+		Binary_Tracer tracer = new Binary_Tracer(machine, trace);
+		session.setTracer(tracer);
+		try {
+			return session.interpret(maxInstructions);
+		} finally {
+			tracer.close();
+		}
+	}
+
+	interface Action {
+		void run() throws Exception;
+	}
+
+	private static String captureOutput(Action action) throws Exception {
+		PrintStream out = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes, true));
+		try {
+			action.run();
+		} finally {
+			System.setOut(out);
+		}
+		return bytes.toString();
+	}
+}
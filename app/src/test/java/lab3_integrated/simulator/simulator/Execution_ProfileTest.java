@@ -0,0 +1,118 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Capture_Console;
+import lab3_integrated.simulator.machine.Instruction_Decoder;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Execution_ProfileTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void countsAddressesOpcodesAndBranches() throws Exception {
+		Machine machine = Test_Programs.load(this.dir, Test_Programs.HOT_LOOP);
+		Execution_Profile profile = new Execution_Profile();
+		int executed = this.profile(machine, Simulator.Mode.QUIET, profile);
+
+		// LD, AND and LEA, 1000 iterations of the 10 instruction loop, then HALT
+		assertEquals(10004, executed);
+		assertEquals(executed, profile.getTotal());
+		assertEquals(1, profile.getCount(0x3000));
+		assertEquals(1000, profile.getCount(0x3003));
+		assertEquals(1000, profile.getCount(0x300C));
+		assertEquals(1, profile.getCount(0x300D));
+		assertEquals(0, profile.getCount(0x300E));
+		assertEquals(999, profile.getTaken(0x300C));
+		assertEquals(1, profile.getNotTaken(0x300C));
+		assertEquals(1000, profile.getOpcodeCount(Instruction_Decoder.BRX));
+		assertEquals(3000, profile.getOpcodeCount(Instruction_Decoder.ADD));
+	}
+
+	@Test
+	void profiledRunsMatchUnprofiledRuns() throws Exception {
+		for (String program : new String[] { Test_Programs.LINKED, Test_Programs.ALL_OPS,
+				Test_Programs.SELF_MODIFYING_LOOP }) {
+			for (Simulator.Mode mode : new Simulator.Mode[] { Simulator.Mode.QUIET, Simulator.Mode.TRACE }) {
+				Machine plain = Test_Programs.load(this.dir, program);
+				Machine profiled = Test_Programs.load(this.dir, program);
+				Execution_Profile profile = new Execution_Profile();
+				assertEquals(this.profile(plain, mode, null), this.profile(profiled, mode, profile));
+				assertEquals(plain.PC, profiled.PC);
+				assertArrayEquals(plain.registers, profiled.registers);
+				long counted = 0;
+				for (int address = 0; address < 0x10000; address++) {
+					counted += profile.getCount(address);
+				}
+				assertEquals(profile.getTotal(), counted);
+			}
+		}
+	}
+
+	@Test
+	void everyEngineCountsTheSameProfile() throws Exception {
+		for (String program : new String[] { Test_Programs.HOT_LOOP, Test_Programs.ALL_OPS,
+				Test_Programs.SELF_MODIFYING_LOOP }) {
+			Execution_Profile expected = new Execution_Profile();
+			int executed = this.profile(Test_Programs.load(this.dir, program), Simulator.Mode.QUIET, expected,
+					Simulator.Engine.INTERPRETER);
+			for (Simulator.Engine engine : new Simulator.Engine[] { Simulator.Engine.THREADED,
+					Simulator.Engine.TIERED }) {
+				Execution_Profile profile = new Execution_Profile();
+				assertEquals(executed, this.profile(Test_Programs.load(this.dir, program), Simulator.Mode.QUIET,
+						profile, engine));
+				for (int address = 0; address < 0x10000; address++) {
+					assertEquals(expected.getCount(address), profile.getCount(address));
+					assertEquals(expected.getTaken(address), profile.getTaken(address));
+					assertEquals(expected.getNotTaken(address), profile.getNotTaken(address));
+				}
+				for (int opcode = 0; opcode < 16; opcode++) {
+					assertEquals(expected.getOpcodeCount(opcode), profile.getOpcodeCount(opcode));
+				}
+			}
+		}
+	}
+
+	@Test
+	void reportListsHotSpotsFirst() throws Exception {
+		Machine machine = Test_Programs.load(this.dir, Test_Programs.HOT_LOOP);
+		Execution_Profile profile = new Execution_Profile();
+		this.profile(machine, Simulator.Mode.QUIET, profile);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		profile.writeReport(machine, new PrintStream(bytes, true));
+		List<String> lines = bytes.toString().lines().toList();
+
+		assertEquals("Instructions run: 10004", lines.get(0));
+		assertTrue(lines.get(3).startsWith("x3003"));
+		assertTrue(lines.get(12).matches("x300C +1000 +10\\.00%  BRx +taken 999, not taken 1"), lines.get(12));
+		assertTrue(lines.get(13).matches("x3000 +1 .*LD.*"), lines.get(13));
+		assertTrue(lines.get(16).startsWith("x300D"));
+		assertEquals(Arrays.asList("opcode", "count", "share"), Arrays.asList(lines.get(18).split(" +")));
+		assertTrue(lines.get(19).matches("ADD +3000 +29\\.99%"), lines.get(19));
+		assertTrue(lines.get(20).matches("AND +1001 +10\\.01%"), lines.get(20));
+	}
+
+	private int profile(Machine machine, Simulator.Mode mode, Execution_Profile profile) {
+		return this.profile(machine, mode, profile, Simulator.Engine.THREADED);
+	}
+
+	private int profile(Machine machine, Simulator.Mode mode, Execution_Profile profile, Simulator.Engine engine) {
+		machine.console = new Capture_Console(true);
+		Simulator_Session session = new Simulator_Session(machine, mode, new Scripted_Input(), null,
+				new PrintStream(new ByteArrayOutputStream(), true));
+		session.setEngine(engine);
+		session.setProfile(profile);
+		return session.run(20000);
+	}
+}
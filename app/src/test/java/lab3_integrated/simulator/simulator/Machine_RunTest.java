@@ -0,0 +1,91 @@
+package lab3_integrated.simulator.simulator;
+
+import static lab3_integrated.simulator.simulator.Test_Programs.hex;
+import static lab3_integrated.simulator.simulator.Test_Programs.trap;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory;
+import lab3_integrated.simulator.machine.Run_Result;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Machine_RunTest {
+
+	private static final String INVALID_TRAP = String.join("\n", "HBADTRP30000002",
+			"T3000" + hex(trap(0x7F)), // TRAP x7F
+			"T3001" + hex(trap(0x25)), // TRAP x25
+			"E3000");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void regressionProgramsHaltWithInterpreterState() throws Exception {
+		for (String executable : new String[] { Test_Programs.LINKED, Test_Programs.SAMPLE, Test_Programs.ALL_OPS,
+				Test_Programs.HOT_LOOP, Test_Programs.SELF_MODIFYING_LOOP }) {
+			Run_Result result = assertSameState(executable, 100000);
+			assertEquals(Run_Result.Exit_Reason.HALT, result.getExitReason());
+		}
+	}
+
+	@Test
+	void stopsWhenBudgetIsExhausted() throws Exception {
+		Run_Result result = assertSameState(Test_Programs.LINKED, 37);
+		assertEquals(Run_Result.Exit_Reason.BUDGET_EXHAUSTED, result.getExitReason());
+		assertEquals(37, result.getInstructionsRetired());
+	}
+
+	@Test
+	void stopsAtBreakpointAndResumes() throws Exception {
+		Machine machine = Test_Programs.load(this.dir, Test_Programs.HOT_LOOP);
+		machine.addBreakpoint(0x3003);
+
+		Run_Result first = machine.run(100000, new Scripted_Input());
+		assertEquals(Run_Result.Exit_Reason.BREAKPOINT, first.getExitReason());
+		assertEquals(3, first.getInstructionsRetired());
+		assertEquals(0x3003, first.getFinalPC());
+
+		Run_Result second = machine.run(100000, new Scripted_Input());
+		assertEquals(Run_Result.Exit_Reason.BREAKPOINT, second.getExitReason());
+		assertEquals(10, second.getInstructionsRetired());
+		assertEquals(0x3003, second.getFinalPC());
+
+		machine.clearBreakpoints();
+		assertEquals(Run_Result.Exit_Reason.HALT, machine.run(100000, new Scripted_Input()).getExitReason());
+	}
+
+	@Test
+	void stopsAfterInvalidTrap() throws Exception {
+		Machine machine = Test_Programs.load(this.dir, INVALID_TRAP);
+		Run_Result result = machine.run(100, new Scripted_Input());
+		assertEquals(Run_Result.Exit_Reason.INVALID_TRAP, result.getExitReason());
+		assertEquals(1, result.getInstructionsRetired());
+		assertEquals(0x3001, result.getFinalPC());
+		assertEquals(0x3001, machine.registers[7]);
+	}
+
+	private Run_Result assertSameState(String executable, int maxInstructions) throws Exception {
+		Machine expected = Test_Programs.load(this.dir, executable);
+		int retired = Test_Programs.interpret(expected, maxInstructions);
+
+		Machine actual = Test_Programs.load(this.dir, executable);
+		Run_Result result = actual.run(maxInstructions, new Scripted_Input());
+
+		assertEquals(retired, result.getInstructionsRetired(), "instructions retired");
+		assertEquals(expected.PC, result.getFinalPC(), "final PC");
+		assertEquals(expected.PC, actual.PC, "PC");
+		assertEquals(expected.prev_pc, actual.prev_pc, "previous PC");
+		assertArrayEquals(expected.registers, actual.registers, "registers");
+		assertEquals(expected.getCCR(), actual.getCCR(), "CCRs");
+		assertEquals(expected.instructionCount, actual.instructionCount, "instruction count");
+		for (int address = 0; address < Memory.SIZE; address++) {
+			assertEquals(expected.memory.read(address), actual.memory.read(address), "memory at " + address);
+		}
+		return result;
+	}
+}
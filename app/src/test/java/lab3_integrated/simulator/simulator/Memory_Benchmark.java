@@ -0,0 +1,72 @@
+package lab3_integrated.simulator.simulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import lab3_integrated.simulator.machine.Cow_Memory;
+import lab3_integrated.simulator.machine.Direct_Memory;
+import lab3_integrated.simulator.machine.Flat_Memory;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory;
+import lab3_integrated.simulator.machine.Paged_Memory;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+/**
+ * Compares fetch/execute speed of the paged, flat, direct and copy-on-write memory backends on the
+ * HOT_LOOP regression program, on the interpreter, the threaded engine and
+ * the batch loop of Machine.run.
+ *
+ * Run with: gradle benchmark -Pbenchmark=lab3_integrated.simulator.simulator.Memory_Benchmark
+ */
+public class Memory_Benchmark {
+
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	/**
+	 * Iterations of the loop per run, stored over the .FILL #1000 of HOT_LOOP.
+	 */
+	private static final short LOOP_COUNT = 30000;
+	private static final int LOOP_COUNT_ADDRESS = 0x3040;
+	private static final int MAX_INSTRUCTIONS = Integer.MAX_VALUE;
+
+	public static void main(String[] args) throws Exception {
+		Path dir = Files.createTempDirectory("memory-benchmark");
+		System.out.printf("%-8s %-12s %12s%n", "memory", "engine", "ns/instr");
+		report(dir, "paged", Paged_Memory::new);
+		report(dir, "flat", Flat_Memory::new);
+		report(dir, "direct", Direct_Memory::new);
+		report(dir, "cow", Cow_Memory::new);
+	}
+
+	private static void report(Path dir, String name, Supplier<Memory> backend) throws Exception {
+		for (String engine : new String[] { "interpreter", "threaded", "batch" }) {
+			System.out.printf("%-8s %-12s %12.2f%n", name, engine, measure(dir, backend, engine));
+		}
+	}
+
+	/**
+	 * Returns the best time per instruction over the measured rounds.
+	 */
+	private static double measure(Path dir, Supplier<Memory> backend, String engine) throws Exception {
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			Machine machine = Test_Programs.load(dir, Test_Programs.HOT_LOOP, backend.get());
+			machine.memory.write(LOOP_COUNT_ADDRESS, LOOP_COUNT);
+
+			long start = System.nanoTime();
+			long executed = switch (engine) {
+			case "threaded" -> new Threaded_Engine(machine, new Scripted_Input()).run(MAX_INSTRUCTIONS);
+			case "batch" -> machine.run(MAX_INSTRUCTIONS, new Scripted_Input()).getInstructionsRetired();
+			default -> Test_Programs.interpret(machine, MAX_INSTRUCTIONS);
+			};
+			long elapsed = System.nanoTime() - start;
+
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, (double) elapsed / executed);
+			}
+		}
+		return best;
+	}
+}
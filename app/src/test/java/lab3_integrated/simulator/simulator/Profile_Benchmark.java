@@ -0,0 +1,67 @@
+package lab3_integrated.simulator.simulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lab3_integrated.simulator.machine.Capture_Console;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+/**
+ * Compares the speed of Quiet mode on each engine with and without an
+ * Execution_Profile, on the HOT_LOOP regression program. The overhead of the
+ * tiered engine is against its unprofiled run, with the JIT on.
+ *
+ * Run with: gradle benchmark -Pbenchmark=lab3_integrated.simulator.simulator.Profile_Benchmark
+ */
+public class Profile_Benchmark {
+
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int ROUNDS = 50;
+
+	/**
+	 * Iterations of the loop per run, stored over the .FILL #1000 of HOT_LOOP.
+	 */
+	private static final short LOOP_COUNT = 30000;
+	private static final int LOOP_COUNT_ADDRESS = 0x3040;
+	private static final int MAX_INSTRUCTIONS = Integer.MAX_VALUE;
+
+	public static void main(String[] args) throws Exception {
+		Path dir = Files.createTempDirectory("profile-benchmark");
+		System.out.printf("%-12s %12s %12s %12s%n", "engine", "plain ns", "profiled ns", "overhead");
+		for (Simulator.Engine engine : Simulator.Engine.values()) {
+			// Rounds of the two runs alternate, so both run with the same JIT state
+			double plain = Double.MAX_VALUE;
+			double profiled = Double.MAX_VALUE;
+			for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+				double plainRound = measure(dir, engine, false);
+				double profiledRound = measure(dir, engine, true);
+				if (round >= WARMUP_ROUNDS) {
+					plain = Math.min(plain, plainRound);
+					profiled = Math.min(profiled, profiledRound);
+				}
+			}
+			System.out.printf("%-12s %12.2f %12.2f %11.1f%%%n", engine.toString().toLowerCase(), plain, profiled,
+					100 * (profiled - plain) / plain);
+		}
+	}
+
+	/**
+	 * Returns the time per instruction of one run.
+	 */
+	private static double measure(Path dir, Simulator.Engine engine, boolean profile) throws Exception {
+		Machine machine = Test_Programs.load(dir, Test_Programs.HOT_LOOP);
+		machine.memory.write(LOOP_COUNT_ADDRESS, LOOP_COUNT);
+		machine.console = new Capture_Console(true);
+		Simulator_Session session = new Simulator_Session(machine, Simulator.Mode.QUIET, new Scripted_Input());
+		session.setEngine(engine);
+		if (profile) {
+			session.setProfile(new Execution_Profile());
+		}
+
+		long start = System.nanoTime();
+		long executed = session.run(MAX_INSTRUCTIONS);
+		long elapsed = System.nanoTime() - start;
+		return (double) elapsed / executed;
+	}
+}
@@ -0,0 +1,85 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Capture_Console;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Simulator_SessionTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void concurrentSessionsMatchSequentialRuns() throws Exception {
+		String[] programs = { Test_Programs.LINKED, Test_Programs.ALL_OPS, Test_Programs.SELF_MODIFYING_LOOP,
+				Test_Programs.HOT_LOOP };
+		Simulator.Mode[] modes = { Simulator.Mode.TRACE, Simulator.Mode.QUIET };
+		List<Callable<String>> runs = new ArrayList<>();
+		for (int copy = 0; copy < 4; copy++) {
+			for (String program : programs) {
+				for (Simulator.Mode mode : modes) {
+					runs.add(() -> simulate(program, mode));
+				}
+			}
+		}
+
+		List<String> expected = new ArrayList<>();
+		for (Callable<String> run : runs) {
+			expected.add(run.call());
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = pool.invokeAll(runs);
+			for (int i = 0; i < runs.size(); i++) {
+				assertEquals(expected.get(i), results.get(i).get(), "run " + i);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void stepModeNeedsInput() throws Exception {
+		Machine machine = Test_Programs.load(this.dir, Test_Programs.LINKED);
+		assertThrows(IllegalArgumentException.class,
+				() -> new Simulator_Session(machine, Simulator.Mode.STEP, new Scripted_Input()));
+	}
+
+	@Test
+	void invalidEnginePropertyFallsBackToTheInterpreter() {
+		assertEquals(Simulator.Engine.TIERED, Simulator.parseEngine("tiered"));
+		assertEquals(Simulator.Engine.INTERPRETER, Simulator.parseEngine(null));
+		assertEquals(Simulator.Engine.INTERPRETER, Simulator.parseEngine("jit"));
+	}
+
+	/**
+	 * Runs a program in its own session and returns its trace, program output
+	 * and final registers.
+	 */
+	private String simulate(String program, Simulator.Mode mode) throws Exception {
+		Machine machine = Test_Programs.load(this.dir, program);
+		Capture_Console console = new Capture_Console(false);
+		machine.console = console;
+		ByteArrayOutputStream trace = new ByteArrayOutputStream();
+		Simulator_Session session = new Simulator_Session(machine, mode, new Scripted_Input(), null,
+				new PrintStream(trace, true));
+		int executed = session.run(5000);
+		return trace + console.getOutput() + executed + " " + machine.PC + " "
+				+ Arrays.toString(machine.registers);
+	}
+}
@@ -0,0 +1,81 @@
+package lab3_integrated.simulator.simulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lab3_integrated.simulator.machine.Cow_Memory;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Machine_Snapshot;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+/**
+ * Compares reaching a warm state of the HOT_LOOP regression program by
+ * loading it and running the warmup instructions again, with restoring a
+ * snapshot taken at that state and with forking a machine in that state.
+ *
+ * Run with: gradle benchmark -Pbenchmark=lab3_integrated.simulator.simulator.Snapshot_Benchmark
+ */
+public class Snapshot_Benchmark {
+
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	/**
+	 * Iterations of the loop run before the snapshot, stored over the .FILL
+	 * #1000 of HOT_LOOP with the loop left running.
+	 */
+	private static final short LOOP_COUNT = 30000;
+	private static final int LOOP_COUNT_ADDRESS = 0x3040;
+	private static final int WARMUP_INSTRUCTIONS = 200000;
+
+	public static void main(String[] args) throws Exception {
+		Path dir = Files.createTempDirectory("snapshot-benchmark");
+		Path snapshot = dir.resolve("warm.snap");
+		Machine warm = warmUp(dir);
+		Machine_Snapshot.save(warm, snapshot);
+		Machine parent = Test_Programs.load(dir, Test_Programs.HOT_LOOP, new Cow_Memory());
+		parent.memory.write(LOOP_COUNT_ADDRESS, LOOP_COUNT);
+		parent.run(WARMUP_INSTRUCTIONS, new Scripted_Input());
+
+		System.out.printf("%-16s %12s%n", "start", "us");
+		System.out.printf("%-16s %12.1f%n", "load + warmup", best(() -> warmUp(dir)));
+		System.out.printf("%-16s %12.1f%n", "restore", best(() -> {
+			Machine machine = Machine_Snapshot.restore(snapshot);
+			// Touch the program so its pages are in
+			machine.run(1, new Scripted_Input());
+			return machine;
+		}));
+		System.out.printf("%-16s %12.1f%n", "fork", best(() -> {
+			Machine machine = parent.fork();
+			machine.run(1, new Scripted_Input());
+			return machine;
+		}));
+	}
+
+	private static Machine warmUp(Path dir) throws Exception {
+		Machine machine = Test_Programs.load(dir, Test_Programs.HOT_LOOP);
+		machine.memory.write(LOOP_COUNT_ADDRESS, LOOP_COUNT);
+		machine.run(WARMUP_INSTRUCTIONS, new Scripted_Input());
+		return machine;
+	}
+
+	interface Start {
+		Machine run() throws Exception;
+	}
+
+	/**
+	 * Returns the best time to reach the warm state over the measured rounds.
+	 */
+	private static double best(Start start) throws Exception {
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long begin = System.nanoTime();
+			start.run();
+			long elapsed = System.nanoTime() - begin;
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, elapsed / 1000.0);
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,246 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lab3_integrated.simulator.loader.Loader;
+import lab3_integrated.simulator.loader.Loader_Exception;
+import lab3_integrated.simulator.machine.Flat_Memory;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+/**
+ * Regression programs shared by the simulator tests.
+ */
+final class Test_Programs {
+
+	/**
+	 * Executable produced by linking program.asm, Subr.asm and Val.asm at x3000.
+	 */
+	static final String LINKED = String.join("\n", "HMain  30000027", "T30004811", "T30012222", "T3002320d",
+			"T30034811", "T3004f025", "T30050056", "T30060061", "T3007006c", "T30080075", "T30090065", "T300A003d",
+			"T300B0020", "T300C0000", "T300D0006", "T3011300e", "T3012320f", "T30133e10", "T3014220d", "T3015081e",
+			"T3016e005", "T3017f022", "T3018200d", "T3019f031", "T301A103f", "T301B300d", "T301C081e", "T301D4016",
+			"T301E200e", "T301F220f", "T30202e10", "T3021d000", "T30220002", "T3023f043", "T3024f025", "T30252226",
+			"T30260001", "E3000");
+
+	/**
+	 * The sample executable kept next to the simulator sources (Test.txt).
+	 */
+	static final String SAMPLE = String.join("\n", "HSAMPLE30000104", "T3000E300", "T300156E0", "T300254A0",
+			"T300314A4", "T3004040A", "T30056840", "T300616C4", "T30071261", "T300814BF", "T30090E04", "T300A5020",
+			"T300B1003", "T300CF031", "T300DF025", "T31000001", "T31010001", "T31020001", "T31030001", "E3000");
+
+	/**
+	 * Hand assembled program using every instruction except the input traps,
+	 * including a store that rewrites an instruction that has already run.
+	 */
+	static final String ALL_OPS = String.join("\n", "HALLOPS30000043",
+			"T3000" + hex(and(1, 1, 0)), // AND R1,R1,#0
+			"T3001" + hex(and(2, 2, 0)), // AND R2,R2,#0
+			"T3002" + hex(addImm(2, 2, 2)), // ADD R2,R2,#2
+			"T3003" + hex(lea(3, 0x50)), // LEA R3,x3050
+			"T3004" + hex(addImm(1, 1, 3)), // Loop ADD R1,R1,#3 (patched to #-1)
+			"T3005" + hex(str(1, 3, 0)), // STR R1,R3,#0
+			"T3006" + hex(addImm(3, 3, 1)), // ADD R3,R3,#1
+			"T3007" + hex(ld(5, 0x40)), // LD R5,x3040
+			"T3008" + hex(st(5, 0x04)), // ST R5,x3004
+			"T3009" + hex(jsr(1, 0x30)), // JSR x3030
+			"T300A" + hex(addImm(2, 2, -1)), // ADD R2,R2,#-1
+			"T300B" + hex(br(0, 0, 1, 0x04)), // BRP Loop
+			"T300C" + hex(ldi(4, 0x41)), // LDI R4,x3041
+			"T300D" + hex(sti(1, 0x42)), // STI R1,x3042
+			"T300E" + hex(lea(6, 0x32)), // LEA R6,x3032
+			"T300F" + hex(jsrr(1, 6, 0)), // JSRR R6,#0
+			"T3010" + hex(not(7, 1)), // NOT R7,R1
+			"T3011" + hex(andReg(0, 1, 4)), // AND R0,R1,R4
+			"T3012" + hex(addReg(0, 0, 7)), // ADD R0,R0,R7
+			"T3013" + hex(trap(0x31)), // TRAP x31
+			"T3014" + hex(br(1, 1, 1, 0x17)), // BRNZP x3017
+			"T3015" + hex(addImm(1, 1, 1)), // ADD R1,R1,#1
+			"T3016" + hex(addImm(1, 1, 1)), // ADD R1,R1,#1
+			"T3017" + hex(trap(0x25)), // TRAP x25
+			"T3030" + hex(not(0, 1)), // NOT R0,R1
+			"T3031" + hex(addImm(0, 0, 1)), // ADD R0,R0,#1
+			"T3032" + hex(ret()), // RET
+			"T3040" + hex(addImm(1, 1, -1)), // .FILL ADD R1,R1,#-1
+			"T30413050", // .FILL x3050
+			"T30423060", // .FILL x3060
+			"E3000");
+
+	/**
+	 * Loop of 1000 iterations over loads, stores and arithmetic, hot enough for
+	 * the JIT to compile it.
+	 */
+	static final String HOT_LOOP = String.join("\n", "HHOTLOP30000043",
+			"T3000" + hex(ld(2, 0x40)), // LD R2,x3040
+			"T3001" + hex(and(1, 1, 0)), // AND R1,R1,#0
+			"T3002" + hex(lea(3, 0x50)), // LEA R3,x3050
+			"T3003" + hex(addReg(1, 1, 2)), // Loop ADD R1,R1,R2
+			"T3004" + hex(and(4, 1, 15)), // AND R4,R1,#15
+			"T3005" + hex(str(4, 3, 0)), // STR R4,R3,#0
+			"T3006" + hex(addImm(3, 3, 1)), // ADD R3,R3,#1
+			"T3007" + hex(ldr(5, 3, 0)), // LDR R5,R3,#0
+			"T3008" + hex(not(6, 1)), // NOT R6,R1
+			"T3009" + hex(st(6, 0x41)), // ST R6,x3041
+			"T300A" + hex(ldi(0, 0x42)), // LDI R0,x3042
+			"T300B" + hex(addImm(2, 2, -1)), // ADD R2,R2,#-1
+			"T300C" + hex(br(0, 0, 1, 0x03)), // BRP Loop
+			"T300D" + hex(trap(0x25)), // TRAP x25
+			"T304003E8", // .FILL #1000
+			"T30423041", // .FILL x3041
+			"E3000");
+
+	/**
+	 * Hot loop whose body stores into its own code on every iteration, then runs
+	 * again after a store changes one of its instructions.
+	 */
+	static final String SELF_MODIFYING_LOOP = String.join("\n", "HSELFMD30000048",
+			"T3000" + hex(ld(2, 0x40)), // LD R2,x3040
+			"T3001" + hex(and(1, 1, 0)), // AND R1,R1,#0
+			"T3002" + hex(lea(3, 0x50)), // LEA R3,x3050
+			"T3003" + hex(ld(7, 0x47)), // LD R7,x3047
+			"T3004" + hex(addReg(1, 1, 2)), // Loop ADD R1,R1,R2
+			"T3005" + hex(str(1, 3, 0)), // STR R1,R3,#0
+			"T3006" + hex(addImm(4, 1, -3)), // ADD R4,R1,#-3
+			"T3007" + hex(not(5, 4)), // NOT R5,R4
+			"T3008" + hex(ldr(6, 3, 0)), // LDR R6,R3,#0
+			"T3009" + hex(ldi(0, 0x41)), // LDI R0,x3041
+			"T300A" + hex(sti(5, 0x42)), // STI R5,x3042
+			"T300B" + hex(st(7, 0x06)), // ST R7,x3006
+			"T300C" + hex(addImm(2, 2, -1)), // ADD R2,R2,#-1
+			"T300D" + hex(br(0, 0, 1, 0x04)), // BRP Loop
+			"T300E" + hex(ld(7, 0x44)), // LD R7,x3044
+			"T300F" + hex(ld(0, 0x46)), // LD R0,x3046
+			"T3010" + hex(addImm(0, 0, -1)), // ADD R0,R0,#-1
+			"T3011" + hex(st(0, 0x46)), // ST R0,x3046
+			"T3012" + hex(br(1, 0, 0, 0x15)), // BRN x3015
+			"T3013" + hex(ld(2, 0x45)), // LD R2,x3045
+			"T3014" + hex(br(1, 1, 1, 0x04)), // BRNZP Loop
+			"T3015" + hex(trap(0x25)), // TRAP x25
+			"T3040012C", // .FILL #300
+			"T30413050", // .FILL x3050
+			"T30423060", // .FILL x3060
+			"T3044" + hex(addImm(4, 1, 7)), // .FILL ADD R4,R1,#7
+			"T30450064", // .FILL #100
+			"T30460001", // .FILL #1
+			"T3047" + hex(addImm(4, 1, -3)), // .FILL ADD R4,R1,#-3
+			"E3000");
+
+	private Test_Programs() {
+	}
+
+	/**
+	 * Loads an executable into a new machine.
+	 *
+	 * @param dir        directory to write the executable into
+	 * @param executable the text of the executable
+	 * @return the machine with the program loaded
+	 * @throws Loader_Exception if the executable is invalid
+	 */
+	static Machine load(Path dir, String executable) throws IOException, Loader_Exception {
+		return load(dir, executable, new Flat_Memory());
+	}
+
+	/**
+	 * Loads an executable into a new machine using the given memory.
+	 *
+	 * @param dir        directory to write the executable into
+	 * @param executable the text of the executable
+	 * @param memory     the memory backend of the machine
+	 * @return the machine with the program loaded
+	 * @throws Loader_Exception if the executable is invalid
+	 */
+	static Machine load(Path dir, String executable, Memory memory) throws IOException, Loader_Exception {
+		Path file = Files.createTempFile(dir, "program", ".o");
+		Files.writeString(file, executable);
+		Machine machine = new Machine(memory);
+		new Loader().load(file.toString(), machine);
+		return machine;
+	}
+
+	/**
+	 * Runs the loaded program on the interpreter in Quiet mode.
+	 *
+	 * @param machine         the machine with the program loaded
+	 * @param maxInstructions the maximum number of instructions to run
+	 * @return the number of instructions run
+	 */
+	static int interpret(Machine machine, int maxInstructions) {
+		return new Simulator_Session(machine, Simulator.Mode.QUIET, new Scripted_Input()).interpret(maxInstructions);
+	}
+
+	static String hex(int word) {
+		return String.format("%04X", word & 0xFFFF);
+	}
+
+	static int addReg(int dr, int sr1, int sr2) {
+		return 0x1000 | dr << 9 | sr1 << 6 | sr2;
+	}
+
+	static int addImm(int dr, int sr, int imm5) {
+		return 0x1000 | dr << 9 | sr << 6 | 0x20 | (imm5 & 0x1F);
+	}
+
+	static int andReg(int dr, int sr1, int sr2) {
+		return 0x5000 | dr << 9 | sr1 << 6 | sr2;
+	}
+
+	static int and(int dr, int sr, int imm5) {
+		return 0x5000 | dr << 9 | sr << 6 | 0x20 | (imm5 & 0x1F);
+	}
+
+	static int br(int n, int z, int p, int pgoffset9) {
+		return n << 11 | z << 10 | p << 9 | pgoffset9;
+	}
+
+	static int jsr(int l, int pgoffset9) {
+		return 0x4000 | l << 11 | pgoffset9;
+	}
+
+	static int jsrr(int l, int baseR, int index6) {
+		return 0xC000 | l << 11 | baseR << 6 | index6;
+	}
+
+	static int ld(int dr, int pgoffset9) {
+		return 0x2000 | dr << 9 | pgoffset9;
+	}
+
+	static int ldi(int dr, int pgoffset9) {
+		return 0xA000 | dr << 9 | pgoffset9;
+	}
+
+	static int ldr(int dr, int baseR, int index6) {
+		return 0x6000 | dr << 9 | baseR << 6 | index6;
+	}
+
+	static int lea(int dr, int pgoffset9) {
+		return 0xE000 | dr << 9 | pgoffset9;
+	}
+
+	static int not(int dr, int sr) {
+		return 0x9000 | dr << 9 | sr << 6;
+	}
+
+	static int ret() {
+		return 0xD000;
+	}
+
+	static int st(int sr, int pgoffset9) {
+		return 0x3000 | sr << 9 | pgoffset9;
+	}
+
+	static int sti(int sr, int pgoffset9) {
+		return 0xB000 | sr << 9 | pgoffset9;
+	}
+
+	static int str(int sr, int baseR, int index6) {
+		return 0x7000 | sr << 9 | baseR << 6 | index6;
+	}
+
+	static int trap(int trapvect8) {
+		return 0xF000 | trapvect8;
+	}
+}
@@ -0,0 +1,67 @@
+package lab3_integrated.simulator.simulator;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Threaded_EngineTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void linkedProgramMatchesInterpreter() throws Exception {
+		assertSameState(Test_Programs.LINKED, 1000);
+	}
+
+	@Test
+	void sampleProgramMatchesInterpreter() throws Exception {
+		assertSameState(Test_Programs.SAMPLE, 1000);
+	}
+
+	@Test
+	void allOpsProgramMatchesInterpreter() throws Exception {
+		assertSameState(Test_Programs.ALL_OPS, 1000);
+	}
+
+	@Test
+	void stopsAtInstructionLimit() throws Exception {
+		assertSameState(Test_Programs.LINKED, 37);
+	}
+
+	@Test
+	void lazyConditionCodesMatchInterpreter() throws Exception {
+		assertSameState(Test_Programs.LINKED, 1000, true);
+		assertSameState(Test_Programs.ALL_OPS, 1000, true);
+		assertSameState(Test_Programs.HOT_LOOP, 100000, true);
+	}
+
+	private void assertSameState(String executable, int maxInstructions) throws Exception {
+		assertSameState(executable, maxInstructions, false);
+	}
+
+	private void assertSameState(String executable, int maxInstructions, boolean lazyCCR) throws Exception {
+		Machine expected = Test_Programs.load(this.dir, executable);
+		expected.lazyCCR = false;
+		Test_Programs.interpret(expected, maxInstructions);
+
+		Machine actual = Test_Programs.load(this.dir, executable);
+		actual.lazyCCR = lazyCCR;
+		new Threaded_Engine(actual, new Scripted_Input()).run(maxInstructions);
+
+		assertEquals(expected.PC, actual.PC, "PC");
+		assertEquals(expected.prev_pc, actual.prev_pc, "previous PC");
+		assertArrayEquals(expected.registers, actual.registers, "registers");
+		assertEquals(expected.getCCR(), actual.getCCR(), "CCRs");
+		assertEquals(expected.instructionCount, actual.instructionCount, "instruction count");
+		for (int address = 0; address < Memory.SIZE; address++) {
+			assertEquals(expected.memory.read(address), actual.memory.read(address), "memory at " + address);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package lab3_integrated.simulator.simulator;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Memory;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Tiered_EngineTest {
+
+	private static final int MAX_INSTRUCTIONS = 100000;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void hotLoopIsCompiledAndMatchesInterpreter() throws Exception {
+		Tiered_Engine engine = assertSameState(Test_Programs.HOT_LOOP, MAX_INSTRUCTIONS, true);
+		assertTrue(engine.getBlocksCompiled() > 0, "no block was compiled");
+		assertEquals(0, engine.getDeoptimizations());
+	}
+
+	@Test
+	void storesIntoCompiledCodeDeoptimize() throws Exception {
+		Tiered_Engine engine = assertSameState(Test_Programs.SELF_MODIFYING_LOOP, MAX_INSTRUCTIONS, true);
+		assertTrue(engine.getBlocksCompiled() > 0, "no block was compiled");
+		assertTrue(engine.getDeoptimizations() > 0, "no block was deoptimized");
+	}
+
+	@Test
+	void stopsAtInstructionLimitInsideHotLoop() throws Exception {
+		assertSameState(Test_Programs.HOT_LOOP, 5003, true);
+		assertSameState(Test_Programs.SELF_MODIFYING_LOOP, 2999, true);
+	}
+
+	@Test
+	void regressionProgramsMatchInterpreter() throws Exception {
+		assertSameState(Test_Programs.LINKED, 1000, true);
+		assertSameState(Test_Programs.SAMPLE, 1000, true);
+		assertSameState(Test_Programs.ALL_OPS, 1000, true);
+	}
+
+	@Test
+	void jitCanBeTurnedOff() throws Exception {
+		Tiered_Engine engine = assertSameState(Test_Programs.HOT_LOOP, MAX_INSTRUCTIONS, false);
+		assertEquals(0, engine.getBlocksCompiled());
+	}
+
+	private Tiered_Engine assertSameState(String executable, int maxInstructions, boolean jit) throws Exception {
+		Machine expected = Test_Programs.load(this.dir, executable);
+		Test_Programs.interpret(expected, maxInstructions);
+
+		Machine actual = Test_Programs.load(this.dir, executable);
+		Tiered_Engine engine = new Tiered_Engine(actual, new Scripted_Input(), jit);
+		engine.run(maxInstructions);
+
+		assertEquals(expected.PC, actual.PC, "PC");
+		assertEquals(expected.prev_pc, actual.prev_pc, "previous PC");
+		assertArrayEquals(expected.registers, actual.registers, "registers");
+		assertEquals(expected.getCCR(), actual.getCCR(), "CCRs");
+		assertEquals(expected.instructionCount, actual.instructionCount, "instruction count");
+		for (int address = 0; address < Memory.SIZE; address++) {
+			assertEquals(expected.memory.read(address), actual.memory.read(address), "memory at " + address);
+		}
+		return engine;
+	}
+}
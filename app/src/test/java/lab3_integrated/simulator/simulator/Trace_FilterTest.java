@@ -0,0 +1,98 @@
+package lab3_integrated.simulator.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import lab3_integrated.simulator.machine.Capture_Console;
+import lab3_integrated.simulator.machine.Machine;
+import lab3_integrated.simulator.machine.Scripted_Input;
+
+class Trace_FilterTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void selectsRangeOpcodesAndSamples() {
+		Trace_Filter filter = Trace_Filter.parse("range=3000-3003,ops=ADD:brx,every=2");
+		assertFalse(filter.selects(0x3000, 1));
+		assertFalse(filter.selects(0x3004, 1));
+		assertFalse(filter.selects(0x2FFF, 1));
+		assertFalse(filter.selects(0x3001, 2));
+		assertTrue(filter.selects(0x3003, 0));
+		assertFalse(filter.selects(0x3000, 1));
+		assertTrue(filter.selects(0x3000, 1));
+		assertEquals(Trace_Filter.NO_REGISTER, filter.register());
+		assertEquals(3, Trace_Filter.parse("register=R3").register());
+	}
+
+	@Test
+	void rejectsInvalidPredicates() {
+		assertThrows(IllegalArgumentException.class, () -> Trace_Filter.parse("range=3010-3000"));
+		assertThrows(IllegalArgumentException.class, () -> Trace_Filter.parse("ops=HALT"));
+		assertThrows(IllegalArgumentException.class, () -> Trace_Filter.parse("every=0"));
+		assertThrows(IllegalArgumentException.class, () -> Trace_Filter.parse("register=R8"));
+		assertThrows(IllegalArgumentException.class, () -> Trace_Filter.parse("pc=3000"));
+	}
+
+	@Test
+	void filteredTraceIsPartOfFullTrace() throws Exception {
+		assertTracesOnly(Test_Programs.ALL_OPS, "every=1", block -> true);
+		assertTracesOnly(Test_Programs.ALL_OPS, "ops=ADD:STI",
+				block -> block.contains("the ADD instruction") || block.contains("the STI instruction"));
+		assertTracesOnly(Test_Programs.ALL_OPS, "range=3030-3032",
+				block -> block.contains("Current instruction: 0x303"));
+		int[] count = { 0 };
+		assertTracesOnly(Test_Programs.LINKED, "every=3", block -> ++count[0] % 3 == 0);
+	}
+
+	@Test
+	void watchedRegisterOnlyTracesChanges() throws Exception {
+		assertTracesOnly(Test_Programs.ALL_OPS, "register=R2", Trace_FilterTest::changesR2);
+		assertTracesOnly(Test_Programs.LINKED, "ops=ADD,register=R2",
+				block -> block.contains("the ADD instruction") && changesR2(block));
+	}
+
+	/**
+	 * Whether R2 printed before an instruction differs from R2 printed after it.
+	 */
+	private static boolean changesR2(String block) {
+		int after = block.indexOf("AFTER");
+		int before = block.indexOf("R2: ");
+		int changed = block.indexOf("R2: ", after);
+		return !block.substring(before, block.indexOf('\n', before))
+				.equals(block.substring(changed, block.indexOf('\n', changed)));
+	}
+
+	/**
+	 * Checks the filtered trace is the blocks of the full trace, one per
+	 * instruction, the predicate accepts.
+	 */
+	private void assertTracesOnly(String executable, String filter, Predicate<String> traced) throws Exception {
+		String full = trace(executable, null);
+		StringBuilder expected = new StringBuilder();
+		for (String block : full.split("(?=\nState of the machine BEFORE)")) {
+			if (traced.test(block)) {
+				expected.append(block);
+			}
+		}
+		assertEquals(expected.toString(), trace(executable, Trace_Filter.parse(filter)), filter);
+	}
+
+	private String trace(String executable, Trace_Filter filter) throws Exception {
+		Machine machine = Test_Programs.load(this.dir, executable);
+		machine.console = new Capture_Console(true);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Simulator_Session session = new Simulator_Session(machine, Simulator.Mode.TRACE, new Scripted_Input(), null,
+				new PrintStream(bytes, true));
+		session.setTraceFilter(filter);
+		session.interpret(1000);
+		return bytes.toString();
+	}
+}